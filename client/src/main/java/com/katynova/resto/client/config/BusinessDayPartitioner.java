@@ -0,0 +1,25 @@
+package com.katynova.resto.client.config;
+
+import com.katynova.resto.common_dto_library.BusinessDay;
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+// ключ запроса и подтверждения - рабочий день, все сообщения одного дня уходят в одну партицию и к одному потребителю
+public class BusinessDayPartitioner implements Partitioner {
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        return BusinessDay.partition(LocalDate.parse((String) key), cluster.partitionCountForTopic(topic));
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+}
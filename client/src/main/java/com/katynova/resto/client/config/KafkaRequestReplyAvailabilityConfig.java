@@ -0,0 +1,113 @@
+package com.katynova.resto.client.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.katynova.resto.common_dto_library.AvailabilityProbeRequestDto;
+import com.katynova.resto.common_dto_library.AvailabilityRequestDto;
+import com.katynova.resto.common_dto_library.response.BookingResponse;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.requestreply.ReplyingKafkaTemplate;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// календарь доступности ходит своей парой топиков, чтобы просмотр не стоял в очереди с бронированиями
+@Configuration
+@EnableKafka
+@RequiredArgsConstructor
+public class KafkaRequestReplyAvailabilityConfig {
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Bean
+    public ProducerFactory<String, AvailabilityRequestDto> availabilityProducerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        return new DefaultKafkaProducerFactory<>(config);
+    }
+
+    @Bean
+    public ConsumerFactory<String, BookingResponse> availabilityReplyConsumerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, "availability-reply-group");
+        config.put(JsonDeserializer.TRUSTED_PACKAGES, "com.katynova.resto.common_dto_library,java.util,java.lang");
+
+        JsonDeserializer<BookingResponse> valueDeserializer = new JsonDeserializer<>(BookingResponse.class, objectMapper);
+        ErrorHandlingDeserializer<BookingResponse> errorHandlingDeserializer =
+                new ErrorHandlingDeserializer<>(valueDeserializer);
+
+        return new DefaultKafkaConsumerFactory<>(config, new StringDeserializer(), errorHandlingDeserializer);
+    }
+
+    @Bean
+    public ConcurrentMessageListenerContainer<String, BookingResponse> availabilityReplyContainer() {
+        ConcurrentKafkaListenerContainerFactory<String, BookingResponse> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(availabilityReplyConsumerFactory());
+
+        ConcurrentMessageListenerContainer<String, BookingResponse> container =
+                factory.createContainer("availability_response_topic");
+        container.getContainerProperties().setGroupId("availability-reply-group");
+        return container;
+    }
+
+    @Bean
+    public ReplyingKafkaTemplate<String, AvailabilityRequestDto, BookingResponse> availabilityReplyingKafkaTemplate() {
+        ReplyingKafkaTemplate<String, AvailabilityRequestDto, BookingResponse> template =
+                new ReplyingKafkaTemplate<>(availabilityProducerFactory(), availabilityReplyContainer());
+        template.setDefaultReplyTimeout(Duration.ofSeconds(10));
+        return template;
+    }
+
+    @Bean
+    public ProducerFactory<String, AvailabilityProbeRequestDto> probeProducerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        return new DefaultKafkaProducerFactory<>(config);
+    }
+
+    @Bean
+    public ConcurrentMessageListenerContainer<String, BookingResponse> probeReplyContainer() {
+        ConcurrentKafkaListenerContainerFactory<String, BookingResponse> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(availabilityReplyConsumerFactory());
+
+        ConcurrentMessageListenerContainer<String, BookingResponse> container =
+                factory.createContainer("availability_probe_response_topic");
+        container.getContainerProperties().setGroupId("availability-probe-reply-group");
+        return container;
+    }
+
+    @Bean
+    public ReplyingKafkaTemplate<String, AvailabilityProbeRequestDto, BookingResponse> probeReplyingKafkaTemplate() {
+        ReplyingKafkaTemplate<String, AvailabilityProbeRequestDto, BookingResponse> template =
+                new ReplyingKafkaTemplate<>(probeProducerFactory(), probeReplyContainer());
+        template.setDefaultReplyTimeout(Duration.ofSeconds(10));
+        return template;
+    }
+}
@@ -45,6 +45,7 @@ public class KafkaRequestReplyConfig {
         config.put(ProducerConfig.ACKS_CONFIG, "all");
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        config.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, BusinessDayPartitioner.class);
         return new DefaultKafkaProducerFactory<>(config);
     }
 
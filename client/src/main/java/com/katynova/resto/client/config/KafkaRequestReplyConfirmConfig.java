@@ -52,6 +52,7 @@ public class KafkaRequestReplyConfirmConfig {
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        config.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, BusinessDayPartitioner.class);
         return new DefaultKafkaProducerFactory<>(config);
     }
 
@@ -1,12 +1,16 @@
 package com.katynova.resto.client.controller;
 
 import com.katynova.resto.client.service.BookingService;
+import com.katynova.resto.common_dto_library.AvailabilityProbeRequestDto;
+import com.katynova.resto.common_dto_library.AvailabilityRequestDto;
 import com.katynova.resto.common_dto_library.BookingRequestDto;
 import com.katynova.resto.common_dto_library.response.Slot;
 import com.katynova.resto.common_dto_library.response.SlotConfirmation;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -37,6 +41,18 @@ public class BookingController {
         return bookingService.processConfirmationAsync(slotConfirmation);
     }
 
+    // свободные окна на несколько дней: /book/availability?from=2025-07-21&days=7&persons=2&duration=PT2H
+    @GetMapping("/availability")
+    public DeferredResult<ResponseEntity<?>> availabilityRequest(@Valid @ModelAttribute AvailabilityRequestDto availabilityRequestDto) {
+        return bookingService.processAvailabilityAsync(availabilityRequestDto);
+    }
+
+    // все сочетания времени начала, длительности и размера компании на один день одним запросом
+    @PostMapping("/availability/probe")
+    public DeferredResult<ResponseEntity<?>> probeRequest(@Valid @RequestBody AvailabilityProbeRequestDto probeRequestDto) {
+        return bookingService.processProbeAsync(probeRequestDto);
+    }
+
     @PostMapping("/test")
     public DeferredResult<ResponseEntity<?>> testRequest() {
         BookingRequestDto bookingRequestDto = new BookingRequestDto();
@@ -1,16 +1,21 @@
 package com.katynova.resto.client.service;
 
+import com.katynova.resto.common_dto_library.AvailabilityProbeRequestDto;
+import com.katynova.resto.common_dto_library.AvailabilityRequestDto;
 import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.common_dto_library.BusinessDay;
 import com.katynova.resto.common_dto_library.response.BookingResponse;
 import com.katynova.resto.common_dto_library.response.SlotConfirmation;
 import lombok.RequiredArgsConstructor;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.requestreply.ReplyingKafkaTemplate;
 import org.springframework.kafka.requestreply.RequestReplyFuture;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalTime;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -23,13 +28,22 @@ public class BookingProducer {
 
     private final ReplyingKafkaTemplate<String, BookingRequestDto, BookingResponse> kafkaTemplate;
     private final ReplyingKafkaTemplate<String, SlotConfirmation, BookingResponse> slotConfirmationKafkaTemplate;
+    private final ReplyingKafkaTemplate<String, AvailabilityRequestDto, BookingResponse> availabilityKafkaTemplate;
+    private final ReplyingKafkaTemplate<String, AvailabilityProbeRequestDto, BookingResponse> probeKafkaTemplate;
+
+    // время открытия ресторана, то же, что worktime.open-time у сервиса бронирования
+    @Value("${booking.open-time:10:00}")
+    private String openTime;
 
     public CompletableFuture<BookingResponse> createBooking(BookingRequestDto bookingRequestDto) {
         try {
             String correlationId = UUID.randomUUID().toString();
             bookingRequestDto.setCorrelationId(correlationId);
+            // ключ - рабочий день брони: запросы одного дня обрабатывает один потребитель,
+            // ответ находит запрос по заголовку CORRELATION_ID, который ставит ReplyingKafkaTemplate
+            String businessDay = BusinessDay.of(bookingRequestDto.getStartTime(), LocalTime.parse(openTime)).toString();
             ProducerRecord<String, BookingRequestDto> producerRecord =
-                    new ProducerRecord<>("request_topic", correlationId, bookingRequestDto);
+                    new ProducerRecord<>("request_topic", businessDay, bookingRequestDto);
 
             RequestReplyFuture<String, BookingRequestDto, BookingResponse> future =
                     kafkaTemplate.sendAndReceive(producerRecord);
@@ -45,8 +59,11 @@ public class BookingProducer {
 
     public CompletableFuture<BookingResponse> confirmBooking(SlotConfirmation slotConfirmation) {
         try {
+            // ключ - рабочий день из id варианта: подтверждение уходит в партицию запроса,
+            // к экземпляру сервиса, который держит резерв
+            String businessDay = BusinessDay.ofHoldId(slotConfirmation.getConfirmSlotId()).toString();
             ProducerRecord<String, SlotConfirmation> producerRecord =
-                    new ProducerRecord<>("confirmation_topic", slotConfirmation.getCorrelationId(), slotConfirmation);
+                    new ProducerRecord<>("confirmation_topic", businessDay, slotConfirmation);
 
             RequestReplyFuture<String, SlotConfirmation, BookingResponse> future =
                     slotConfirmationKafkaTemplate.sendAndReceive(producerRecord);
@@ -59,4 +76,42 @@ public class BookingProducer {
             return CompletableFuture.failedFuture(e);
         }
     }
+
+    public CompletableFuture<BookingResponse> getAvailability(AvailabilityRequestDto availabilityRequestDto) {
+        try {
+            String correlationId = UUID.randomUUID().toString();
+            availabilityRequestDto.setCorrelationId(correlationId);
+            ProducerRecord<String, AvailabilityRequestDto> producerRecord =
+                    new ProducerRecord<>("availability_request_topic", correlationId, availabilityRequestDto);
+
+            RequestReplyFuture<String, AvailabilityRequestDto, BookingResponse> future =
+                    availabilityKafkaTemplate.sendAndReceive(producerRecord);
+
+            return future.toCompletableFuture()
+                    .thenApply(ConsumerRecord::value)
+                    .orTimeout(10, TimeUnit.SECONDS);
+        }
+        catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public CompletableFuture<BookingResponse> probeAvailability(AvailabilityProbeRequestDto probeRequestDto) {
+        try {
+            String correlationId = UUID.randomUUID().toString();
+            probeRequestDto.setCorrelationId(correlationId);
+            ProducerRecord<String, AvailabilityProbeRequestDto> producerRecord =
+                    new ProducerRecord<>("availability_probe_topic", correlationId, probeRequestDto);
+
+            RequestReplyFuture<String, AvailabilityProbeRequestDto, BookingResponse> future =
+                    probeKafkaTemplate.sendAndReceive(producerRecord);
+
+            return future.toCompletableFuture()
+                    .thenApply(ConsumerRecord::value)
+                    .orTimeout(10, TimeUnit.SECONDS);
+        }
+        catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package com.katynova.resto.client.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.katynova.resto.common_dto_library.AvailabilityProbeRequestDto;
+import com.katynova.resto.common_dto_library.AvailabilityRequestDto;
 import com.katynova.resto.common_dto_library.BookingRequestDto;
 import com.katynova.resto.common_dto_library.response.*;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +13,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 
 @Service
@@ -54,7 +57,8 @@ public class BookingService {
 
     //TODO красиво упаковать для клиента
     private ResponseEntity<?> toResponseEntity(BookingResponse bookingResponse) {
-        if (bookingResponse instanceof BookingSuccessResponse) {
+        if (bookingResponse instanceof BookingSuccessResponse || bookingResponse instanceof AvailabilityResponse
+                || bookingResponse instanceof AvailabilityProbeResponse) {
             return ResponseEntity.ok(bookingResponse);
         } else if (bookingResponse instanceof BookingSuggestResponse || bookingResponse instanceof WaitlistResponse) {
             return ResponseEntity.status(HttpStatus.ACCEPTED).body(bookingResponse);
@@ -85,4 +89,35 @@ public class BookingService {
                 });
         return deferredResult;
     }
+
+    public DeferredResult<ResponseEntity<?>> processAvailabilityAsync(AvailabilityRequestDto availabilityRequestDto) {
+        return processReadAsync(bookingProducer.getAvailability(availabilityRequestDto));
+    }
+
+    public DeferredResult<ResponseEntity<?>> processProbeAsync(AvailabilityProbeRequestDto probeRequestDto) {
+        return processReadAsync(bookingProducer.probeAvailability(probeRequestDto));
+    }
+
+    // запросы только на чтение: таймаут короче, чем у бронирования
+    private DeferredResult<ResponseEntity<?>> processReadAsync(CompletableFuture<BookingResponse> response) {
+        DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>(15_000L);
+        deferredResult.onTimeout(() -> {
+            log.warn("Overall timeout for availability request");
+            deferredResult.setResult(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT)
+                    .body("Превышено общее время обработки"));
+        });
+
+        response.whenComplete((bookingResponse, ex) -> {
+            if (ex != null) {
+                if (ex instanceof TimeoutException) {
+                    deferredResult.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Превышено время ожидания"));
+                } else {
+                    deferredResult.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Непредвиденная ошибка"));
+                }
+            } else {
+                deferredResult.setResult(toResponseEntity(bookingResponse));
+            }
+        });
+        return deferredResult;
+    }
 }
@@ -0,0 +1,49 @@
+package com.katynova.resto.client.config;
+
+import com.katynova.resto.common_dto_library.BusinessDay;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BusinessDayPartitionerTest {
+
+    private static final String TOPIC = "booking_request";
+
+    private final BusinessDayPartitioner partitioner = new BusinessDayPartitioner();
+
+    @Test
+    void shouldSendEveryMessageOfDayToItsPartition() {
+        Cluster cluster = cluster(6);
+        LocalDate day = LocalDate.of(2025, 7, 19);
+        for (int offset = 0; offset < 14; offset++) {
+            String key = day.plusDays(offset).toString();
+            int partition = partitioner.partition(TOPIC, key, key.getBytes(), null, null, cluster);
+            // та же партиция, по которой сервис распределяет свои дни
+            assertEquals(BusinessDay.partition(day.plusDays(offset), 6), partition);
+        }
+    }
+
+    @Test
+    void shouldFollowPartitionCountOfTopic() {
+        String key = "2025-07-19";
+        assertEquals(0, partitioner.partition(TOPIC, key, key.getBytes(), null, null, cluster(1)));
+        assertEquals(BusinessDay.partition(LocalDate.parse(key), 4),
+                partitioner.partition(TOPIC, key, key.getBytes(), null, null, cluster(4)));
+    }
+
+    private static Cluster cluster(int partitions) {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> infos = IntStream.range(0, partitions)
+                .mapToObj(partition -> new PartitionInfo(TOPIC, partition, node, new Node[]{node}, new Node[]{node}))
+                .toList();
+        return new Cluster("resto", List.of(node), infos, Set.of(), Set.of());
+    }
+}
@@ -0,0 +1,38 @@
+package com.katynova.resto.common_dto_library;
+
+import jakarta.annotation.Nullable;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+// пакетная проверка: что можно предложить в этот день для всех сочетаний времени начала, длительности и компании
+// ничего не резервирует
+@Data
+@NoArgsConstructor
+public class AvailabilityProbeRequestDto {
+    @Nullable
+    private String correlationId;
+
+    // рабочий день; время после полуночи относится к нему же
+    @NotNull
+    private LocalDate day;
+
+    @NotEmpty
+    @Size(max = 48)
+    private List<LocalTime> startTimes;
+
+    @NotEmpty
+    @Size(max = 8)
+    private List<Duration> durations;
+
+    @NotEmpty
+    @Size(max = 8)
+    private List<Integer> partySizes;
+}
@@ -0,0 +1,39 @@
+package com.katynova.resto.common_dto_library;
+
+import com.katynova.resto.common_dto_library.validation.CorrectDuration;
+import jakarta.annotation.Nullable;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+// запрос календаря доступности: свободные окна для компании на несколько дней вперед, без бронирования
+@Data
+@NoArgsConstructor
+public class AvailabilityRequestDto {
+    @Nullable
+    private String correlationId;
+
+    @NotNull
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+
+    @Positive
+    @Max(value = 7, message = "Календарь доступности показывается не больше чем на неделю")
+    private int days = 1;
+
+    // окно показываем, только если в нем помещается бронь такой длины
+    @NotNull
+    @Positive
+    @CorrectDuration
+    private Duration duration;
+
+    @Positive
+    @Max(value = 8, message = "Для бронирования стола больше, чем на 8 человек свяжитесь с менеджером")
+    private int persons;
+}
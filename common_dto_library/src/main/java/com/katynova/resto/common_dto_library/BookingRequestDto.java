@@ -2,6 +2,7 @@ package com.katynova.resto.common_dto_library;
 
 import com.katynova.resto.common_dto_library.validation.CorrectDuration;
 import com.katynova.resto.common_dto_library.validation.CorrectStartTime;
+import com.katynova.resto.common_dto_library.validation.CorrectWindow;
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.Max;
@@ -15,6 +16,7 @@ import java.time.LocalDateTime;
 
 @Data
 @NoArgsConstructor
+@CorrectWindow
 public class BookingRequestDto {
     @Nullable
     private Long requestId;
@@ -32,6 +34,14 @@ public class BookingRequestDto {
     @CorrectDuration
     private Duration duration;
 
+    // гибкий поиск: гость готов прийти в любое время внутри окна, startTime - предпочтительное время
+    // если на startTime мест нет, предлагаются ближайшие к нему варианты из окна
+    @Nullable
+    private LocalDateTime windowStart;
+
+    @Nullable
+    private LocalDateTime windowEnd;
+
     @Nullable
     private String notes;
 
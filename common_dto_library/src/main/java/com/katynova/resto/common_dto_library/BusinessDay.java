@@ -0,0 +1,37 @@
+package com.katynova.resto.common_dto_library;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+// рабочий день брони и его партиция: клиент выбирает по ним партицию запроса, сервис - свои дни
+// время после полуночи и до открытия относится к предыдущему рабочему дню, как и в графе
+public final class BusinessDay {
+
+    // младшие биты id резерва варианта - эпохальный день, 20 бит хватает до 4840 года
+    private static final int HOLD_DAY_BITS = 20;
+    private static final long HOLD_DAY_MASK = (1L << HOLD_DAY_BITS) - 1;
+
+    private BusinessDay() {
+    }
+
+    public static LocalDate of(LocalDateTime startTime, LocalTime openTime) {
+        LocalDate day = startTime.toLocalDate();
+        return startTime.toLocalTime().isBefore(openTime) ? day.minusDays(1) : day;
+    }
+
+    // соседние дни попадают в разные партиции, поэтому нагрузка от "горячих" выходных расходится по потребителям
+    public static int partition(LocalDate day, int partitions) {
+        return (int) Math.floorMod(day.toEpochDay(), (long) partitions);
+    }
+
+    // id резерва несет рабочий день варианта: клиент ключует подтверждение этим днем,
+    // и оно приходит в ту же партицию, что и запрос, - к экземпляру, который держит резерв
+    public static long holdId(long sequence, LocalDate day) {
+        return (sequence << HOLD_DAY_BITS) | (day.toEpochDay() & HOLD_DAY_MASK);
+    }
+
+    public static LocalDate ofHoldId(long holdId) {
+        return LocalDate.ofEpochDay(holdId & HOLD_DAY_MASK);
+    }
+}
@@ -0,0 +1,17 @@
+package com.katynova.resto.common_dto_library.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AvailabilityDay {
+    private LocalDate day;
+    // свободные окна; id брони в них не заполняется
+    private List<Slot> freeWindows;
+}
@@ -0,0 +1,23 @@
+package com.katynova.resto.common_dto_library.response;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class AvailabilityProbeResponse extends BookingResponse {
+    private LocalDate day;
+    // число столов, которые можно предложить, одной матрицей в порядке [компания][длительность][время начала]
+    // индексы совпадают с порядком списков запроса; -1 - компанию нельзя посадить в автоматическом режиме
+    private int[] freeTables;
+
+    public AvailabilityProbeResponse(String correlationId, LocalDate day, int[] freeTables) {
+        super(correlationId, null);
+        this.day = day;
+        this.freeTables = freeTables;
+    }
+}
@@ -0,0 +1,19 @@
+package com.katynova.resto.common_dto_library.response;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class AvailabilityResponse extends BookingResponse {
+    private List<AvailabilityDay> days;
+
+    public AvailabilityResponse(String correlationId, List<AvailabilityDay> days) {
+        super(correlationId, null);
+        this.days = days;
+    }
+}
@@ -13,7 +13,9 @@ import lombok.*;
         @JsonSubTypes.Type(value = BookingSuccessResponse.class, name = "SUCCESS"),
         @JsonSubTypes.Type(value = BookingSuggestResponse.class, name = "SUGGESTED"),
         @JsonSubTypes.Type(value = WaitlistResponse.class, name = "WAITLIST"),
-        @JsonSubTypes.Type(value = BookingErrorResponse.class, name = "ERROR")
+        @JsonSubTypes.Type(value = BookingErrorResponse.class, name = "ERROR"),
+        @JsonSubTypes.Type(value = AvailabilityResponse.class, name = "AVAILABILITY"),
+        @JsonSubTypes.Type(value = AvailabilityProbeResponse.class, name = "PROBE")
 })
 
 @AllArgsConstructor
@@ -0,0 +1,17 @@
+package com.katynova.resto.common_dto_library.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.*;
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Constraint(validatedBy = WindowValidator.class)
+public @interface CorrectWindow {
+    String message() default "Окно бронирования задается обеими границами, должно включать время начала" +
+            " и вмещать всю длительность бронирования";
+    Class<?>[] groups() default {};
+    Class<? extends Payload>[] payload() default {};
+}
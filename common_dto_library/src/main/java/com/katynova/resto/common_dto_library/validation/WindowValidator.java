@@ -0,0 +1,27 @@
+package com.katynova.resto.common_dto_library.validation;
+
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+import java.time.LocalDateTime;
+
+public class WindowValidator implements ConstraintValidator<CorrectWindow, BookingRequestDto> {
+
+    @Override
+    public boolean isValid(BookingRequestDto request, ConstraintValidatorContext constraintValidatorContext) {
+        LocalDateTime windowStart = request.getWindowStart();
+        LocalDateTime windowEnd = request.getWindowEnd();
+        // окно не задано - обычный запрос на точное время
+        if (windowStart == null && windowEnd == null) {
+            return true;
+        }
+        // остальные поля проверяются своими аннотациями
+        if (windowStart == null || windowEnd == null
+                || request.getStartTime() == null || request.getDuration() == null) {
+            return false;
+        }
+        return !request.getStartTime().isBefore(windowStart)
+                && !request.getStartTime().plus(request.getDuration()).isAfter(windowEnd);
+    }
+}
@@ -0,0 +1,48 @@
+package com.katynova.resto.common_dto_library;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class BusinessDayTest {
+
+    private static final LocalTime OPEN_TIME = LocalTime.of(10, 0);
+    private final LocalDate day = LocalDate.of(2025, 7, 19);
+
+    @Test
+    void shouldMapTimeBeforeOpeningToPreviousDay() {
+        assertEquals(day, BusinessDay.of(LocalDateTime.of(day, LocalTime.of(19, 0)), OPEN_TIME));
+        assertEquals(day, BusinessDay.of(LocalDateTime.of(day, OPEN_TIME), OPEN_TIME));
+        // ночь после субботы - все еще субботний рабочий день
+        assertEquals(day, BusinessDay.of(LocalDateTime.of(day.plusDays(1), LocalTime.of(0, 30)), OPEN_TIME));
+        assertEquals(day, BusinessDay.of(LocalDateTime.of(day.plusDays(1), LocalTime.of(9, 59)), OPEN_TIME));
+    }
+
+    @Test
+    void shouldRoundTripDayThroughHoldId() {
+        long sequence = System.currentTimeMillis();
+        for (LocalDate holdDay : new LocalDate[]{day, LocalDate.EPOCH, LocalDate.of(2100, 12, 31)}) {
+            long holdId = BusinessDay.holdId(sequence, holdDay);
+            assertEquals(holdDay, BusinessDay.ofHoldId(holdId));
+        }
+        // один и тот же номер на разные дни дает разные id
+        assertNotEquals(BusinessDay.holdId(sequence, day), BusinessDay.holdId(sequence, day.plusDays(1)));
+        assertNotEquals(BusinessDay.holdId(sequence, day), BusinessDay.holdId(sequence + 1, day));
+    }
+
+    @Test
+    void shouldSpreadAdjacentDaysOverPartitions() {
+        int partitions = 6;
+        for (int offset = 0; offset < partitions; offset++) {
+            int partition = BusinessDay.partition(day.plusDays(offset), partitions);
+            assertEquals(Math.floorMod(BusinessDay.partition(day, partitions) + offset, partitions), partition);
+        }
+        // дни до эпохи тоже попадают в допустимую партицию
+        assertEquals(Math.floorMod(-1, partitions), BusinessDay.partition(LocalDate.EPOCH.minusDays(1), partitions));
+    }
+}
@@ -0,0 +1,60 @@
+package com.katynova.resto.server_side.benchmark;
+
+import com.katynova.resto.server_side.model.FreeTableIndex;
+import com.katynova.resto.server_side.model.ScannerType;
+import com.katynova.resto.server_side.model.TableSlots;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// поиск столов, свободных на отрезке брони, и отсев столов для предложений на одном дне одной вместимости
+// день с 10:00 до 23:00 по 30 минут, занят примерно наполовину
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FreeWindowScanBenchmark {
+
+    private static final int SLOTS = 26;
+
+    @Param({"50", "500", "5000"})
+    int tables;
+
+    @Param({"SCALAR", "VECTOR"})
+    ScannerType scanner;
+
+    FreeTableIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Map<Integer, TableSlots> tablesByNumber = new LinkedHashMap<>();
+        for (int number = 1; number <= tables; number++) {
+            TableSlots table = new TableSlots(LocalTime.of(10, 0), 30, SLOTS);
+            for (int booking = 0; booking < 3; booking++) {
+                int from = random.nextInt(SLOTS - 4);
+                table.tryReserve(from, from + 4);
+            }
+            tablesByNumber.put(number, table);
+        }
+        index = new FreeTableIndex(tablesByNumber, scanner.create());
+    }
+
+    // бронь на 2 часа в 18:00
+    @Benchmark
+    public long[] tablesFreeDuring() {
+        return index.tablesFreeDuring(16, 20);
+    }
+
+    // окно предложений: час до и час после брони
+    @Benchmark
+    public long[] tablesFreeWithin() {
+        return index.tablesFreeWithin(14, 22);
+    }
+}
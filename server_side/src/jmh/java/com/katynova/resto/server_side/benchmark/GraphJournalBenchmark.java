@@ -0,0 +1,72 @@
+package com.katynova.resto.server_side.benchmark;
+
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.model.BookingPosition;
+import com.katynova.resto.server_side.model.TableSlots;
+import com.katynova.resto.server_side.service.GraphJournal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// запись брони в журнал графа (с подсчетом CRC) и восстановление после рестарта: снимок плюс журнал поверх него
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphJournalBenchmark {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 7, 18);
+
+    // записей в журнале поверх пустого снимка
+    @Param({"1000", "100000"})
+    int records;
+
+    Path directory;
+    GraphJournal journal;
+    BookingPosition position;
+    long nextId;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("graph-journal-benchmark");
+        TimeGraphConfig config = new TimeGraphConfig();
+        config.setJournalEnabled(true);
+        config.setJournalDir(directory.toString());
+        journal = new GraphJournal(config);
+        position = new BookingPosition(DAY, 2, 1, new TableSlots(LocalTime.of(10, 0), 30, 26).slice(16, 20));
+        journal.writeSnapshot(Map.of());
+        for (nextId = 1; nextId <= records; nextId++) {
+            journal.appendBook(nextId, position);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.writeSnapshot(Map.of());
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void appendBook() {
+        journal.appendBook(nextId++, position);
+    }
+
+    @Benchmark
+    public Map<Long, GraphJournal.Entry> restore() {
+        return journal.restore();
+    }
+}
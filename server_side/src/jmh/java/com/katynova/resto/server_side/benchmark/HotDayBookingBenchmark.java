@@ -0,0 +1,143 @@
+package com.katynova.resto.server_side.benchmark;
+
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.config.WorkTimeConfig;
+import com.katynova.resto.server_side.model.BookingPosition;
+import com.katynova.resto.server_side.model.FindResponse;
+import com.katynova.resto.server_side.model.entity.RestTable;
+import com.katynova.resto.server_side.model.info.AppropriateBookingInfo;
+import com.katynova.resto.server_side.model.info.SuggestBookingInfo;
+import com.katynova.resto.server_side.repository.BookingRepository;
+import com.katynova.resto.server_side.repository.OpeningHoursOverrideRepository;
+import com.katynova.resto.server_side.repository.TableRepository;
+import com.katynova.resto.server_side.service.BookingWriteBehind;
+import com.katynova.resto.server_side.service.GraphChangelog;
+import com.katynova.resto.server_side.service.GraphCreator;
+import com.katynova.resto.server_side.service.GraphJournal;
+import com.katynova.resto.server_side.service.GraphLocks;
+import com.katynova.resto.server_side.service.GraphShards;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import com.katynova.resto.server_side.utility_service.CapacityService;
+import com.katynova.resto.server_side.utility_service.OpeningHoursCalendar;
+import com.katynova.resto.server_side.utility_service.WorkingHoursCounter;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+// пропускная способность поиска с захватом слотов на одном "горячем" дне: режим без блокировок (CAS)
+// против страйпов с блокировками столов, один поток против четырех
+// день занят примерно наполовину; каждая операция ищет стол и сразу снимает захваченный резерв,
+// поэтому занятость дня от замера к замеру не меняется
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotDayBookingBenchmark {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 7, 15);
+    private static final int TABLES = 30;
+
+    @Param({"false", "true"})
+    boolean lockFree;
+
+    TimeGraphService service;
+
+    @Setup
+    public void setUp() {
+        TimeGraphConfig timeGraphConfig = new TimeGraphConfig();
+        timeGraphConfig.setLockFree(lockFree);
+        WorkTimeConfig workTimeConfig = new WorkTimeConfig();
+        workTimeConfig.setOpenTime(LocalTime.of(10, 0));
+        workTimeConfig.setCloseWeekdaysTime(LocalTime.of(23, 0));
+        workTimeConfig.setCloseWeekendTime(LocalTime.of(1, 0));
+        // заглушки без записи вызовов: иначе Mockito копил бы историю миллионов обращений
+        TableRepository tableRepository = mock(TableRepository.class, withSettings().stubOnly());
+        when(tableRepository.findAll()).thenReturn(IntStream.rangeClosed(1, TABLES).mapToObj(number -> {
+            RestTable table = new RestTable();
+            table.setTableNumber(number);
+            table.setCapacity(number % 3 == 0 ? 4 : 2);
+            return table;
+        }).toList());
+        when(tableRepository.findDistinctCapacity()).thenReturn(List.of(2, 4));
+        CapacityService capacityService = new CapacityService(tableRepository);
+        capacityService.init();
+        OpeningHoursCalendar calendar = new OpeningHoursCalendar(new WorkingHoursCounter(workTimeConfig),
+                mock(OpeningHoursOverrideRepository.class, withSettings().stubOnly()), timeGraphConfig, event -> { });
+        GraphLocks graphLocks = new GraphLocks();
+        GraphChangelog graphChangelog = new GraphChangelog(timeGraphConfig, null, graphLocks);
+        graphChangelog.init();
+        service = new TimeGraphService(mock(BookingRepository.class, withSettings().stubOnly()), tableRepository,
+                new GraphCreator(calendar, timeGraphConfig), calendar, capacityService, timeGraphConfig, graphLocks,
+                new GraphJournal(timeGraphConfig), new GraphShards(timeGraphConfig), graphChangelog,
+                mock(BookingWriteBehind.class, withSettings().stubOnly()), event -> { });
+
+        // брони, которые остаются в дне на весь замер: id проставляется, чтобы их не снимала операция
+        Random random = new Random(42);
+        for (long bookingId = 1; bookingId <= 60; bookingId++) {
+            BookingRequestDto request = request(random.nextInt(19), 1 + random.nextInt(4));
+            for (Object info : service.findBooking(request).getList()) {
+                if (info instanceof AppropriateBookingInfo appropriate) {
+                    service.assignBooking(bookingId, service.reservedPosition(request.getStartTime(), appropriate));
+                } else if (info instanceof SuggestBookingInfo suggest) {
+                    service.releaseHold(position(suggest));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int oneThread() {
+        return bookAndRelease();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int fourThreads() {
+        return bookAndRelease();
+    }
+
+    private int bookAndRelease() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        BookingRequestDto request = request(random.nextInt(19), 1 + random.nextInt(4));
+        FindResponse<?> response = service.findBooking(request);
+        for (Object info : response.getList()) {
+            if (info instanceof AppropriateBookingInfo appropriate) {
+                service.releaseHold(service.reservedPosition(request.getStartTime(), appropriate));
+            } else if (info instanceof SuggestBookingInfo suggest) {
+                service.releaseHold(position(suggest));
+            }
+        }
+        return response.getList().size();
+    }
+
+    private static BookingPosition position(SuggestBookingInfo suggest) {
+        return new BookingPosition(DAY.plusDays(suggest.getDayOffset()), suggest.getCapacity(),
+                suggest.getTableNumber(), suggest.getSlots());
+    }
+
+    // начало - с 10:00 по 18:00 через полчаса, длительность - 2 часа
+    private static BookingRequestDto request(int slot, int persons) {
+        BookingRequestDto request = new BookingRequestDto();
+        request.setGuestId(1L);
+        request.setPersons(persons);
+        request.setStartTime(LocalDateTime.of(DAY, LocalTime.of(10, 0).plusMinutes(30L * slot)));
+        request.setDuration(Duration.ofHours(2));
+        return request;
+    }
+}
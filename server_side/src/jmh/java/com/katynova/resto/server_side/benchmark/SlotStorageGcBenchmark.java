@@ -0,0 +1,73 @@
+package com.katynova.resto.server_side.benchmark;
+
+import com.katynova.resto.server_side.model.FreeTableIndex;
+import com.katynova.resto.server_side.model.GraphSlot;
+import com.katynova.resto.server_side.model.SlotStorage;
+import com.katynova.resto.server_side.model.TableSlots;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// одна и та же нагрузка на граф со слотами в куче и вне ее: год по 1000 столов, слоты по 15 минут
+// операция захватывает отрезок случайного стола, собирает по нему слоты ответа (мусор, как у поиска) и снимает захват
+// паузы сборщика пишутся в gc-<pid>.log рабочей директории, занятость кучи после построения графа - в вывод форка;
+// запуск с -prof gc добавляет к результату число и суммарное время сборок
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-Xmn128m", "-XX:+UseG1GC", "-Xlog:gc:file=gc-%p.log"})
+@State(Scope.Benchmark)
+public class SlotStorageGcBenchmark {
+
+    private static final int DAYS = 365;
+    private static final int TABLES = 1000;
+    private static final int SLOTS = 52;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    SlotStorage storage;
+
+    List<FreeTableIndex> days;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        days = new ArrayList<>(DAYS);
+        for (int day = 0; day < DAYS; day++) {
+            Map<Integer, TableSlots> tablesByNumber = new LinkedHashMap<>();
+            for (int number = 1; number <= TABLES; number++) {
+                TableSlots table = new TableSlots(LocalTime.of(10, 0), 15, SLOTS, storage);
+                int from = random.nextInt(SLOTS - 8);
+                table.book(from, from + 8, (long) day * TABLES + number);
+                tablesByNumber.put(number, table);
+            }
+            days.add(new FreeTableIndex(tablesByNumber));
+        }
+        System.gc();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("%n%s: heap used after building the graph %d MB of %d MB%n", storage,
+                heap.getUsed() >> 20, heap.getMax() >> 20);
+    }
+
+    @Benchmark
+    public List<GraphSlot> reserveAndRelease() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        TableSlots table = days.get(random.nextInt(DAYS)).table(random.nextInt(TABLES));
+        int from = random.nextInt(SLOTS - 8);
+        if (!table.tryReserve(from, from + 8)) {
+            return List.of();
+        }
+        List<GraphSlot> slots = new ArrayList<>(table.subList(from, from + 8));
+        table.unreserve(from, from + 8);
+        return slots;
+    }
+}
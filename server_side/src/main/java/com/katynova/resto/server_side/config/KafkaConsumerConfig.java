@@ -3,10 +3,15 @@ package com.katynova.resto.server_side.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.katynova.resto.common_dto_library.AvailabilityProbeRequestDto;
+import com.katynova.resto.common_dto_library.AvailabilityRequestDto;
 import com.katynova.resto.common_dto_library.BookingRequestDto;
 import com.katynova.resto.common_dto_library.response.SlotConfirmation;
+import com.katynova.resto.server_side.service.GraphChangelog;
+import com.katynova.resto.server_side.service.GraphRebalanceListener;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.RangeAssignor;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
@@ -63,6 +68,54 @@ public class KafkaConsumerConfig {
         return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), deserializer);
     }
 
+    @Bean
+    public ConsumerFactory<String, AvailabilityRequestDto> availabilityConsumerFactory(ObjectMapper objectMapper) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "resto");
+        JsonDeserializer<AvailabilityRequestDto> deserializer = new JsonDeserializer<>(AvailabilityRequestDto.class, objectMapper);
+        deserializer.addTrustedPackages("com.katynova.resto.common_dto_library");
+        log.info("Creating ConsumerFactory with AvailabilityRequestDto deserializer");
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), deserializer);
+    }
+
+    @Bean
+    public ConsumerFactory<String, AvailabilityProbeRequestDto> probeConsumerFactory(ObjectMapper objectMapper) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "resto");
+        JsonDeserializer<AvailabilityProbeRequestDto> deserializer = new JsonDeserializer<>(AvailabilityProbeRequestDto.class, objectMapper);
+        deserializer.addTrustedPackages("com.katynova.resto.common_dto_library");
+        log.info("Creating ConsumerFactory with AvailabilityProbeRequestDto deserializer");
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), deserializer);
+    }
+
+    // шардирование: один потребитель читает запросы и подтверждения, тип значения берется из заголовка типа
+    // RangeAssignor назначает потребителю одинаковые номера партиций обоих топиков
+    @Bean
+    public ConsumerFactory<String, Object> shardedConsumerFactory(ObjectMapper objectMapper) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "resto");
+        props.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, RangeAssignor.class.getName());
+        JsonDeserializer<Object> deserializer = new JsonDeserializer<>(objectMapper);
+        deserializer.addTrustedPackages("com.katynova.resto.common_dto_library",
+                "com.katynova.resto.common_dto_library.response");
+        log.info("Creating sharded ConsumerFactory for request and confirmation topics");
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), deserializer);
+    }
+
+    // журнал изменений графа для реплики: пустое значение (tombstone) JsonDeserializer отдает как null
+    @Bean
+    public ConsumerFactory<String, GraphChangelog.TableState> changelogConsumerFactory(ObjectMapper objectMapper) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        JsonDeserializer<GraphChangelog.TableState> deserializer =
+                new JsonDeserializer<>(GraphChangelog.TableState.class, objectMapper, false);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), deserializer);
+    }
+
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, BookingRequestDto> factory(
             ConsumerFactory<String, BookingRequestDto> consumerFactory) {
@@ -73,6 +126,42 @@ public class KafkaConsumerConfig {
         return factory;
     }
 
+    // пакетный режим для request_topic: слушатель получает весь poll разом
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, BookingRequestDto> batchFactory(
+            ConsumerFactory<String, BookingRequestDto> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, BookingRequestDto> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConcurrency(3);
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        // не больше, чем hibernate вставляет одним батчем
+        factory.getContainerProperties().getKafkaConsumerProperties()
+                .setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "50");
+        return factory;
+    }
+
+    // дни графа следуют за партициями: перебалансировка удаляет отданные дни и строит назначенные до первых записей
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> shardedFactory(
+            ConsumerFactory<String, Object> shardedConsumerFactory, GraphRebalanceListener graphRebalanceListener) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConcurrency(3);
+        factory.setConsumerFactory(shardedConsumerFactory);
+        factory.getContainerProperties().setConsumerRebalanceListener(graphRebalanceListener);
+        return factory;
+    }
+
+    // записи журнала применяет один поток: состояния одного стола должны идти в порядке публикации
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, GraphChangelog.TableState> changelogFactory(
+            ConsumerFactory<String, GraphChangelog.TableState> changelogConsumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, GraphChangelog.TableState> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConcurrency(1);
+        factory.setConsumerFactory(changelogConsumerFactory);
+        return factory;
+    }
+
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, SlotConfirmation> slotFactory(
             ConsumerFactory<String, SlotConfirmation> consumerFactory) {
@@ -81,4 +170,23 @@ public class KafkaConsumerConfig {
         factory.setConsumerFactory(consumerFactory);
         return factory;
     }
+
+    // просмотр доступности идет отдельным топиком и своими потоками, не занимая потоки бронирования
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, AvailabilityRequestDto> availabilityFactory(
+            ConsumerFactory<String, AvailabilityRequestDto> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, AvailabilityRequestDto> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConcurrency(3);
+        factory.setConsumerFactory(consumerFactory);
+        return factory;
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, AvailabilityProbeRequestDto> probeFactory(
+            ConsumerFactory<String, AvailabilityProbeRequestDto> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, AvailabilityProbeRequestDto> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConcurrency(3);
+        factory.setConsumerFactory(consumerFactory);
+        return factory;
+    }
 }
@@ -2,10 +2,14 @@ package com.katynova.resto.server_side.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.katynova.resto.common_dto_library.response.BookingResponse;
+import com.katynova.resto.server_side.service.GraphChangelog;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
@@ -33,5 +37,30 @@ public class KafkaProducerConfig {
             ProducerFactory<String, BookingResponse> producerFactory) {
         return new KafkaTemplate<>(producerFactory);
     }
+
+    // журнал изменений графа: отправки одного ключа не должны переставляться, поэтому идемпотентный продюсер
+    @Bean
+    public ProducerFactory<String, GraphChangelog.TableState> changelogProducerFactory(ObjectMapper objectMapper) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        config.put(ProducerConfig.ACKS_CONFIG, "all");
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        return new DefaultKafkaProducerFactory<>(config, new StringSerializer(),
+                new JsonSerializer<>(objectMapper));
+    }
+
+    @Bean
+    public KafkaTemplate<String, GraphChangelog.TableState> changelogTemplate(
+            ProducerFactory<String, GraphChangelog.TableState> changelogProducerFactory) {
+        return new KafkaTemplate<>(changelogProducerFactory);
+    }
+
+    // компактный топик: после компакции в нем остается последнее состояние каждого стола, удаленные дни уходят
+    @Bean
+    @ConditionalOnProperty(name = "time-graph.changelog-enabled", havingValue = "true")
+    public NewTopic graphChangelogTopic(TimeGraphConfig timeGraphConfig) {
+        return TopicBuilder.name(timeGraphConfig.getChangelogTopic()).partitions(3).compact().build();
+    }
 }
 
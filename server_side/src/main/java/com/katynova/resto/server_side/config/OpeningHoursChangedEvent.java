@@ -0,0 +1,20 @@
+package com.katynova.resto.server_side.config;
+
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+// часы работы этих дней поменялись после перезагрузки календаря
+@Getter
+public class OpeningHoursChangedEvent extends ApplicationEvent {
+
+    private final Set<LocalDate> days;
+
+    public OpeningHoursChangedEvent(Object source, Set<LocalDate> days) {
+        super(source);
+        this.days = days;
+    }
+}
@@ -0,0 +1,57 @@
+package com.katynova.resto.server_side.config;
+
+import com.katynova.resto.server_side.model.ScannerType;
+import com.katynova.resto.server_side.model.SlotStorage;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "time-graph")
+@Getter
+@Setter
+public class TimeGraphConfig {
+    // без блокировки дня: слоты захватываются через CAS, при конфликте берется следующий подходящий стол
+    private boolean lockFree = false;
+    // скользящий горизонт графа: дни раньше today - horizonDaysBack удаляются,
+    // дни до today + horizonDaysAhead создаются заранее
+    private int horizonDaysBack = 1;
+    private int horizonDaysAhead = 30;
+    // обслуживание горизонта в тихое время, до ночной очистки броней
+    private String horizonCron = "0 30 4 * * *";
+    // снимок графа и журнал изменений для быстрого рестарта; без них граф при старте строится из базы
+    private boolean journalEnabled = false;
+    private String journalDir = "./data/time-graph";
+    private String snapshotCron = "0 */5 * * * *";
+    // хранение слотов: в куче или вне ее (off-heap требует запуска JVM с --enable-preview)
+    private SlotStorage storage = SlotStorage.HEAP;
+    // обход масок индекса свободных окон: скалярно или через Vector API
+    // (vector требует запуска JVM с --add-modules jdk.incubator.vector)
+    private ScannerType scanner = ScannerType.SCALAR;
+    // гибкий поиск по окну времени: сколько ближайших к желаемому времени вариантов предлагать
+    private int windowOptions = 4;
+    // если запрошенный день занят, предлагаем то же время на днях до crossDaySpan назад и вперед; 0 - выключено
+    private int crossDaySpan = 0;
+    // страховочная очистка PENDING броней, оставшихся в базе с прошлых версий; резервы в памяти истекают сами
+    private String pendingSweepCron = "0 */15 * * * *";
+    // пакетный слушатель request_topic: запросы одного дня из одного poll обрабатываются под одним захватом страйпов
+    private boolean batchListener = false;
+    // клиент ключует запросы рабочим днем (BusinessDayPartitioner), поэтому каждый день ищет один потребитель
+    // и страйпы дней можно не брать; включать, только если клиент использует этот партиционер
+    private boolean dayAffinity = false;
+    // несколько экземпляров сервиса: каждый держит в графе только дни своих партиций request_topic
+    // и переносит их при перебалансировке группы; требует BusinessDayPartitioner у клиента, как и dayAffinity
+    private boolean sharding = false;
+    // журнал изменений графа в компактном топике: каждое изменение стола публикуется его полным состоянием
+    private boolean changelogEnabled = false;
+    private String changelogTopic = "time_graph_changelog";
+    // теплый резерв / реплика для чтения: граф строится из журнала изменений, запросы на бронирование не слушаются
+    // основным экземпляром реплику делает JMX-операция promote у GraphReplica
+    private boolean replica = false;
+    // отложенная запись броней: ответ уходит после захвата в графе и fsync локального журнала,
+    // в базу брони пишет отдельный поток пачками до writeBehindBatchSize
+    private boolean writeBehind = false;
+    private String writeBehindDir = "./data/write-behind";
+    private int writeBehindBatchSize = 50;
+}
@@ -0,0 +1,20 @@
+package com.katynova.resto.server_side.config;
+
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+// дни ушли из графа или заменены пересобранными: позиции в их старых столах больше никуда не ведут
+@Getter
+public class TimeGraphDaysDroppedEvent extends ApplicationEvent {
+
+    private final Set<LocalDate> days;
+
+    public TimeGraphDaysDroppedEvent(Object source, Set<LocalDate> days) {
+        super(source);
+        this.days = days;
+    }
+}
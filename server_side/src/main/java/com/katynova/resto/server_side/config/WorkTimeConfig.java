@@ -15,4 +15,15 @@ public class WorkTimeConfig {
     private LocalTime openTime;
     private LocalTime closeWeekdaysTime;
     private LocalTime closeWeekendTime;
+    // длина слота графа в минутах; час должен делиться на слоты без остатка
+    private int slotMinutes = 30;
+    // перечитывание особых дней (праздники, мероприятия) из базы
+    private String calendarReloadCron = "0 */10 * * * *";
+
+    public void setSlotMinutes(int slotMinutes) {
+        if (slotMinutes <= 0 || 60 % slotMinutes != 0) {
+            throw new IllegalArgumentException("Slot length must divide an hour, got " + slotMinutes + " minutes");
+        }
+        this.slotMinutes = slotMinutes;
+    }
 }
@@ -0,0 +1,87 @@
+package com.katynova.resto.server_side.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// копия индекса свободных окон одной вместимости за день: маски свободных столов по слотам
+// массив после создания не меняется, поэтому снимок читается из любого потока без блокировок
+public final class AvailabilitySnapshot {
+
+    private final long version;
+    private final int slots;
+    private final int wordsPerSlot;
+    private final long[] freeTables;
+
+    AvailabilitySnapshot(long version, int slots, int wordsPerSlot, long[] freeTables) {
+        this.version = version;
+        this.slots = slots;
+        this.wordsPerSlot = wordsPerSlot;
+        this.freeTables = freeTables;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    // сколько столов свободно на всем отрезке [from, to)
+    public int freeTablesDuring(int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+        int count = 0;
+        for (int word = 0; word < wordsPerSlot; word++) {
+            long mask = -1L;
+            for (int i = from; i < to && mask != 0; i++) {
+                mask &= freeTables[i * wordsPerSlot + word];
+            }
+            count += Long.bitCount(mask);
+        }
+        return count;
+    }
+
+    // окна [from, to), внутри которых хотя бы один стол свободен на length слотов подряд
+    // соседние и пересекающиеся подходящие отрезки склеиваются в одно окно
+    public List<Window> freeWindows(int length) {
+        List<Window> windows = new ArrayList<>();
+        int windowFrom = -1;
+        int windowTo = -1;
+        for (int start = 0; start + length <= slots; start++) {
+            if (!anyTableFreeDuring(start, start + length)) {
+                continue;
+            }
+            if (windowTo >= start) {
+                windowTo = start + length;
+            } else {
+                if (windowFrom >= 0) {
+                    windows.add(new Window(windowFrom, windowTo));
+                }
+                windowFrom = start;
+                windowTo = start + length;
+            }
+        }
+        if (windowFrom >= 0) {
+            windows.add(new Window(windowFrom, windowTo));
+        }
+        return windows;
+    }
+
+    private boolean anyTableFreeDuring(int from, int to) {
+        for (int word = 0; word < wordsPerSlot; word++) {
+            long mask = -1L;
+            for (int i = from; i < to && mask != 0; i++) {
+                mask &= freeTables[i * wordsPerSlot + word];
+            }
+            if (mask != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public record Window(int from, int to) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.katynova.resto.server_side.model;
+
+import java.time.LocalDateTime;
+
+// проекция брони для загрузки графа: только поля, нужные для разметки слотов
+public record BookingGraphRow(Long id, Integer tableNumber, Integer capacity,
+                              LocalDateTime startTime, LocalDateTime endTime) {
+}
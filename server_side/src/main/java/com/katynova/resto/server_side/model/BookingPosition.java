@@ -0,0 +1,7 @@
+package com.katynova.resto.server_side.model;
+
+import java.time.LocalDate;
+
+// место брони в графе: день, вместимость и номер стола нужны для блокировок, отрезок - для самого освобождения
+public record BookingPosition(LocalDate day, int capacity, int tableNumber, SlotRange slots) {
+}
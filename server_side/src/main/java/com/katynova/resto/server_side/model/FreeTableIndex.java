@@ -0,0 +1,140 @@
+package com.katynova.resto.server_side.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// транспонированный индекс свободных окон для столов одной вместимости за один день:
+// для каждого слота хранится битовая маска столов, у которых этот слот свободен.
+// столы, свободные на всем отрезке [from, to), находятся AND-ом масок нужных слотов, без обхода столов.
+// индекс обновляется самими TableSlots при каждом изменении, источник истины - биты стола,
+// поэтому выбранный по индексу стол все равно захватывается через tryReserve
+public class FreeTableIndex {
+
+    private final int[] tableNumbers;
+    private final TableSlots[] tables;
+    private final int slots;
+    private final int wordsPerSlot;
+    // обычный массив, а не AtomicLongArray, чтобы сканер мог читать его векторами; запись идет через CAS
+    private final long[] freeTables;
+    private final FreeWindowScanner scanner;
+    // растет после каждого изменения; снимок для просмотра доступности пересчитывается, только если версия ушла
+    private final AtomicLong version = new AtomicLong();
+    private volatile AvailabilitySnapshot snapshot;
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    public FreeTableIndex(Map<Integer, TableSlots> tablesByNumber) {
+        this(tablesByNumber, new ScalarFreeWindowScanner());
+    }
+
+    public FreeTableIndex(Map<Integer, TableSlots> tablesByNumber, FreeWindowScanner scanner) {
+        this.scanner = scanner;
+        int count = tablesByNumber.size();
+        this.tableNumbers = new int[count];
+        this.tables = new TableSlots[count];
+        int column = 0;
+        // порядок столов в индексе совпадает с порядком обхода мапы, как и при полном переборе
+        for (Map.Entry<Integer, TableSlots> entry : tablesByNumber.entrySet()) {
+            tableNumbers[column] = entry.getKey();
+            tables[column] = entry.getValue();
+            column++;
+        }
+        this.slots = count == 0 ? 0 : tables[0].size();
+        this.wordsPerSlot = (count + 63) >>> 6;
+        this.freeTables = new long[slots * wordsPerSlot];
+        for (int c = 0; c < count; c++) {
+            for (int i = 0; i < slots; i++) {
+                if (tables[c].isAvailable(i)) {
+                    setBit(i, c);
+                }
+            }
+            tables[c].attach(this, c);
+        }
+    }
+
+    public int size() {
+        return tables.length;
+    }
+
+    public TableSlots table(int column) {
+        return tables[column];
+    }
+
+    public int tableNumber(int column) {
+        return tableNumbers[column];
+    }
+
+    // маска столов (по номерам колонок), у которых свободен весь отрезок [from, to)
+    public long[] tablesFreeDuring(int from, int to) {
+        long[] mask = new long[wordsPerSlot];
+        Arrays.fill(mask, -1L);
+        // биты за последним столом сбрасываем сразу, чтобы пустой отрезок не вернул несуществующие столы
+        if (wordsPerSlot > 0 && (tables.length & 63) != 0) {
+            mask[wordsPerSlot - 1] = (1L << tables.length) - 1;
+        }
+        scanner.tablesFreeDuring(freeTables, wordsPerSlot, from, to, mask);
+        return mask;
+    }
+
+    // маска столов, у которых на отрезке [from, to) есть хоть один свободный слот
+    // столы без единого свободного слота можно не проверять при поиске предложений
+    public long[] tablesFreeWithin(int from, int to) {
+        long[] mask = new long[wordsPerSlot];
+        scanner.tablesFreeWithin(freeTables, wordsPerSlot, from, to, mask);
+        return mask;
+    }
+
+    // неизменяемая копия индекса для чтения без блокировок: запись только увеличивает версию,
+    // а копию делает первый читатель после нее
+    // копия может застать запись на середине отрезка - для просмотра доступности этого достаточно,
+    // версия при этом уже ушла вперед, и следующий читатель возьмет свежую копию
+    public AvailabilitySnapshot snapshot() {
+        long currentVersion = version.get();
+        AvailabilitySnapshot current = snapshot;
+        if (current != null && current.version() == currentVersion) {
+            return current;
+        }
+        long[] words = new long[freeTables.length];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = (long) WORDS.getVolatile(freeTables, i);
+        }
+        AvailabilitySnapshot fresh = new AvailabilitySnapshot(currentVersion, slots, wordsPerSlot, words);
+        snapshot = fresh;
+        return fresh;
+    }
+
+    void occupy(int column, int from, int to) {
+        for (int i = from; i < to; i++) {
+            clearBit(i, column);
+        }
+        version.incrementAndGet();
+    }
+
+    void release(int column, int from, int to) {
+        for (int i = from; i < to; i++) {
+            setBit(i, column);
+        }
+        version.incrementAndGet();
+    }
+
+    private void setBit(int slot, int column) {
+        int position = slot * wordsPerSlot + (column >>> 6);
+        long bit = 1L << column;
+        long current;
+        do {
+            current = (long) WORDS.getVolatile(freeTables, position);
+        } while (!WORDS.compareAndSet(freeTables, position, current, current | bit));
+    }
+
+    private void clearBit(int slot, int column) {
+        int position = slot * wordsPerSlot + (column >>> 6);
+        long bit = 1L << column;
+        long current;
+        do {
+            current = (long) WORDS.getVolatile(freeTables, position);
+        } while (!WORDS.compareAndSet(freeTables, position, current, current & ~bit));
+    }
+}
@@ -0,0 +1,12 @@
+package com.katynova.resto.server_side.model;
+
+// обход масок индекса свободных окон: freeTables хранит по wordsPerSlot слов на слот, бит - стол
+// результат пишется в mask, которую заранее заполняет вызывающий
+public interface FreeWindowScanner {
+
+    // mask &= маски всех слотов [from, to): остаются столы, свободные на всем отрезке
+    void tablesFreeDuring(long[] freeTables, int wordsPerSlot, int from, int to, long[] mask);
+
+    // mask |= маски всех слотов [from, to): столы, у которых на отрезке есть хоть один свободный слот
+    void tablesFreeWithin(long[] freeTables, int wordsPerSlot, int from, int to, long[] mask);
+}
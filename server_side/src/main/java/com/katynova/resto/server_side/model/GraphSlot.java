@@ -3,36 +3,36 @@ package com.katynova.resto.server_side.model;
 
 import java.time.LocalTime;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
+// легковесное представление одного слота поверх упакованного TableSlots, само состояние не хранит
 public record GraphSlot(
-        LocalTime time,
-        AtomicBoolean available,
-        AtomicReference<Long> bookingId
+        TableSlots table,
+        int index
 ) {
 
     public boolean isAvailable() {
-        return available.get();
+        return table.isAvailable(index);
     }
 
     public LocalTime getTime() {
-        return time;
+        return table.timeAt(index);
+    }
+
+    public Long bookingId() {
+        long id = table.bookingIdAt(index);
+        return id == TableSlots.NO_BOOKING ? null : id;
     }
 
     public void book(Long id) {
-        bookingId.set(id);
-        available.set(false);
+        table.book(index, index + 1, id);
     }
 
     public void reserve() {
-        bookingId.set(-1L);
-        available.set(false);
+        table.reserve(index, index + 1);
     }
 
     public void unreserve() {
-        bookingId.set(null);
-        available.set(true);
+        table.unreserve(index, index + 1);
     }
 
     // делаем equals только по времени, для варианта с suggest
@@ -41,12 +41,18 @@ public record GraphSlot(
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         GraphSlot graphSlot = (GraphSlot) o;
-        return time.equals(graphSlot.time);
+        return getTime().equals(graphSlot.getTime());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(time);
+        return Objects.hash(getTime());
+    }
+
+    // сам стол не печатаем, иначе toString уйдет в рекурсию через список слотов
+    @Override
+    public String toString() {
+        return "GraphSlot[time=" + getTime() + ", available=" + isAvailable() + ", bookingId=" + bookingId() + "]";
     }
 
 }
@@ -0,0 +1,33 @@
+package com.katynova.resto.server_side.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// хранение в куче, по умолчанию
+public class HeapSlotWords implements SlotWords {
+
+    private final AtomicLongArray words;
+
+    public HeapSlotWords(int length) {
+        this.words = new AtomicLongArray(length);
+    }
+
+    @Override
+    public long get(int index) {
+        return words.get(index);
+    }
+
+    @Override
+    public void set(int index, long value) {
+        words.set(index, value);
+    }
+
+    @Override
+    public boolean compareAndSet(int index, long expectedValue, long newValue) {
+        return words.compareAndSet(index, expectedValue, newValue);
+    }
+
+    @Override
+    public int length() {
+        return words.length();
+    }
+}
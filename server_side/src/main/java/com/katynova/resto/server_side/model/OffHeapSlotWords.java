@@ -0,0 +1,51 @@
+package com.katynova.resto.server_side.model;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+
+// хранение вне кучи в MemorySegment: слоты не нагружают сборщик мусора, в куче остается только сам объект сегмента
+// в Java 21 FFM API - preview, поэтому класс загружается только при time-graph.storage=off-heap и требует --enable-preview
+// память автоматической арены освобождается, когда сегмент становится недостижим, например после удаления дня из графа
+public class OffHeapSlotWords implements SlotWords {
+
+    private static final VarHandle WORD = ValueLayout.JAVA_LONG.arrayElementVarHandle();
+
+    private final MemorySegment segment;
+    private final int length;
+
+    public OffHeapSlotWords(int length) {
+        this.length = length;
+        // память арены заполнена нулями, как и новый AtomicLongArray
+        this.segment = Arena.ofAuto().allocate(ValueLayout.JAVA_LONG.byteSize() * Math.max(length, 1),
+                ValueLayout.JAVA_LONG.byteAlignment());
+    }
+
+    @Override
+    public long get(int index) {
+        return (long) WORD.getVolatile(segment, checkIndex(index));
+    }
+
+    @Override
+    public void set(int index, long value) {
+        WORD.setVolatile(segment, checkIndex(index), value);
+    }
+
+    @Override
+    public boolean compareAndSet(int index, long expectedValue, long newValue) {
+        return WORD.compareAndSet(segment, checkIndex(index), expectedValue, newValue);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    private long checkIndex(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,13 @@
+package com.katynova.resto.server_side.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// часы работы одного рабочего дня: открытие, закрытие (может быть уже на следующей дате) и число слотов графа
+// в закрытый день слотов нет
+public record OpeningHours(LocalDate day, LocalDateTime openTime, LocalDateTime closeTime, int slots) {
+
+    public boolean isClosed() {
+        return slots == 0;
+    }
+}
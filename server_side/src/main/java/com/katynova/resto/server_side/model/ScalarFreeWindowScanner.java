@@ -0,0 +1,30 @@
+package com.katynova.resto.server_side.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// по одному слову за раз, по умолчанию
+public final class ScalarFreeWindowScanner implements FreeWindowScanner {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    @Override
+    public void tablesFreeDuring(long[] freeTables, int wordsPerSlot, int from, int to, long[] mask) {
+        for (int i = from; i < to; i++) {
+            int base = i * wordsPerSlot;
+            for (int word = 0; word < wordsPerSlot; word++) {
+                mask[word] &= (long) WORDS.getVolatile(freeTables, base + word);
+            }
+        }
+    }
+
+    @Override
+    public void tablesFreeWithin(long[] freeTables, int wordsPerSlot, int from, int to, long[] mask) {
+        for (int i = from; i < to; i++) {
+            int base = i * wordsPerSlot;
+            for (int word = 0; word < wordsPerSlot; word++) {
+                mask[word] |= (long) WORDS.getVolatile(freeTables, base + word);
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.katynova.resto.server_side.model;
+
+// чем индекс свободных окон обходит маски столов
+public enum ScannerType {
+    SCALAR,
+    VECTOR;
+
+    public FreeWindowScanner create() {
+        return switch (this) {
+            case SCALAR -> new ScalarFreeWindowScanner();
+            case VECTOR -> new VectorFreeWindowScanner();
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package com.katynova.resto.server_side.model;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.AbstractList;
+
+// непрерывный отрезок слотов [from, to) одного стола, все операции выполняются сразу над битами
+@Getter
+public class SlotRange extends AbstractList<GraphSlot> {
+
+    private final TableSlots table;
+    private final int from;
+    private final int to;
+
+    public SlotRange(TableSlots table, int from, int to) {
+        this.table = table;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public GraphSlot get(int index) {
+        return table.get(from + index);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    public LocalTime getStartTime() {
+        return table.timeAt(from);
+    }
+
+    public LocalTime getEndTime() {
+        return table.timeAt(to);
+    }
+
+    public LocalDateTime getStartDateTime(LocalDateTime moment) {
+        return table.dateTimeAt(moment, from);
+    }
+
+    public LocalDateTime getEndDateTime(LocalDateTime moment) {
+        return table.dateTimeAt(moment, to);
+    }
+
+    public void book(long bookingId) {
+        table.book(from, to, bookingId);
+    }
+
+    public void reserve() {
+        table.reserve(from, to);
+    }
+
+    public boolean tryReserve() {
+        return table.tryReserve(from, to);
+    }
+
+    public void unreserve() {
+        table.unreserve(from, to);
+    }
+
+    public int unreserveBooking(long bookingId) {
+        return table.unreserveBooking(from, to, bookingId);
+    }
+}
@@ -0,0 +1,14 @@
+package com.katynova.resto.server_side.model;
+
+// где TableSlots хранит свои слова
+public enum SlotStorage {
+    HEAP,
+    OFF_HEAP;
+
+    public SlotWords allocate(int length) {
+        return switch (this) {
+            case HEAP -> new HeapSlotWords(length);
+            case OFF_HEAP -> new OffHeapSlotWords(length);
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package com.katynova.resto.server_side.model;
+
+// массив long-слов, в котором TableSlots хранит биты занятости и id броней
+// все операции атомарные, как у AtomicLongArray
+public interface SlotWords {
+
+    long get(int index);
+
+    void set(int index, long value);
+
+    boolean compareAndSet(int index, long expectedValue, long newValue);
+
+    int length();
+}
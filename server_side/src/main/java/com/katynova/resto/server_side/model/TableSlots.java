@@ -0,0 +1,271 @@
+package com.katynova.resto.server_side.model;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.AbstractList;
+
+// упакованное представление одного стола на один день:
+// занятость слотов хранится битами (1 - слот занят), id броней - в параллельном массиве примитивов
+// сами слова лежат в куче или вне ее, в зависимости от SlotStorage
+public class TableSlots extends AbstractList<GraphSlot> {
+
+    public static final long NO_BOOKING = 0L;
+    public static final long RESERVED = -1L;
+
+    private static final int MINUTES_IN_DAY = 24 * 60;
+
+    private final LocalTime openTime;
+    private final int slotMinutes;
+    private final int size;
+    private final SlotWords occupied;
+    private final SlotWords bookingIds;
+    // индекс свободных окон вместимости, в который входит стол, и колонка стола в нем
+    private volatile FreeTableIndex index;
+    private int column;
+
+    public TableSlots(LocalTime openTime, int slotMinutes, int size) {
+        this(openTime, slotMinutes, size, SlotStorage.HEAP);
+    }
+
+    public TableSlots(LocalTime openTime, int slotMinutes, int size, SlotStorage storage) {
+        this.openTime = openTime;
+        this.slotMinutes = slotMinutes;
+        this.size = size;
+        this.occupied = storage.allocate((size + 63) >>> 6);
+        this.bookingIds = storage.allocate(size);
+    }
+
+    void attach(FreeTableIndex index, int column) {
+        this.column = column;
+        this.index = index;
+    }
+
+    @Override
+    public GraphSlot get(int index) {
+        return new GraphSlot(this, index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public LocalTime getOpenTime() {
+        return openTime;
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    // номер слота, с которого начинается время; время после полуночи относится к этому же дню
+    public int indexOf(LocalTime time) {
+        int minutes = (time.toSecondOfDay() - openTime.toSecondOfDay()) / 60;
+        return Math.floorMod(minutes, MINUTES_IN_DAY) / slotMinutes;
+    }
+
+    public LocalTime timeAt(int index) {
+        return openTime.plusMinutes((long) slotMinutes * index);
+    }
+
+    // дата и время слота для рабочего дня, в который попадает moment; переход через полночь учитывается сам
+    public LocalDateTime dateTimeAt(LocalDateTime moment, int index) {
+        LocalDateTime open = moment.with(openTime);
+        if (open.isAfter(moment)) {
+            open = open.minusDays(1);
+        }
+        return open.plusMinutes((long) slotMinutes * index);
+    }
+
+    public SlotRange slice(int from, int to) {
+        return new SlotRange(this, from, to);
+    }
+
+    public boolean isAvailable(int index) {
+        return (occupied.get(index >>> 6) & (1L << index)) == 0;
+    }
+
+    public long bookingIdAt(int index) {
+        return bookingIds.get(index);
+    }
+
+    public boolean isFree(int from, int to) {
+        return nextOccupied(from, to) == to;
+    }
+
+    // количество свободных слотов подряд, заканчивающихся прямо перед index
+    public int freeBefore(int index) {
+        int count = 0;
+        int i = index;
+        while (i > 0) {
+            int word = (i - 1) >>> 6;
+            int bitsInWord = i - (word << 6);
+            long bits = occupied.get(word) & lowMask(bitsInWord);
+            if (bits != 0) {
+                int highest = 63 - Long.numberOfLeadingZeros(bits);
+                return count + bitsInWord - 1 - highest;
+            }
+            count += bitsInWord;
+            i -= bitsInWord;
+        }
+        return count;
+    }
+
+    // количество свободных слотов подряд, начиная с index
+    public int freeFrom(int index) {
+        return nextOccupied(index, size) - index;
+    }
+
+    // первый занятый слот в [from, to) или to, если таких нет
+    public int nextOccupied(int from, int to) {
+        return nextBit(from, to, false);
+    }
+
+    // первый свободный слот в [from, to) или to, если таких нет
+    public int nextFree(int from, int to) {
+        return nextBit(from, to, true);
+    }
+
+    public void book(int from, int to, long bookingId) {
+        for (int i = from; i < to; i++) {
+            bookingIds.set(i, bookingId);
+        }
+        for (int word = firstWord(from); word <= lastWord(to); word++) {
+            setBits(word, rangeMask(word, from, to));
+        }
+        syncIndex(from, to, false);
+    }
+
+    public void reserve(int from, int to) {
+        book(from, to, RESERVED);
+    }
+
+    // атомарно захватывает отрезок, только если он целиком свободен
+    // каждое слово захватывается через CAS, при конфликте уже захваченные слова откатываются,
+    // поэтому два потока никогда не получат один и тот же слот
+    public boolean tryReserve(int from, int to) {
+        for (int word = firstWord(from); word <= lastWord(to); word++) {
+            long mask = rangeMask(word, from, to);
+            long current;
+            do {
+                current = occupied.get(word);
+                if ((current & mask) != 0) {
+                    for (int claimed = firstWord(from); claimed < word; claimed++) {
+                        clearBits(claimed, rangeMask(claimed, from, to));
+                    }
+                    return false;
+                }
+            } while (!occupied.compareAndSet(word, current, current | mask));
+        }
+        for (int i = from; i < to; i++) {
+            bookingIds.set(i, RESERVED);
+        }
+        syncIndex(from, to, false);
+        return true;
+    }
+
+    public void unreserve(int from, int to) {
+        // сначала сбрасываем id, и только потом биты: после сброса бита слот может сразу захватить другой поток
+        for (int i = from; i < to; i++) {
+            bookingIds.set(i, NO_BOOKING);
+        }
+        for (int word = firstWord(from); word <= lastWord(to); word++) {
+            clearBits(word, rangeMask(word, from, to));
+        }
+        syncIndex(from, to, true);
+    }
+
+    // освобождает слоты отрезка, которые все еще принадлежат брони; чужие слоты не трогаем
+    public int unreserveBooking(int from, int to, long bookingId) {
+        int released = 0;
+        for (int i = from; i < to; i++) {
+            if (bookingIds.get(i) == bookingId) {
+                unreserve(i, i + 1);
+                released++;
+            }
+        }
+        return released;
+    }
+
+    private int nextBit(int from, int to, boolean free) {
+        if (from >= to) {
+            return to;
+        }
+        int word = from >>> 6;
+        long bits = (free ? ~occupied.get(word) : occupied.get(word)) & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return Math.min((word << 6) + Long.numberOfTrailingZeros(bits), to);
+            }
+            word++;
+            if (word << 6 >= to) {
+                return to;
+            }
+            bits = free ? ~occupied.get(word) : occupied.get(word);
+        }
+    }
+
+    // индекс обновляется после битов стола и может на мгновение от них отстать; при захвате это безопасно,
+    // так как захват все равно проверяется по битам стола. Но запоздавшая запись освобождения без блокировки
+    // перетерла бы захват, сделанный другим потоком сразу после сброса битов, и слот навсегда остался бы
+    // в индексе свободным. Поэтому после записи слоты перечитываются, и запись повторяется, пока бит стола
+    // не перестанет меняться: последняя запись в индекс любого потока всегда совпадает с битами
+    private void syncIndex(int from, int to, boolean free) {
+        FreeTableIndex current = index;
+        if (current == null) {
+            return;
+        }
+        if (free) {
+            current.release(column, from, to);
+        } else {
+            current.occupy(column, from, to);
+        }
+        for (int i = from; i < to; i++) {
+            boolean written = free;
+            boolean actual;
+            while ((actual = isAvailable(i)) != written) {
+                if (actual) {
+                    current.release(column, i, i + 1);
+                } else {
+                    current.occupy(column, i, i + 1);
+                }
+                written = actual;
+            }
+        }
+    }
+
+    private void setBits(int word, long mask) {
+        long current;
+        do {
+            current = occupied.get(word);
+        } while (!occupied.compareAndSet(word, current, current | mask));
+    }
+
+    private void clearBits(int word, long mask) {
+        long current;
+        do {
+            current = occupied.get(word);
+        } while (!occupied.compareAndSet(word, current, current & ~mask));
+    }
+
+    private static int firstWord(int from) {
+        return from >>> 6;
+    }
+
+    // для пустого отрезка маска получится нулевой, и операции над словом ничего не изменят
+    private static int lastWord(int to) {
+        return (to - 1) >> 6;
+    }
+
+    // маска битов слова word, попадающих в [from, to)
+    static long rangeMask(int word, int from, int to) {
+        int base = word << 6;
+        int lo = Math.max(from, base) - base;
+        int hi = Math.min(to, base + 64) - base;
+        return lowMask(hi) & (-1L << lo);
+    }
+
+    private static long lowMask(int bits) {
+        return bits >= 64 ? -1L : (1L << bits) - 1;
+    }
+}
@@ -0,0 +1,50 @@
+package com.katynova.resto.server_side.model;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API: за одну операцию обрабатывается столько слов (по 64 стола в каждом), сколько помещается в регистр
+// выигрыш есть, когда столов одной вместимости больше, чем помещается в один вектор; хвост считается скалярно
+// векторные загрузки читают массив без volatile: индекс и так может ненадолго отставать,
+// выбранный стол все равно захватывается через tryReserve
+// класс загружается только при time-graph.scanner=vector, JVM запускается с --add-modules jdk.incubator.vector
+public final class VectorFreeWindowScanner implements FreeWindowScanner {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public void tablesFreeDuring(long[] freeTables, int wordsPerSlot, int from, int to, long[] mask) {
+        int bound = SPECIES.loopBound(wordsPerSlot);
+        int word = 0;
+        for (; word < bound; word += SPECIES.length()) {
+            LongVector accumulator = LongVector.fromArray(SPECIES, mask, word);
+            for (int i = from; i < to; i++) {
+                accumulator = accumulator.and(LongVector.fromArray(SPECIES, freeTables, i * wordsPerSlot + word));
+            }
+            accumulator.intoArray(mask, word);
+        }
+        for (; word < wordsPerSlot; word++) {
+            for (int i = from; i < to; i++) {
+                mask[word] &= freeTables[i * wordsPerSlot + word];
+            }
+        }
+    }
+
+    @Override
+    public void tablesFreeWithin(long[] freeTables, int wordsPerSlot, int from, int to, long[] mask) {
+        int bound = SPECIES.loopBound(wordsPerSlot);
+        int word = 0;
+        for (; word < bound; word += SPECIES.length()) {
+            LongVector accumulator = LongVector.fromArray(SPECIES, mask, word);
+            for (int i = from; i < to; i++) {
+                accumulator = accumulator.or(LongVector.fromArray(SPECIES, freeTables, i * wordsPerSlot + word));
+            }
+            accumulator.intoArray(mask, word);
+        }
+        for (; word < wordsPerSlot; word++) {
+            for (int i = from; i < to; i++) {
+                mask[word] |= freeTables[i * wordsPerSlot + word];
+            }
+        }
+    }
+}
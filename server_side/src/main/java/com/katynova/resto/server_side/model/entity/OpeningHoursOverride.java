@@ -0,0 +1,36 @@
+package com.katynova.resto.server_side.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// особые часы работы на конкретную дату: праздники, мероприятия, санитарные дни
+// незаданное время открытия или закрытия берется из обычного расписания
+@Entity
+@Table(name = "opening_hours_overrides")
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+public class OpeningHoursOverride {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "override_date")
+    private LocalDate day;
+
+    private LocalTime openTime;
+    private LocalTime closeTime;
+
+    // ресторан не работает весь день
+    private boolean closed;
+
+    private String reason;
+}
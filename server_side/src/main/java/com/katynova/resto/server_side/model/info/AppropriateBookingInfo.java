@@ -1,12 +1,10 @@
 package com.katynova.resto.server_side.model.info;
 
-import com.katynova.resto.server_side.model.GraphSlot;
+import com.katynova.resto.server_side.model.SlotRange;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.List;
-
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -15,5 +13,7 @@ public class AppropriateBookingInfo {
     private int tableNumber;
     private int slotsBefore;
     private int slotsAfter;
-    List<GraphSlot> slots;
+    SlotRange slots;
+    // вместимость стола: по ней берется блокировка при проставлении id брони или снятии резерва
+    private int capacity;
 }
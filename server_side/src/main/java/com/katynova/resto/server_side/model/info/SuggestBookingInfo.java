@@ -1,11 +1,10 @@
 package com.katynova.resto.server_side.model.info;
 
-import com.katynova.resto.server_side.model.GraphSlot;
+import com.katynova.resto.server_side.model.SlotRange;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.List;
 import java.util.Objects;
 
 @Data
@@ -13,7 +12,11 @@ import java.util.Objects;
 @NoArgsConstructor
 public class SuggestBookingInfo {
     private int tableNumber;
-    private List<GraphSlot> slots;
+    private SlotRange slots;
+    // предложение на соседний день: сдвиг в днях от запрошенного
+    private int dayOffset;
+    // вместимость стола: по ней берется блокировка при снятии резерва
+    private int capacity;
 
     // объекты этого класса будут считаться равными, если у них одинаковые слоты по времени
     @Override
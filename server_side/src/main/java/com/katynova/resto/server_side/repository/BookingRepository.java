@@ -1,13 +1,19 @@
 package com.katynova.resto.server_side.repository;
 
+import com.katynova.resto.server_side.model.BookingGraphRow;
 import com.katynova.resto.server_side.model.entity.Booking;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
 
@@ -20,4 +26,19 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
             nativeQuery = true)
     List<Long> deleteExpiredBookingsAndReturnIds();
 
+    // проекция для графа: только нужные поля, без сущностей и ленивых загрузок стола
+    String GRAPH_ROW = "SELECT new com.katynova.resto.server_side.model.BookingGraphRow(" +
+            "b.id, t.tableNumber, t.capacity, b.startTime, b.endTime) FROM Booking b JOIN b.restTable t ";
+
+    // курсорное чтение при старте, вызывать внутри транзакции и закрывать поток
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(GRAPH_ROW + "WHERE b.startTime >= :from AND b.startTime < :to")
+    Stream<BookingGraphRow> streamGraphRows(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query(GRAPH_ROW + "WHERE b.startTime >= :from AND b.startTime < :to")
+    List<BookingGraphRow> findGraphRows(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query(GRAPH_ROW + "WHERE b.created > :watermark")
+    List<BookingGraphRow> findGraphRowsCreatedAfter(@Param("watermark") Instant watermark);
+
 }
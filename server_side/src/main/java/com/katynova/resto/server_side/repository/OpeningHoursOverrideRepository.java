@@ -0,0 +1,15 @@
+package com.katynova.resto.server_side.repository;
+
+import com.katynova.resto.server_side.model.entity.OpeningHoursOverride;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface OpeningHoursOverrideRepository extends JpaRepository<OpeningHoursOverride, Long> {
+
+    List<OpeningHoursOverride> findAllByDayBetween(LocalDate from, LocalDate to);
+
+    Optional<OpeningHoursOverride> findByDay(LocalDate day);
+}
@@ -0,0 +1,175 @@
+package com.katynova.resto.server_side.service;
+
+import com.katynova.resto.common_dto_library.AvailabilityProbeRequestDto;
+import com.katynova.resto.common_dto_library.AvailabilityRequestDto;
+import com.katynova.resto.common_dto_library.response.AvailabilityDay;
+import com.katynova.resto.common_dto_library.response.AvailabilityProbeResponse;
+import com.katynova.resto.common_dto_library.response.AvailabilityResponse;
+import com.katynova.resto.common_dto_library.response.BookingErrorResponse;
+import com.katynova.resto.common_dto_library.response.BookingResponse;
+import com.katynova.resto.common_dto_library.response.Slot;
+import com.katynova.resto.server_side.exception.ManagerRequirementException;
+import com.katynova.resto.server_side.model.AvailabilitySnapshot;
+import com.katynova.resto.server_side.model.FreeTableIndex;
+import com.katynova.resto.server_side.model.OpeningHours;
+import com.katynova.resto.server_side.utility_service.CapacityService;
+import com.katynova.resto.server_side.utility_service.OpeningHoursCalendar;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// календарь доступности для гостей и менеджеров
+// читает только неизменяемые снимки индекса свободных окон: ни блокировок графа, ни запросов к базе,
+// поэтому сколько угодно просмотров не задерживают бронирование
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AvailabilityService {
+
+    private final TimeGraphService timeGraphService;
+    private final CapacityService capacityService;
+    private final OpeningHoursCalendar openingHoursCalendar;
+
+    public BookingResponse getAvailability(AvailabilityRequestDto request) {
+        try {
+            int slotMinutes = openingHoursCalendar.getSlotMinutes();
+            int length = (int) ((request.getDuration().toMinutes() + slotMinutes - 1) / slotMinutes);
+            int capacity = capacityService.getCapacity(request.getPersons());
+            // как и при бронировании, компании подходят и столы на двоих больше
+            List<Integer> capacities = capacityService.getCapacities().contains(capacity + 2)
+                    ? List.of(capacity, capacity + 2) : List.of(capacity);
+            List<AvailabilityDay> days = new ArrayList<>();
+            for (int i = 0; i < request.getDays(); i++) {
+                LocalDate day = request.getFrom().plusDays(i);
+                Map<Integer, FreeTableIndex> indexes = timeGraphService.getFreeTableIndex(day);
+                // дня нет в графе - он за горизонтом, и создавать его ради просмотра не будем
+                if (indexes == null) {
+                    continue;
+                }
+                days.add(new AvailabilityDay(day, toSlots(openingHoursCalendar.getDay(day), slotMinutes,
+                        freeWindows(indexes, capacities, length))));
+            }
+            return new AvailabilityResponse(request.getCorrelationId(), days);
+        } catch (Exception e) {
+            log.info("Availability request failed: {}", e.getMessage());
+            return new BookingErrorResponse(request.getCorrelationId(), null, e.getMessage());
+        }
+    }
+
+    // пакетная проверка за один проход по снимкам дня: каждая вместимость считается один раз для всех компаний,
+    // которые на нее попадают, и ничего не резервируется
+    public BookingResponse probe(AvailabilityProbeRequestDto request) {
+        try {
+            LocalDate day = request.getDay();
+            Map<Integer, FreeTableIndex> indexes = timeGraphService.getFreeTableIndex(day);
+            if (indexes == null) {
+                return new BookingErrorResponse(request.getCorrelationId(), null,
+                        "День " + day + " вне горизонта бронирования");
+            }
+            OpeningHours hours = openingHoursCalendar.getDay(day);
+            int slotMinutes = openingHoursCalendar.getSlotMinutes();
+            int[] startSlots = request.getStartTimes().stream()
+                    .mapToInt(startTime -> startSlot(hours, startTime, slotMinutes))
+                    .toArray();
+            int[] lengths = request.getDurations().stream()
+                    .mapToInt(duration -> (int) ((duration.toMinutes() + slotMinutes - 1) / slotMinutes))
+                    .toArray();
+            int cells = startSlots.length * lengths.length;
+            int[] result = new int[request.getPartySizes().size() * cells];
+            // ответы по одной вместимости: [длительность][время начала]
+            Map<Integer, int[]> countsByCapacity = new HashMap<>();
+            for (int party = 0; party < request.getPartySizes().size(); party++) {
+                int capacity;
+                try {
+                    capacity = capacityService.getCapacity(request.getPartySizes().get(party));
+                } catch (ManagerRequirementException e) {
+                    Arrays.fill(result, party * cells, (party + 1) * cells, -1);
+                    continue;
+                }
+                int[] counts = countsByCapacity.computeIfAbsent(capacity,
+                        key -> countFreeTables(indexes.get(key), startSlots, lengths));
+                // как и при бронировании, компании подходят и столы на двоих больше
+                int[] increased = capacityService.getCapacities().contains(capacity + 2)
+                        ? countsByCapacity.computeIfAbsent(capacity + 2,
+                        key -> countFreeTables(indexes.get(key), startSlots, lengths))
+                        : null;
+                for (int cell = 0; cell < cells; cell++) {
+                    result[party * cells + cell] = counts[cell] + (increased == null ? 0 : increased[cell]);
+                }
+            }
+            return new AvailabilityProbeResponse(request.getCorrelationId(), day, result);
+        } catch (Exception e) {
+            log.info("Availability probe failed: {}", e.getMessage());
+            return new BookingErrorResponse(request.getCorrelationId(), null, e.getMessage());
+        }
+    }
+
+    // время раньше открытия - это уже после полуночи того же рабочего дня
+    private int startSlot(OpeningHours hours, LocalTime startTime, int slotMinutes) {
+        LocalDateTime start = hours.day().atTime(startTime);
+        if (start.isBefore(hours.openTime())) {
+            start = start.plusDays(1);
+        }
+        return (int) (Duration.between(hours.openTime(), start).toMinutes() / slotMinutes);
+    }
+
+    private int[] countFreeTables(FreeTableIndex index, int[] startSlots, int[] lengths) {
+        int[] counts = new int[startSlots.length * lengths.length];
+        if (index == null) {
+            return counts;
+        }
+        AvailabilitySnapshot snapshot = index.snapshot();
+        for (int d = 0; d < lengths.length; d++) {
+            for (int s = 0; s < startSlots.length; s++) {
+                int from = startSlots[s];
+                if (from >= snapshot.slots()) {
+                    continue;
+                }
+                // бронь, выходящая за время закрытия, обрезается по последнему слоту дня, как при бронировании
+                counts[d * startSlots.length + s] = snapshot.freeTablesDuring(from, Math.min(from + lengths[d], snapshot.slots()));
+            }
+        }
+        return counts;
+    }
+
+    // окна всех подходящих вместимостей, склеенные между собой
+    private List<AvailabilitySnapshot.Window> freeWindows(Map<Integer, FreeTableIndex> indexes,
+                                                         List<Integer> capacities, int length) {
+        List<AvailabilitySnapshot.Window> windows = new ArrayList<>();
+        for (int capacity : capacities) {
+            FreeTableIndex index = indexes.get(capacity);
+            if (index != null) {
+                windows.addAll(index.snapshot().freeWindows(length));
+            }
+        }
+        windows.sort(Comparator.comparingInt(AvailabilitySnapshot.Window::from));
+        List<AvailabilitySnapshot.Window> merged = new ArrayList<>();
+        for (AvailabilitySnapshot.Window window : windows) {
+            AvailabilitySnapshot.Window last = merged.isEmpty() ? null : merged.getLast();
+            if (last != null && window.from() <= last.to()) {
+                merged.set(merged.size() - 1, new AvailabilitySnapshot.Window(last.from(), Math.max(last.to(), window.to())));
+            } else {
+                merged.add(window);
+            }
+        }
+        return merged;
+    }
+
+    private List<Slot> toSlots(OpeningHours hours, int slotMinutes, List<AvailabilitySnapshot.Window> windows) {
+        return windows.stream()
+                .map(window -> new Slot(null, hours.openTime().plusMinutes((long) slotMinutes * window.from()),
+                        hours.openTime().plusMinutes((long) slotMinutes * window.to())))
+                .toList();
+    }
+}
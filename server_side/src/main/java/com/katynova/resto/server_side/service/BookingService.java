@@ -4,8 +4,11 @@ import com.katynova.resto.common_dto_library.BookingRequestDto;
 import com.katynova.resto.common_dto_library.response.BookingResponse;
 import com.katynova.resto.common_dto_library.response.SlotConfirmation;
 
+import java.util.List;
+
 public interface BookingService {
 
     BookingResponse getResponse(BookingRequestDto bookingRequestDto);
+    List<BookingResponse> getResponses(List<BookingRequestDto> bookingRequestDtos);
     BookingResponse confirmSlot(SlotConfirmation slot);
 }
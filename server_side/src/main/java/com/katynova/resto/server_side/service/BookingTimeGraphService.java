@@ -2,7 +2,10 @@ package com.katynova.resto.server_side.service;
 
 import com.katynova.resto.common_dto_library.BookingRequestDto;
 import com.katynova.resto.common_dto_library.response.*;
+import com.katynova.resto.server_side.exception.ConsistencyException;
+import com.katynova.resto.server_side.model.BookingPosition;
 import com.katynova.resto.server_side.model.FindResponse;
+import com.katynova.resto.server_side.model.SlotRange;
 import com.katynova.resto.server_side.model.entity.Booking;
 import com.katynova.resto.server_side.model.info.AppropriateBookingInfo;
 import com.katynova.resto.server_side.model.info.SuggestBookingInfo;
@@ -15,11 +18,11 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
@@ -33,10 +36,14 @@ public class BookingTimeGraphService implements BookingService {
     private final BookingRepository bookingRepository;
     private final TimeGraphService timeGraphService;
     private final TableRepository tableRepository;
+    private final SuggestionHolds suggestionHolds;
+    private final BookingWriteBehind bookingWriteBehind;
+    private final TransactionTemplate transactionTemplate;
     // здесь храним ссылки на все зарезервированные слоты по correlationId
 
+    // двухфазная запись без общей транзакции: поиск захватывает слоты в графе, не держа соединение с базой,
+    // затем бронь вставляется короткой транзакцией; если вставка не удалась, снимаются ровно захваченные слоты
     @Override
-    @Transactional
     public BookingResponse getResponse(BookingRequestDto bookingRequestDto) {
         BookingResponse result;
         try {
@@ -53,6 +60,92 @@ public class BookingTimeGraphService implements BookingService {
         return result;
     }
 
+    // пакет запросов: поиск идет по группам одного дня, подтвержденные брони пакета сохраняются одним JDBC батчем
+    // (hibernate batch_size и pooled-lo последовательность уже настроены), ответы - в порядке запросов
+    // транзакция, как и в одиночном запросе, открывается только на вставку пакета
+    @Override
+    public List<BookingResponse> getResponses(List<BookingRequestDto> requests) {
+        List<FindResponse<?>> found;
+        try {
+            found = timeGraphService.findBookings(requests);
+        } catch (Exception e) {
+            return requests.stream().map(request -> sendErrorResponse(request, e.getMessage())).toList();
+        }
+        BookingResponse[] results = new BookingResponse[requests.size()];
+        List<Booking> bookings = new ArrayList<>();
+        List<BookingPosition> reservedPositions = new ArrayList<>();
+        List<Integer> bookedPositions = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            BookingRequestDto bookingRequestDto = requests.get(i);
+            FindResponse<?> response = found.get(i);
+            try {
+                switch (response.getStatus()) {
+                    case SUCCESS -> {
+                        AppropriateBookingInfo info = (AppropriateBookingInfo) response.getList().getFirst();
+                        // бронь и позиция попадают в списки вместе: j-я бронь всегда соответствует j-й позиции
+                        BookingPosition position = timeGraphService.reservedPosition(bookingRequestDto.getStartTime(), info);
+                        Booking booking = createReservedBooking(bookingRequestDto, info.getTableNumber(), position);
+                        bookings.add(booking);
+                        reservedPositions.add(position);
+                        bookedPositions.add(i);
+                    }
+                    case SUGGESTED -> results[i] = sendSuggestResponse(bookingRequestDto, response);
+                    case WAITLIST -> results[i] = sendWaitlistResponse(bookingRequestDto, response);
+                    default -> results[i] = sendErrorResponse(bookingRequestDto, "Непредвиденная ошибка");
+                }
+            } catch (Exception e) {
+                results[i] = sendErrorResponse(bookingRequestDto, e.getMessage());
+            }
+        }
+        // позиции из пересобранных дней отвергаются сразу, остальные пишутся пакетом под блокировкой своих дней
+        List<BookingPosition> lockedPositions = List.copyOf(reservedPositions);
+        timeGraphService.lockDays(lockedPositions);
+        try {
+            for (int j = bookings.size() - 1; j >= 0; j--) {
+                BookingPosition position = reservedPositions.get(j);
+                if (!timeGraphService.isCurrent(position)) {
+                    results[bookedPositions.get(j)] = sendErrorResponse(requests.get(bookedPositions.get(j)),
+                            dayRebuilt(position).getMessage());
+                    bookings.remove(j);
+                    reservedPositions.remove(j);
+                    bookedPositions.remove(j);
+                }
+            }
+            commitBatch(requests, results, bookings, reservedPositions, bookedPositions);
+        } finally {
+            timeGraphService.unlockDays(lockedPositions);
+        }
+        return Arrays.asList(results);
+    }
+
+    private void commitBatch(List<BookingRequestDto> requests, BookingResponse[] results, List<Booking> bookings,
+                             List<BookingPosition> reservedPositions, List<Integer> bookedPositions) {
+        RuntimeException failure = null;
+        try {
+            if (bookingWriteBehind.isEnabled()) {
+                bookings.forEach(bookingWriteBehind::enqueue);
+            } else {
+                bookingRepository.saveAll(bookings);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Booking batch was not saved, releasing reserved slots: {}", e.getMessage());
+            failure = e;
+        }
+        for (int j = 0; j < bookings.size(); j++) {
+            Booking booking = bookings.get(j);
+            BookingRequestDto bookingRequestDto = requests.get(bookedPositions.get(j));
+            // при отложенной записи брони, попавшие в журнал до сбоя, уже с id и дойдут до базы
+            if (failure == null || (bookingWriteBehind.isEnabled() && booking.getId() != null)) {
+                timeGraphService.assignBooking(booking.getId(), reservedPositions.get(j));
+                results[bookedPositions.get(j)] = new BookingSuccessResponse(bookingRequestDto.getCorrelationId(),
+                        bookingRequestDto.getRequestId());
+            } else {
+                timeGraphService.releaseHold(reservedPositions.get(j));
+                results[bookedPositions.get(j)] = sendErrorResponse(bookingRequestDto, failure.getMessage());
+            }
+        }
+    }
+
     protected BookingResponse sendErrorResponse(BookingRequestDto bookingRequestDto, String message) {
         BookingResponse error = new BookingErrorResponse(bookingRequestDto.getCorrelationId(), bookingRequestDto.getRequestId(), message);
         log.info("Error response: {}", error);
@@ -74,13 +167,14 @@ public class BookingTimeGraphService implements BookingService {
         List<SuggestBookingInfo> listOfSuggestions = (List<SuggestBookingInfo>) response.getList();
         List<Slot> slots = new ArrayList<>();
         LocalDateTime expired = LocalDateTime.now().plusMinutes(10);
+        // варианты не пишутся в базу: резерв держится в памяти, а бронь создается только при подтверждении
         for (SuggestBookingInfo suggestBookingInfo : listOfSuggestions) {
-            Booking booking = createBooking(bookingRequestDto, suggestBookingInfo.getTableNumber(), Status.PENDING);
-            booking.setExpired(expired);
-            bookingRepository.save(booking);
-            suggestBookingInfo.getSlots().forEach(graphSlot -> graphSlot.book(booking.getId()));
-            Slot slot = createSlot(bookingRequestDto.getStartTime(), suggestBookingInfo, booking.getId());
-            slots.add(slot);
+            // предложение может начинаться не в запрошенное время и даже не в запрошенный день
+            SlotRange suggested = suggestBookingInfo.getSlots();
+            LocalDateTime moment = bookingRequestDto.getStartTime().plusDays(suggestBookingInfo.getDayOffset());
+            SuggestionHolds.Hold hold = suggestionHolds.hold(bookingRequestDto, suggestBookingInfo,
+                    suggested.getStartDateTime(moment), suggested.getEndDateTime(moment), expired);
+            slots.add(new Slot(hold.id(), hold.startTime(), hold.endTime()));
         }
         return new BookingSuggestResponse(bookingRequestDto.getCorrelationId(), bookingRequestDto.getRequestId(),
                 slots, expired);
@@ -100,51 +194,44 @@ public class BookingTimeGraphService implements BookingService {
         return booking;
     }
 
-    private Slot createSlot(LocalDateTime start, SuggestBookingInfo suggestBookingInfo, Long bookingId) {
-        // обрабатываем возможный переход через 00:00
-        // не знаю, как здесь сделать правильно, было бы удобнее не обрабатывать, ведь ключ в мапе останется по прошлому
-        //дню, но надо же во внешку отдавать красиво
-        LocalDate day = start.toLocalDate();
-        LocalDate startDay = day;
-        LocalDate endDay = day;
-        LocalTime askedTime = start.toLocalTime();
-        LocalTime startTime = suggestBookingInfo.getSlots().getFirst().getTime();
-        if (askedTime.minusHours(1).isAfter(askedTime)) {
-            startDay = day.minusDays(1);
-        }
-        LocalTime end = suggestBookingInfo.getSlots().getLast().getTime().plusMinutes(30);
-        if (end.isBefore(askedTime)) {
-            endDay = day.plusDays(1);
-        }
-        LocalDateTime startDateTime = LocalDateTime.of(startDay, startTime);
-        LocalDateTime endDateTime = LocalDateTime.of(endDay, end);
-        // здесь мы вместо букинг id будем использовать номер стола, чтобы потом найти эту бронь
-        return new Slot(bookingId, startDateTime, endDateTime);
+    // слоты уже захвачены поиском: если бронь собрать не удалось (например, стола нет в базе),
+    // захват снимается сразу, как и при неудачной записи в commit, иначе слоты остались бы в резерве без брони
+    private Booking createReservedBooking(BookingRequestDto bookingRequestDto, int tableNumber, BookingPosition position) {
+        try {
+            return createBooking(bookingRequestDto, tableNumber, Status.CONFIRMED);
+        } catch (RuntimeException e) {
+            log.warn("Booking was not created, releasing reserved slots of table {} on {}: {}",
+                    position.tableNumber(), position.day(), e.getMessage());
+            timeGraphService.releaseHold(position);
+            throw e;
+        }
     }
 
-    @Transactional
     protected BookingResponse getSuccessResponse(BookingRequestDto bookingRequestDto, FindResponse<?> response) {
-        @SuppressWarnings("unchecked")
         AppropriateBookingInfo info = (AppropriateBookingInfo) response.getList().getFirst();
-        Booking booking = createBooking(bookingRequestDto, info.getTableNumber(), Status.CONFIRMED);
-        // сохраняем бронь в реп
-        bookingRepository.save(booking);
-        // теперь у брони есть айди и мы ставим их id слотам
-        // не вижу смысла передавать это в тайм граф, слоты уже зарезервированы, просто меняем им id
-        info.getSlots().forEach(slot -> slot.book(booking.getId()));
+        // первая фаза уже прошла: поиск зарезервировал слоты, запоминаем их, чтобы снять при неудаче
+        BookingPosition position = timeGraphService.reservedPosition(bookingRequestDto.getStartTime(), info);
+        Booking booking = createReservedBooking(bookingRequestDto, info.getTableNumber(), position);
+        commit(booking, position);
         return new BookingSuccessResponse(bookingRequestDto.getCorrelationId(), bookingRequestDto.getRequestId());
     }
 
     @Override
-    @Transactional
     public BookingResponse confirmSlot(SlotConfirmation slot) {
+        List<Long> rejected = slot.getRejectedSlotIds() == null ? List.of() : slot.getRejectedSlotIds();
+        if (suggestionHolds.contains(slot.getConfirmSlotId())) {
+            return confirmHold(slot, rejected);
+        }
+        // варианты, сохраненные в базу до перехода на резервы в памяти, подтверждаются по-старому
         try {
-            Booking booking = bookingRepository.findById(slot.getConfirmSlotId())
-                    .orElseThrow(NoSuchElementException::new);
-            booking.setStatus(Status.CONFIRMED);
-            if (!slot.getRejectedSlotIds().isEmpty()) {
-                bookingRepository.deleteAllById(slot.getRejectedSlotIds());
-                timeGraphService.unreserveSlotsByBookingId(slot.getRejectedSlotIds(), booking.getStartTime());
+            transactionTemplate.executeWithoutResult(status -> {
+                Booking booking = bookingRepository.findById(slot.getConfirmSlotId())
+                        .orElseThrow(NoSuchElementException::new);
+                booking.setStatus(Status.CONFIRMED);
+                bookingRepository.deleteAllById(rejected);
+            });
+            if (!rejected.isEmpty()) {
+                timeGraphService.unreserveSlotsByBookingId(rejected);
             }
             return new BookingSuccessResponse(slot.getCorrelationId(), slot.getRequestId());
         } catch (NoSuchElementException e) {
@@ -153,12 +240,78 @@ public class BookingTimeGraphService implements BookingService {
         }
     }
 
-    @Scheduled(cron = "0 * * * * *")
+    // в базу пишется только подтвержденный вариант, слоты в графе уже зарезервированы - проставляем им id
+    private BookingResponse confirmHold(SlotConfirmation slot, List<Long> rejected) {
+        suggestionHolds.release(rejected);
+        SuggestionHolds.Hold hold = suggestionHolds.take(slot.getConfirmSlotId());
+        if (hold == null) {
+            return new BookingErrorResponse(slot.getCorrelationId(), slot.getRequestId(),
+                    "Время подтверждения бронирования истекло");
+        }
+        Booking booking;
+        try {
+            booking = createReservedBooking(hold.request(), hold.tableNumber(), hold.position());
+        } catch (RuntimeException e) {
+            return new BookingErrorResponse(slot.getCorrelationId(), slot.getRequestId(), e.getMessage());
+        }
+        booking.setStartTime(hold.startTime());
+        booking.setEndTime(hold.endTime());
+        try {
+            commit(booking, hold.position());
+        } catch (RuntimeException e) {
+            return new BookingErrorResponse(slot.getCorrelationId(), slot.getRequestId(), e.getMessage());
+        }
+        return new BookingSuccessResponse(slot.getCorrelationId(), slot.getRequestId());
+    }
+
+    // вторая фаза: бронь в базу, затем ее id - захваченным слотам; если запись не удалась,
+    // резерв снимается только там, где слоты все еще без id брони, и ошибка уходит в ответ
+    // день позиции держим, пока id не окажется в графе: перестройка дня не вклинится между записью и id
+    private void commit(Booking booking, BookingPosition position) {
+        List<BookingPosition> positions = List.of(position);
+        timeGraphService.lockDays(positions);
+        try {
+            if (!timeGraphService.isCurrent(position)) {
+                throw dayRebuilt(position);
+            }
+            try {
+                persist(booking);
+            } catch (RuntimeException e) {
+                log.warn("Booking was not saved, releasing reserved slots of table {} on {}: {}",
+                        position.tableNumber(), position.day(), e.getMessage());
+                timeGraphService.releaseHold(position);
+                throw e;
+            }
+            timeGraphService.assignBooking(booking.getId(), position);
+        } finally {
+            timeGraphService.unlockDays(positions);
+        }
+    }
+
+    // слоты захвачены в дне, который с тех пор пересобрали: в новом дне их нет, и бронь не пишется
+    private static ConsistencyException dayRebuilt(BookingPosition position) {
+        return new ConsistencyException(String.format(": день %s перестроен, повторите бронирование",
+                position.day()));
+    }
+
+    // при отложенной записи бронь получает id сразу и уходит в журнал, а в базу ее пишет поток BookingWriteBehind
+    private void persist(Booking booking) {
+        if (bookingWriteBehind.isEnabled()) {
+            bookingWriteBehind.enqueue(booking);
+        } else {
+            bookingRepository.save(booking);
+        }
+    }
+
+    // новые варианты в базу не пишутся, очистка нужна только для PENDING броней, оставшихся с прошлых версий,
+    // поэтому идет редко и по частичному индексу idx_bookings_pending_expired
+    @Scheduled(cron = "${time-graph.pending-sweep-cron:0 */15 * * * *}")
     @Transactional
     public void cleanUpExpiredBookings() {
         List<Long> expiredIds = bookingRepository.deleteExpiredBookingsAndReturnIds();
         if (!expiredIds.isEmpty()) {
-            timeGraphService.unreserveSlotsByBookingId(expiredIds, LocalDateTime.now());
+            // день каждой брони берется из обратного индекса графа, а не из текущего времени
+            timeGraphService.unreserveSlotsByBookingId(expiredIds);
         }
     }
 
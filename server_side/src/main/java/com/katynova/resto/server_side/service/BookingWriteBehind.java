@@ -0,0 +1,379 @@
+package com.katynova.resto.server_side.service;
+
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.model.entity.Booking;
+import com.katynova.resto.server_side.model.status.Status;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// отложенная запись подтвержденных броней (time-graph.write-behind): слоты уже захвачены в графе, и он авторитетен,
+// поэтому ответ уходит сразу, а брони пишутся в базу отдельным потоком упорядоченными пачками
+// до ответа бронь дописывается в локальный журнал с fsync: после падения недописанные брони вставляются при старте,
+// до сборки графа; вставка идемпотентна по id, поэтому повтор уже записанных броней ничего не ломает
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ManagedResource(objectName = "resto:name=bookingWriteBehind")
+public class BookingWriteBehind {
+
+    private static final String INSERT_SQL = "INSERT INTO bookings (id, start_time, end_time, notes, table_number, "
+            + "persons, guest_id, status, created) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+    // как allocationSize у Booking и incrementBy у booking_sequence: nextval отдает начало блока из 50 id (pooled-lo)
+    private static final int ID_BLOCK = 50;
+    // длина тела и CRC32 перед каждой записью журнала
+    private static final int RECORD_HEADER_BYTES = 4 + 8;
+    private static final long MIN_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+
+    private final TimeGraphConfig timeGraphConfig;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // бронь, ожидающая записи: только значения, без сущности и ленивых ссылок hibernate
+    public record PendingBooking(long id, long guestId, int tableNumber, int persons, LocalDateTime startTime,
+                                 LocalDateTime endTime, Instant created, Status status, String notes) {
+    }
+
+    // очередь и журнал пополняются под одной блокировкой, поэтому порядок записи в базу совпадает с порядком в журнале
+    private final BlockingQueue<PendingBooking> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private FileChannel journal;
+    // брони в журнале, еще не записанные в базу; журнал обнуляется, когда их не остается
+    private long unflushed;
+    // те же брони по id: их нет в базе, но они уже в графе, и перестройка дня должна их сохранить
+    private final ConcurrentMap<Long, PendingBooking> unflushedBookings = new ConcurrentHashMap<>();
+
+    // следующий блок id готовит поток записи, чтобы обращение к последовательности не попадало на путь ответа
+    private final BlockingQueue<Long> idBlocks = new ArrayBlockingQueue<>(1);
+    private long nextId;
+    private long idLimit;
+
+    private Thread writer;
+    private final LongAdder flushedBookings = new LongAdder();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public boolean isEnabled() {
+        return timeGraphConfig.isWriteBehind();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        Path dir = Path.of(timeGraphConfig.getWriteBehindDir());
+        Files.createDirectories(dir);
+        journal = FileChannel.open(dir.resolve("write-behind.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal.position(journal.size());
+        writer = Thread.ofPlatform().name("booking-write-behind").start(this::writeLoop);
+    }
+
+    // поток записи останавливается между пачками; недописанные брони остаются в журнале до следующего старта
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (writer == null) {
+            return;
+        }
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        journal.close();
+    }
+
+    // брони из журнала, не дошедшие до базы до падения; вызывается при старте до сборки графа
+    public int recover() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        journalLock.lock();
+        try {
+            List<PendingBooking> pending = readJournal();
+            if (!pending.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT_SQL, pending, pending.size(), BookingWriteBehind::bind));
+                log.info("Write-behind journal recovered: {} bookings written to database", pending.size());
+            }
+            journal.truncate(0);
+            unflushed = 0;
+            return pending.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    // id назначается сразу, чтобы граф получил его без обращения к базе;
+    // в бронь он попадает только после записи в журнал, поэтому бронь с id уже не потеряется
+    public void enqueue(Booking booking) {
+        PendingBooking pending = new PendingBooking(nextId(), booking.getGuestId(), booking.getTableNumber(),
+                booking.getPersons(), booking.getStartTime(), booking.getEndTime(), Instant.now(),
+                booking.getStatus(), booking.getNotes());
+        ByteBuffer record = encode(pending);
+        journalLock.lock();
+        try {
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+            journal.force(false);
+            unflushed++;
+            unflushedBookings.put(pending.id(), pending);
+            queue.add(pending);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            journalLock.unlock();
+        }
+        booking.setId(pending.id());
+        booking.setCreated(pending.created());
+    }
+
+    // снимок берется до чтения базы: бронь, записанная между ними, окажется в обоих списках, но не потеряется
+    public List<PendingBooking> unflushedBookings() {
+        return List.copyOf(unflushedBookings.values());
+    }
+
+    @ManagedAttribute
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @ManagedAttribute
+    public long getLastFlushMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastFlushNanos.get());
+    }
+
+    @ManagedAttribute
+    public long getMaxFlushMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxFlushNanos.get());
+    }
+
+    @ManagedAttribute
+    public long getFlushedBookings() {
+        return flushedBookings.sum();
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void logStats() {
+        if (isEnabled()) {
+            log.info("Write-behind: queue depth {}, last flush {} ms, max flush {} ms, {} bookings written",
+                    getQueueDepth(), getLastFlushMillis(), getMaxFlushMillis(), getFlushedBookings());
+        }
+    }
+
+    private synchronized long nextId() {
+        if (nextId == idLimit) {
+            Long start = idBlocks.poll();
+            // запасной блок еще не готов - одно обращение к последовательности на 50 броней
+            nextId = start != null ? start : fetchIdBlock();
+            idLimit = nextId + ID_BLOCK;
+        }
+        return nextId++;
+    }
+
+    private long fetchIdBlock() {
+        return jdbcTemplate.queryForObject("SELECT nextval('booking_sequence')", Long.class);
+    }
+
+    // один поток и одна очередь: пачки уходят в базу в порядке подтверждения броней
+    // поток не завершается ни на какой ошибке: иначе enqueue продолжил бы подтверждать брони,
+    // а в базу до рестарта не дошла бы ни одна; недописанная пачка повторяется с растущей паузой
+    private void writeLoop() {
+        List<PendingBooking> batch = new ArrayList<>(timeGraphConfig.getWriteBehindBatchSize());
+        long retryMillis = MIN_RETRY_MILLIS;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                prefetchIdBlock();
+                if (batch.isEmpty()) {
+                    PendingBooking first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, timeGraphConfig.getWriteBehindBatchSize() - 1);
+                }
+                flush(batch);
+                batch.clear();
+                retryMillis = MIN_RETRY_MILLIS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // брони лежат в журнале, пачка остается в памяти и уйдет следующей попыткой
+                log.error("Write-behind flush of {} bookings failed, retrying in {} ms: {}",
+                        batch.size(), retryMillis, e.getMessage());
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            }
+        }
+    }
+
+    // следующий блок id - заранее; не получилось - не страшно, nextId возьмет блок сам
+    private void prefetchIdBlock() {
+        if (!idBlocks.isEmpty()) {
+            return;
+        }
+        try {
+            idBlocks.offer(fetchIdBlock());
+        } catch (DataAccessException e) {
+            log.warn("Failed to prefetch booking id block: {}", e.getMessage());
+        }
+    }
+
+    private void flush(List<PendingBooking> batch) {
+        long startedNanos = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), BookingWriteBehind::bind));
+        long flushNanos = System.nanoTime() - startedNanos;
+        lastFlushNanos.set(flushNanos);
+        maxFlushNanos.accumulateAndGet(flushNanos, Math::max);
+        flushedBookings.add(batch.size());
+        batch.forEach(booking -> unflushedBookings.remove(booking.id()));
+        markFlushed(batch.size());
+    }
+
+    private void markFlushed(int count) {
+        journalLock.lock();
+        try {
+            unflushed -= count;
+            if (unflushed == 0) {
+                journal.truncate(0);
+            }
+        } catch (IOException e) {
+            // журнал не обнулился - при старте брони вставятся повторно и будут пропущены по id
+            log.warn("Failed to truncate write-behind journal: {}", e.getMessage());
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    private static void bind(PreparedStatement statement, PendingBooking booking) throws SQLException {
+        statement.setLong(1, booking.id());
+        statement.setObject(2, booking.startTime());
+        statement.setObject(3, booking.endTime());
+        statement.setString(4, booking.notes());
+        statement.setInt(5, booking.tableNumber());
+        statement.setInt(6, booking.persons());
+        statement.setLong(7, booking.guestId());
+        statement.setString(8, booking.status().name());
+        statement.setTimestamp(9, Timestamp.from(booking.created()));
+    }
+
+    // запись журнала: длина тела, CRC32 тела и само тело; оборванная при падении запись отбрасывается
+    private static ByteBuffer encode(PendingBooking booking) {
+        byte[] notes = booking.notes() == null ? null : booking.notes().getBytes(StandardCharsets.UTF_8);
+        int bodyBytes = 8 + 8 + 4 + 4 + 12 + 12 + 12 + 1 + 4 + (notes == null ? 0 : notes.length);
+        ByteBuffer body = ByteBuffer.allocate(bodyBytes)
+                .putLong(booking.id())
+                .putLong(booking.guestId())
+                .putInt(booking.tableNumber())
+                .putInt(booking.persons());
+        putDateTime(body, booking.startTime());
+        putDateTime(body, booking.endTime());
+        body.putLong(booking.created().getEpochSecond()).putInt(booking.created().getNano());
+        body.put((byte) booking.status().ordinal());
+        body.putInt(notes == null ? -1 : notes.length);
+        if (notes != null) {
+            body.put(notes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        return ByteBuffer.allocate(RECORD_HEADER_BYTES + bodyBytes)
+                .putInt(bodyBytes)
+                .putLong(crc.getValue())
+                .put(body.array())
+                .flip();
+    }
+
+    private List<PendingBooking> readJournal() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) journal.size());
+        while (buffer.hasRemaining() && journal.read(buffer, buffer.position()) >= 0) {
+            // читаем до конца файла
+        }
+        buffer.flip();
+        List<PendingBooking> pending = new ArrayList<>();
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            int bodyBytes = buffer.getInt();
+            long expectedCrc = buffer.getLong();
+            if (bodyBytes <= 0 || bodyBytes > buffer.remaining()) {
+                break;
+            }
+            byte[] body = new byte[bodyBytes];
+            buffer.get(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (crc.getValue() != expectedCrc) {
+                break;
+            }
+            pending.add(decode(ByteBuffer.wrap(body)));
+        }
+        return pending;
+    }
+
+    private static PendingBooking decode(ByteBuffer body) {
+        long id = body.getLong();
+        long guestId = body.getLong();
+        int tableNumber = body.getInt();
+        int persons = body.getInt();
+        LocalDateTime startTime = getDateTime(body);
+        LocalDateTime endTime = getDateTime(body);
+        Instant created = Instant.ofEpochSecond(body.getLong(), body.getInt());
+        Status status = Status.values()[body.get()];
+        int notesBytes = body.getInt();
+        String notes = null;
+        if (notesBytes >= 0) {
+            byte[] bytes = new byte[notesBytes];
+            body.get(bytes);
+            notes = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new PendingBooking(id, guestId, tableNumber, persons, startTime, endTime, created, status, notes);
+    }
+
+    private static void putDateTime(ByteBuffer buffer, LocalDateTime dateTime) {
+        buffer.putLong(dateTime.toEpochSecond(ZoneOffset.UTC)).putInt(dateTime.getNano());
+    }
+
+    private static LocalDateTime getDateTime(ByteBuffer buffer) {
+        return LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,169 @@
+package com.katynova.resto.server_side.service;
+
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.model.TableSlots;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// журнал изменений графа в компактном топике: после каждого изменения стола публикуется его полное состояние
+// за день, ключ - день и стол, поэтому после компакции в топике остается ровно текущий граф
+// теплый резерв и реплики для чтения строят граф из этого топика и следуют за ним (GraphReplica), не читая брони из базы
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GraphChangelog {
+
+    private final TimeGraphConfig timeGraphConfig;
+    private final KafkaTemplate<String, TableState> changelogTemplate;
+    private final GraphLocks graphLocks;
+
+    // реплика, пока ее не сделали основным экземпляром, только читает журнал и ничего в него не пишет
+    private volatile boolean following;
+
+    // send может ждать метаданные или место в буфере продюсера до max.block.ms, поэтому под блокировкой стола
+    // только снимаем состояние, а отправляет его отдельный поток; по ключу хранится последнее неотправленное
+    // состояние, а в очереди ключ стоит один раз - память ограничена числом столов горизонта, даже если Kafka недоступна
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> pendingKeys = new LinkedBlockingQueue<>();
+    private Thread sender;
+
+    // state == null - tombstone
+    private record Pending(TableState state) {
+    }
+
+    // занятые отрезки стола: бронь с id или резерв (RESERVED), свободные слоты не передаются
+    public record Run(int from, int to, long bookingId) {
+    }
+
+    public record TableState(LocalDate day, int capacity, int tableNumber, int size, List<Run> runs) {
+    }
+
+    @PostConstruct
+    public void init() {
+        following = timeGraphConfig.isReplica();
+        // реплике отправитель тоже нужен - после promote она пишет в журнал сама
+        if (timeGraphConfig.isChangelogEnabled()) {
+            sender = Thread.ofPlatform().daemon().name("time-graph-changelog").start(this::sendLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sender != null) {
+            sender.interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return timeGraphConfig.isChangelogEnabled() && !following;
+    }
+
+    public boolean isFollowing() {
+        return following;
+    }
+
+    public void setFollowing(boolean following) {
+        this.following = following;
+    }
+
+    public static String key(LocalDate day, int tableNumber) {
+        return day + ":" + tableNumber;
+    }
+
+    public static LocalDate dayOf(String key) {
+        return LocalDate.parse(key.substring(0, key.indexOf(':')));
+    }
+
+    // состояние снимается и ставится в очередь под блокировкой стола: снимки одного ключа встают в порядке изменений,
+    // и последним в топике всегда оказывается самое свежее состояние, даже если захват шел через CAS без блокировки
+    public void tableChanged(LocalDate day, int capacity, int tableNumber, TableSlots table) {
+        if (!isEnabled()) {
+            return;
+        }
+        graphLocks.lockTable(day, capacity, tableNumber);
+        try {
+            enqueue(key(day, tableNumber), stateOf(day, capacity, tableNumber, table));
+        } finally {
+            graphLocks.unlockTable(day, capacity, tableNumber);
+        }
+    }
+
+    public void dayCreated(LocalDate day, Map<Integer, ? extends Map<Integer, TableSlots>> daySlotsMap) {
+        if (!isEnabled()) {
+            return;
+        }
+        daySlotsMap.forEach((capacity, tables) ->
+                tables.forEach((tableNumber, table) -> tableChanged(day, capacity, tableNumber, table)));
+    }
+
+    // пустое значение (tombstone): реплика удаляет день, компакция - записи его столов
+    // дни, отданные при шардировании другому экземпляру, сюда не попадают - их состояние публикует новый владелец
+    public void dayEvicted(LocalDate day, Map<Integer, ? extends Map<Integer, TableSlots>> daySlotsMap) {
+        if (!isEnabled()) {
+            return;
+        }
+        daySlotsMap.values().forEach(tables -> tables.keySet()
+                .forEach(tableNumber -> enqueue(key(day, tableNumber), null)));
+    }
+
+    // ключ уже ждет отправки - достаточно заменить его состояние
+    private void enqueue(String key, TableState state) {
+        if (pending.put(key, new Pending(state)) == null) {
+            pendingKeys.add(key);
+        }
+    }
+
+    // один поток: отправки одного ключа идут в порядке снимков, идемпотентный продюсер сохраняет его в партиции
+    private void sendLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                String key = pendingKeys.take();
+                Pending next = pending.remove(key);
+                if (next != null) {
+                    send(key, next.state());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // отправитель не должен умирать из-за одного изменения: следующее изменение стола его перекроет
+                log.error("Failed to publish time-graph change: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void send(String key, TableState state) {
+        changelogTemplate.send(timeGraphConfig.getChangelogTopic(), key, state).whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("Failed to publish time-graph change {}: {}", key, error.getMessage());
+            }
+        });
+    }
+
+    private static TableState stateOf(LocalDate day, int capacity, int tableNumber, TableSlots table) {
+        List<Run> runs = new ArrayList<>();
+        int i = table.nextOccupied(0, table.size());
+        while (i < table.size()) {
+            long bookingId = table.bookingIdAt(i);
+            int end = i + 1;
+            while (end < table.size() && !table.isAvailable(end) && table.bookingIdAt(end) == bookingId) {
+                end++;
+            }
+            runs.add(new Run(i, end, bookingId));
+            i = table.nextOccupied(end, table.size());
+        }
+        return new TableState(day, capacity, tableNumber, table.size(), runs);
+    }
+}
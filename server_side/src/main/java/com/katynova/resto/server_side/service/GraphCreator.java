@@ -1,55 +1,56 @@
 package com.katynova.resto.server_side.service;
 
-import com.katynova.resto.server_side.model.GraphSlot;
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.model.FreeTableIndex;
+import com.katynova.resto.server_side.model.OpeningHours;
+import com.katynova.resto.server_side.model.TableSlots;
 import com.katynova.resto.server_side.model.entity.RestTable;
-import com.katynova.resto.server_side.utility_service.WorkingHoursCounter;
+import com.katynova.resto.server_side.utility_service.OpeningHoursCalendar;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class GraphCreator {
 
-    private final WorkingHoursCounter workingHoursCounter;
+    private final OpeningHoursCalendar openingHoursCalendar;
+    private final TimeGraphConfig timeGraphConfig;
 
-    // создает день с необходимым количеством слотов
-    ConcurrentMap<Integer, ConcurrentMap<Integer, List<GraphSlot>>> createDay(LocalDate date, List<RestTable> tables) {
-        LocalDateTime openTime = workingHoursCounter.getOpenDateTime(LocalDateTime.of(date, LocalTime.of(14, 0)));
-        LocalDateTime closeTime = workingHoursCounter.getCloseDateTime(LocalDateTime.of(date, LocalTime.of(14, 0)));
-        long numberOfSlots = Duration.between(openTime, closeTime).toMinutes() / 30;
-        LocalTime startTime = openTime.toLocalTime();
-        ConcurrentMap<Integer, ConcurrentMap<Integer, List<GraphSlot>>> day = tables.stream()
+    // создает день с необходимым количеством слотов; часы дня берутся из календаря, с учетом особых дней
+    ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> createDay(LocalDate date, List<RestTable> tables) {
+        OpeningHours hours = openingHoursCalendar.getDay(date);
+        int slotMinutes = openingHoursCalendar.getSlotMinutes();
+        int numberOfSlots = hours.slots();
+        LocalTime startTime = hours.openTime().toLocalTime();
+        ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> day = tables.stream()
                 .collect(Collectors.groupingByConcurrent(
                         RestTable::getCapacity,
                         Collectors.toConcurrentMap(
                                 RestTable::getTableNumber,
-                                table -> createTable(startTime, numberOfSlots)
+                                table -> createTable(startTime, slotMinutes, numberOfSlots)
                         )
                 ));
         return day;
     }
 
-    private List<GraphSlot> createTable(LocalTime startTime, long numberOfSlots) {
-        return IntStream.range(0, (int) numberOfSlots)
-                .mapToObj(i -> new GraphSlot(
-                        startTime.plusMinutes(30L * i),
-                        new AtomicBoolean(true),  // доступен
-                        new AtomicReference<Long>(null)  // без брони
-                ))
-                .toList();
-        // неизменяемый список, тк мы не будем добавлять/удалять слоты
+    // индекс свободных окон для каждой вместимости дня; строится по еще пустому дню, дальше столы обновляют его сами
+    Map<Integer, FreeTableIndex> createIndex(ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> day) {
+        return day.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey,
+                        entry -> new FreeTableIndex(entry.getValue(), timeGraphConfig.getScanner().create())));
+    }
+
+    private TableSlots createTable(LocalTime startTime, int slotMinutes, int numberOfSlots) {
+        // все слоты свободны: биты занятости нулевые, id броней нет
+        return new TableSlots(startTime, slotMinutes, numberOfSlots, timeGraphConfig.getStorage());
     }
 }
@@ -0,0 +1,216 @@
+package com.katynova.resto.server_side.service;
+
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.model.BookingPosition;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// снимок графа в memory-mapped файле и журнал изменений после него для быстрого рестарта
+// в журнал попадают только брони с id: резервы без id живут, пока жив запрос, и после рестарта не нужны
+// источник истины - база: после восстановления граф сверяется с ней в фоне
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GraphJournal {
+
+    private static final int MAGIC = 0x54475348;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    // id, день, вместимость, стол, начало и конец отрезка
+    private static final int SNAPSHOT_RECORD_BYTES = 8 + 4 + 4 + 4 + 2 + 2;
+    // CRC32 тела, затем тело: тип записи + то же, что в снимке
+    private static final int LOG_BODY_BYTES = 1 + SNAPSHOT_RECORD_BYTES;
+    private static final int LOG_RECORD_BYTES = 8 + LOG_BODY_BYTES;
+    private static final byte BOOK = 1;
+    private static final byte RELEASE = 2;
+
+    private final TimeGraphConfig timeGraphConfig;
+
+    // запись в журнал и его сброс при снимке идут под одной блокировкой
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel logChannel;
+
+    public record Entry(long bookingId, LocalDate day, int capacity, int tableNumber, int from, int to) {
+    }
+
+    public boolean isEnabled() {
+        return timeGraphConfig.isJournalEnabled();
+    }
+
+    public void appendBook(long bookingId, BookingPosition position) {
+        if (!isEnabled()) {
+            return;
+        }
+        append(encode(BOOK, new Entry(bookingId, position.day(), position.capacity(), position.tableNumber(),
+                position.slots().getFrom(), position.slots().getTo())));
+    }
+
+    public void appendRelease(long bookingId) {
+        if (!isEnabled()) {
+            return;
+        }
+        append(encode(RELEASE, new Entry(bookingId, LocalDate.EPOCH, 0, 0, 0, 0)));
+    }
+
+    // снимок пишется во временный файл и атомарно заменяет прошлый, журнал после этого начинается заново
+    // блокировка держится, пока снимаем позиции, поэтому изменение попадет либо в снимок, либо в новый журнал
+    public void writeSnapshot(Map<Long, BookingPosition> positions) {
+        if (!isEnabled()) {
+            return;
+        }
+        lock.lock();
+        try {
+            List<Entry> entries = new ArrayList<>(positions.size());
+            positions.forEach((bookingId, position) -> entries.add(new Entry(bookingId, position.day(),
+                    position.capacity(), position.tableNumber(), position.slots().getFrom(), position.slots().getTo())));
+            Path directory = Path.of(timeGraphConfig.getJournalDir());
+            Files.createDirectories(directory);
+            Path temp = directory.resolve("graph.snapshot.tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        HEADER_BYTES + (long) entries.size() * SNAPSHOT_RECORD_BYTES);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+                entries.forEach(entry -> putEntry(buffer, entry));
+                buffer.force();
+            }
+            Files.move(temp, snapshotPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            closeLog();
+            Files.deleteIfExists(logPath());
+            log.info("Time-graph snapshot written: {} bookings", entries.size());
+        } catch (IOException e) {
+            log.error("Failed to write time-graph snapshot: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // снимок плюс журнал поверх него; журнал читается до первой записи с несошедшимся CRC:
+    // оборванный при падении хвост и все, что за испорченной записью, отбрасывается, недостающее вернет сверка с базой
+    public Map<Long, Entry> restore() {
+        Map<Long, Entry> entries = new LinkedHashMap<>();
+        if (!isEnabled()) {
+            return entries;
+        }
+        try {
+            if (Files.exists(snapshotPath())) {
+                try (FileChannel channel = FileChannel.open(snapshotPath(), StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                        log.warn("Time-graph snapshot has unknown format, ignoring it");
+                        return new LinkedHashMap<>();
+                    }
+                    int count = buffer.getInt();
+                    for (int i = 0; i < count; i++) {
+                        Entry entry = getEntry(buffer);
+                        entries.put(entry.bookingId(), entry);
+                    }
+                }
+            }
+            if (Files.exists(logPath())) {
+                try (FileChannel channel = FileChannel.open(logPath(), StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    while (buffer.remaining() >= LOG_RECORD_BYTES) {
+                        long expectedCrc = buffer.getLong();
+                        ByteBuffer body = buffer.slice(buffer.position(), LOG_BODY_BYTES);
+                        CRC32 crc = new CRC32();
+                        crc.update(body.duplicate());
+                        if (crc.getValue() != expectedCrc) {
+                            log.warn("Time-graph journal record at {} is corrupted, ignoring the rest of the log",
+                                    buffer.position() - 8);
+                            break;
+                        }
+                        buffer.position(buffer.position() + LOG_BODY_BYTES);
+                        byte type = body.get();
+                        Entry entry = getEntry(body);
+                        if (type == BOOK) {
+                            entries.put(entry.bookingId(), entry);
+                        } else {
+                            entries.remove(entry.bookingId());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to read time-graph journal: {}", e.getMessage());
+            return new LinkedHashMap<>();
+        }
+        return entries;
+    }
+
+    // журнал не синхронизируется с диском на каждую запись: потерянный хвост восполнит сверка с базой
+    private void append(ByteBuffer record) {
+        lock.lock();
+        try {
+            if (logChannel == null) {
+                Files.createDirectories(Path.of(timeGraphConfig.getJournalDir()));
+                logChannel = FileChannel.open(logPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            while (record.hasRemaining()) {
+                logChannel.write(record);
+            }
+        } catch (IOException e) {
+            log.error("Failed to append to time-graph journal: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeLog() throws IOException {
+        if (logChannel != null) {
+            logChannel.close();
+            logChannel = null;
+        }
+    }
+
+    private Path snapshotPath() {
+        return Path.of(timeGraphConfig.getJournalDir(), "graph.snapshot");
+    }
+
+    private Path logPath() {
+        return Path.of(timeGraphConfig.getJournalDir(), "graph.log");
+    }
+
+    private static ByteBuffer encode(byte type, Entry entry) {
+        ByteBuffer body = ByteBuffer.allocate(LOG_BODY_BYTES).put(type);
+        putEntry(body, entry);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        return ByteBuffer.allocate(LOG_RECORD_BYTES)
+                .putLong(crc.getValue())
+                .put(body.array())
+                .flip();
+    }
+
+    private static void putEntry(ByteBuffer buffer, Entry entry) {
+        buffer.putLong(entry.bookingId())
+                .putInt((int) entry.day().toEpochDay())
+                .putInt(entry.capacity())
+                .putInt(entry.tableNumber())
+                .putShort((short) entry.from())
+                .putShort((short) entry.to());
+    }
+
+    private static Entry getEntry(ByteBuffer buffer) {
+        return new Entry(buffer.getLong(), LocalDate.ofEpochDay(buffer.getInt()), buffer.getInt(), buffer.getInt(),
+                buffer.getShort(), buffer.getShort());
+    }
+}
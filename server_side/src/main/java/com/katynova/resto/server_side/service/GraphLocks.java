@@ -0,0 +1,176 @@
+package com.katynova.resto.server_side.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+// блокировки графа, разделенные на страйпы по (день, вместимость) с блокировками столов внутри страйпа
+// порядок захвата фиксирован: страйпы по возрастанию вместимости, затем стол внутри страйпа
+// операции над одним столом держат только блокировку стола и никогда не ждут страйп, поэтому взаимных блокировок нет
+// отдельно от страйпов - блокировка дня: запись брони держит ее разделяемой, перестройка дня - исключительной;
+// исключительную берут по одному дню за раз, поэтому порядок с разделяемыми не важен
+@Component
+@Slf4j
+public class GraphLocks {
+
+    private final ConcurrentMap<StripeKey, Stripe> stripes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<LocalDate, ReentrantReadWriteLock> days = new ConcurrentHashMap<>();
+
+    public boolean tryLockStripe(LocalDate day, int capacity, long timeout, TimeUnit unit) throws InterruptedException {
+        while (true) {
+            Stripe stripe = stripe(day, capacity);
+            stripe.acquired.increment();
+            if (!stripe.lock.tryLock()) {
+                stripe.contended.increment();
+                if (!stripe.lock.tryLock(timeout, unit)) {
+                    stripe.timedOut.increment();
+                    return false;
+                }
+            }
+            if (isCurrent(day, capacity, stripe)) {
+                return true;
+            }
+            // страйп удалили вместе с днем, пока мы его ждали - берем новый
+            stripe.lock.unlock();
+        }
+    }
+
+    public void unlockStripe(LocalDate day, int capacity) {
+        stripe(day, capacity).lock.unlock();
+    }
+
+    public void lockTable(LocalDate day, int capacity, int tableNumber) {
+        while (true) {
+            Stripe stripe = stripe(day, capacity);
+            ReentrantLock lock = stripe.tables.computeIfAbsent(tableNumber, k -> new ReentrantLock());
+            if (!lock.tryLock()) {
+                stripe.tableContended.increment();
+                lock.lock();
+            }
+            if (isCurrent(day, capacity, stripe)) {
+                return;
+            }
+            lock.unlock();
+        }
+    }
+
+    public void unlockTable(LocalDate day, int capacity, int tableNumber) {
+        stripe(day, capacity).tables.get(tableNumber).unlock();
+    }
+
+    public void lockDayShared(LocalDate day) {
+        while (true) {
+            ReentrantReadWriteLock gate = day(day);
+            gate.readLock().lock();
+            if (isCurrent(day, gate)) {
+                return;
+            }
+            gate.readLock().unlock();
+        }
+    }
+
+    public void unlockDayShared(LocalDate day) {
+        days.get(day).readLock().unlock();
+    }
+
+    public boolean tryLockDayExclusive(LocalDate day, long timeout, TimeUnit unit) throws InterruptedException {
+        while (true) {
+            ReentrantReadWriteLock gate = day(day);
+            if (!gate.writeLock().tryLock(timeout, unit)) {
+                return false;
+            }
+            if (isCurrent(day, gate)) {
+                return true;
+            }
+            gate.writeLock().unlock();
+        }
+    }
+
+    public void unlockDayExclusive(LocalDate day) {
+        days.get(day).writeLock().unlock();
+    }
+
+    // удаляет страйпы дней, ушедших из графа; занятый страйп не трогаем, его удалит следующий вызов
+    // поток, захвативший уже удаленный страйп, заметит это после захвата и возьмет новый
+    public int removeDays(Predicate<LocalDate> removedDays) {
+        int removed = 0;
+        for (StripeKey key : stripes.keySet()) {
+            if (removedDays.test(key.day())
+                    && stripes.computeIfPresent(key, (k, stripe) -> stripe.isIdle() ? null : stripe) == null) {
+                removed++;
+            }
+        }
+        for (LocalDate day : days.keySet()) {
+            if (removedDays.test(day)) {
+                days.computeIfPresent(day, (k, gate) ->
+                        gate.isWriteLocked() || gate.getReadLockCount() > 0 ? gate : null);
+            }
+        }
+        return removed;
+    }
+
+    public List<StripeStats> stats() {
+        return stripes.entrySet().stream()
+                .map(entry -> new StripeStats(entry.getKey().day(), entry.getKey().capacity(),
+                        entry.getValue().acquired.sum(), entry.getValue().contended.sum(),
+                        entry.getValue().timedOut.sum(), entry.getValue().tableContended.sum()))
+                .sorted(Comparator.comparing(StripeStats::day).thenComparingInt(StripeStats::capacity))
+                .toList();
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void logContention() {
+        stats().stream()
+                .filter(stats -> stats.contended() > 0 || stats.tableContended() > 0)
+                .forEach(stats -> log.info("Lock contention {}", stats));
+    }
+
+    private Stripe stripe(LocalDate day, int capacity) {
+        return stripes.computeIfAbsent(new StripeKey(day, capacity), k -> new Stripe());
+    }
+
+    // проверка идет через computeIfPresent, а не get: она упорядочена с удалением страйпа в removeDays,
+    // поэтому либо удаление увидит захваченную блокировку, либо мы увидим, что страйп уже удален
+    private boolean isCurrent(LocalDate day, int capacity, Stripe stripe) {
+        return stripes.computeIfPresent(new StripeKey(day, capacity), (key, current) -> current) == stripe;
+    }
+
+    private ReentrantReadWriteLock day(LocalDate day) {
+        return days.computeIfAbsent(day, k -> new ReentrantReadWriteLock());
+    }
+
+    private boolean isCurrent(LocalDate day, ReentrantReadWriteLock gate) {
+        return days.computeIfPresent(day, (key, current) -> current) == gate;
+    }
+
+    private record StripeKey(LocalDate day, int capacity) {
+    }
+
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ConcurrentMap<Integer, ReentrantLock> tables = new ConcurrentHashMap<>();
+        private final LongAdder acquired = new LongAdder();
+        private final LongAdder contended = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder tableContended = new LongAdder();
+
+        private boolean isIdle() {
+            return !lock.isLocked() && tables.values().stream().noneMatch(ReentrantLock::isLocked);
+        }
+    }
+
+    public record StripeStats(LocalDate day, int capacity, long acquired, long contended, long timedOut,
+                              long tableContended) {
+    }
+}
@@ -0,0 +1,64 @@
+package com.katynova.resto.server_side.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+// перебалансировка при шардировании: дни назначенных партиций строятся внутри poll, до первых записей из них,
+// дни партиций, ушедших к другому экземпляру, удаляются из графа, а резервы вариантов этих дней
+// SuggestionHolds забывает по событию TimeGraphDaysDroppedEvent
+// колбэки приходят в потоках потребителей, у каждого потребителя экземпляра - свои
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GraphRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private static final String REQUEST_TOPIC = "request_topic";
+
+    private final GraphShards graphShards;
+    private final TimeGraphService timeGraphService;
+
+    // дни отозванных партиций пока не удаляем: при обычной (eager) перебалансировке отзываются все партиции,
+    // и большинство тут же возвращается этому же экземпляру; до назначения потребитель записей не получает
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        graphShards.revoke(requestPartitions(partitions));
+    }
+
+    // партиции потеряны без отзыва - потребитель выпал из группы, и их уже обслуживает другой экземпляр
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        graphShards.revoke(requestPartitions(partitions));
+        int dropped = dropForeignDays();
+        log.warn("Partitions {} lost, {} days dropped", partitions, dropped);
+    }
+
+    // потребитель, которому партиция вернется позже в той же перебалансировке, может застать ее чужой,
+    // тогда ее дни удалятся и будут построены заново - лишняя работа, но не устаревший граф
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        graphShards.assign(requestPartitions(partitions), consumer.partitionsFor(REQUEST_TOPIC).size());
+        int dropped = dropForeignDays();
+        int loaded = timeGraphService.loadOwnedDays();
+        log.info("Partitions {} assigned, owned {}: {} days dropped, {} days loaded",
+                partitions, graphShards.ownedPartitions(), dropped, loaded);
+    }
+
+    private int dropForeignDays() {
+        return timeGraphService.dropDays(day -> !graphShards.owns(day));
+    }
+
+    // подтверждения читает тот же потребитель, но дни определяются только партициями запросов
+    private static List<Integer> requestPartitions(Collection<TopicPartition> partitions) {
+        return partitions.stream()
+                .filter(partition -> REQUEST_TOPIC.equals(partition.topic()))
+                .map(TopicPartition::partition)
+                .toList();
+    }
+}
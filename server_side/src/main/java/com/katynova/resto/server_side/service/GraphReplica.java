@@ -0,0 +1,83 @@
+package com.katynova.resto.server_side.service;
+
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// теплый резерв и реплика для чтения (time-graph.replica): граф строится из журнала изменений и следует за ним,
+// брони из базы не читаются; у каждой реплики своя группа, чтобы она читала все партиции журнала с начала
+// запросы на бронирование реплика не слушает, просмотр доступности - слушает
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ManagedResource(objectName = "resto:name=graphReplica")
+public class GraphReplica {
+
+    public static final String LISTENER_ID = "graphReplica";
+
+    private final TimeGraphService timeGraphService;
+    private final GraphChangelog graphChangelog;
+    private final TimeGraphConfig timeGraphConfig;
+    private final KafkaListenerEndpointRegistry registry;
+
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = "${time-graph.changelog-topic:time_graph_changelog}",
+            containerFactory = "changelogFactory", groupId = "time-graph-replica-#{T(java.util.UUID).randomUUID()}",
+            autoStartup = "${time-graph.replica:false}")
+    public void follow(ConsumerRecord<String, GraphChangelog.TableState> record) {
+        if (record.value() == null) {
+            timeGraphService.applyDayEvicted(GraphChangelog.dayOf(record.key()));
+        } else {
+            timeGraphService.applyTableState(record.value());
+        }
+    }
+
+    // переключение в основной экземпляр (JMX, требует spring.jmx.enabled=true): граф уже в памяти,
+    // поэтому достаточно остановить чтение журнала, снять резервы вариантов упавшего экземпляра,
+    // запустить слушатели бронирования и в фоне сверить граф с базой - на случай броней, не успевших попасть в журнал
+    @ManagedOperation
+    public synchronized void promote() {
+        if (!graphChangelog.isFollowing()) {
+            log.info("Time-graph instance is already primary");
+            return;
+        }
+        long startedNanos = System.nanoTime();
+        MessageListenerContainer follower = registry.getListenerContainer(LISTENER_ID);
+        if (follower != null) {
+            follower.stop();
+        }
+        graphChangelog.setFollowing(false);
+        int released = timeGraphService.releaseReserved();
+        timeGraphService.reconcile();
+        for (String listenerId : bookingListeners()) {
+            MessageListenerContainer container = registry.getListenerContainer(listenerId);
+            if (container != null) {
+                container.start();
+            }
+        }
+        log.info("Time-graph replica promoted to primary in {} ms, {} reserved slots released",
+                (System.nanoTime() - startedNanos) / 1_000_000, released);
+    }
+
+    // те же слушатели, что запустились бы у основного экземпляра с этими настройками
+    private List<String> bookingListeners() {
+        List<String> listeners = new ArrayList<>();
+        if (timeGraphConfig.isSharding()) {
+            listeners.add(ShardedKafkaService.LISTENER_ID);
+            return listeners;
+        }
+        listeners.add(timeGraphConfig.isBatchListener() ? KafkaService.BATCH_REQUEST_LISTENER_ID
+                : KafkaService.REQUEST_LISTENER_ID);
+        listeners.add(KafkaService.CONFIRMATION_LISTENER_ID);
+        return listeners;
+    }
+}
@@ -0,0 +1,47 @@
+package com.katynova.resto.server_side.service;
+
+import com.katynova.resto.common_dto_library.BusinessDay;
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// какие рабочие дни держит в графе этот экземпляр: клиент кладет запросы дня в партицию BusinessDay.partition,
+// экземпляр держит дни партиций request_topic, назначенных его потребителям
+// без шардирования экземпляр один и держит все дни
+@Component
+@RequiredArgsConstructor
+public class GraphShards {
+
+    private final TimeGraphConfig timeGraphConfig;
+
+    // объединение партиций всех потребителей экземпляра
+    private final Set<Integer> ownedPartitions = ConcurrentHashMap.newKeySet();
+    private volatile int partitionCount;
+
+    public boolean owns(LocalDate day) {
+        if (!timeGraphConfig.isSharding()) {
+            return true;
+        }
+        int partitions = partitionCount;
+        // до первого назначения партиций экземпляр не держит ни одного дня
+        return partitions > 0 && ownedPartitions.contains(BusinessDay.partition(day, partitions));
+    }
+
+    public void assign(Collection<Integer> partitions, int partitionCount) {
+        this.partitionCount = partitionCount;
+        ownedPartitions.addAll(partitions);
+    }
+
+    public void revoke(Collection<Integer> partitions) {
+        ownedPartitions.removeAll(partitions);
+    }
+
+    public Set<Integer> ownedPartitions() {
+        return Set.copyOf(ownedPartitions);
+    }
+}
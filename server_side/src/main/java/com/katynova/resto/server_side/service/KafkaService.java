@@ -1,6 +1,9 @@
 package com.katynova.resto.server_side.service;
 
+import com.katynova.resto.common_dto_library.AvailabilityProbeRequestDto;
+import com.katynova.resto.common_dto_library.AvailabilityRequestDto;
 import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.common_dto_library.response.BookingErrorResponse;
 import com.katynova.resto.common_dto_library.response.BookingResponse;
 import com.katynova.resto.common_dto_library.response.SlotConfirmation;
 import lombok.RequiredArgsConstructor;
@@ -16,17 +19,28 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class KafkaService {
 
+    // id слушателей бронирования: реплика запускает их при переключении в основной экземпляр
+    public static final String REQUEST_LISTENER_ID = "bookingRequests";
+    public static final String BATCH_REQUEST_LISTENER_ID = "bookingRequestBatches";
+    public static final String CONFIRMATION_LISTENER_ID = "slotConfirmations";
+
     private final KafkaTemplate<String, BookingResponse> kafkaTemplate;
     private final BookingService bookingService;
+    private final AvailabilityService availabilityService;
 
 
-    @KafkaListener(topics = "request_topic", containerFactory = "factory")
+    // одиночный и пакетный слушатели взаимоисключающие: запускается только один из них
+    // при шардировании запросы и подтверждения читает ShardedKafkaService, у реплики слушатели не запускаются
+    @KafkaListener(id = REQUEST_LISTENER_ID, idIsGroup = false, topics = "request_topic",
+            containerFactory = "factory",
+            autoStartup = "#{!${time-graph.batch-listener:false} and !${time-graph.sharding:false} and !${time-graph.replica:false}}")
     public void listenRequest(ConsumerRecord<String, BookingRequestDto> record) {
         BookingRequestDto request = record.value();
         log.info("Received request: {}", request);
@@ -45,7 +59,45 @@ public class KafkaService {
     }
 
 
-    @KafkaListener(topics = "confirmation_topic", containerFactory = "slotFactory")
+    // ответы уходят в порядке записей, каждый со своим correlationId; отправка асинхронная, ошибки только логируются
+    @KafkaListener(id = BATCH_REQUEST_LISTENER_ID, idIsGroup = false, topics = "request_topic",
+            containerFactory = "batchFactory",
+            autoStartup = "#{${time-graph.batch-listener:false} and !${time-graph.sharding:false} and !${time-graph.replica:false}}")
+    public void listenRequests(List<ConsumerRecord<String, BookingRequestDto>> records) {
+        log.info("Received batch of {} requests", records.size());
+        List<BookingRequestDto> requests = records.stream().map(ConsumerRecord::value).toList();
+        List<BookingResponse> results;
+        try {
+            results = bookingService.getResponses(requests);
+        } catch (Exception e) {
+            // пакет не сохранился целиком - каждому запросу отвечаем ошибкой
+            log.error("Batch of {} requests failed: {}", records.size(), e.getMessage());
+            results = requests.stream()
+                    .<BookingResponse>map(request -> new BookingErrorResponse(request.getCorrelationId(),
+                            request.getRequestId(), "Ошибка при запросе на бронирование. Повторите попытку позже"))
+                    .toList();
+        }
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, BookingRequestDto> record = records.get(i);
+            Header correlationHeader = record.headers().lastHeader(KafkaHeaders.CORRELATION_ID);
+            byte[] correlationId = correlationHeader != null ? correlationHeader.value() : record.key().getBytes(StandardCharsets.UTF_8);
+            Message<BookingResponse> responseMessage = MessageBuilder
+                    .withPayload(results.get(i))
+                    .setHeader(KafkaHeaders.TOPIC, "response_topic")
+                    .setHeader(KafkaHeaders.KEY, record.key())
+                    .setHeader(KafkaHeaders.CORRELATION_ID, correlationId)
+                    .build();
+            kafkaTemplate.send(responseMessage).whenComplete((sent, error) -> {
+                if (error != null) {
+                    log.error("Failed to send response for {}: {}", record.key(), error.getMessage());
+                }
+            });
+        }
+    }
+
+    @KafkaListener(id = CONFIRMATION_LISTENER_ID, idIsGroup = false, topics = "confirmation_topic",
+            containerFactory = "slotFactory",
+            autoStartup = "#{!${time-graph.sharding:false} and !${time-graph.replica:false}}")
     public void confirm(ConsumerRecord<String, SlotConfirmation> record) {
         SlotConfirmation confirmation = record.value();
         log.info("Received confirmation: {}", confirmation);
@@ -63,4 +115,35 @@ public class KafkaService {
         kafkaTemplate.send(responseMessage);
     }
 
+    @KafkaListener(topics = "availability_request_topic", containerFactory = "availabilityFactory")
+    public void listenAvailability(ConsumerRecord<String, AvailabilityRequestDto> record) {
+        AvailabilityRequestDto request = record.value();
+        log.debug("Received availability request: {}", request);
+        Header correlationHeader = record.headers().lastHeader(KafkaHeaders.CORRELATION_ID);
+        byte[] correlationId = correlationHeader != null ? correlationHeader.value() : record.key().getBytes(StandardCharsets.UTF_8);
+        BookingResponse result = availabilityService.getAvailability(request);
+        Message<BookingResponse> responseMessage = MessageBuilder
+                .withPayload(result)
+                .setHeader(KafkaHeaders.TOPIC, "availability_response_topic")
+                .setHeader(KafkaHeaders.KEY, record.key())
+                .setHeader(KafkaHeaders.CORRELATION_ID, correlationId)
+                .build();
+        kafkaTemplate.send(responseMessage);
+    }
+
+    @KafkaListener(topics = "availability_probe_topic", containerFactory = "probeFactory")
+    public void listenProbe(ConsumerRecord<String, AvailabilityProbeRequestDto> record) {
+        AvailabilityProbeRequestDto request = record.value();
+        log.debug("Received availability probe: {}", request);
+        Header correlationHeader = record.headers().lastHeader(KafkaHeaders.CORRELATION_ID);
+        byte[] correlationId = correlationHeader != null ? correlationHeader.value() : record.key().getBytes(StandardCharsets.UTF_8);
+        BookingResponse result = availabilityService.probe(request);
+        Message<BookingResponse> responseMessage = MessageBuilder
+                .withPayload(result)
+                .setHeader(KafkaHeaders.TOPIC, "availability_probe_response_topic")
+                .setHeader(KafkaHeaders.KEY, record.key())
+                .setHeader(KafkaHeaders.CORRELATION_ID, correlationId)
+                .build();
+        kafkaTemplate.send(responseMessage);
+    }
 }
@@ -0,0 +1,62 @@
+package com.katynova.resto.server_side.service;
+
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.common_dto_library.response.BookingResponse;
+import com.katynova.resto.common_dto_library.response.SlotConfirmation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaHandler;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+
+// слушатель для шардирования: request_topic и confirmation_topic читает один потребитель,
+// RangeAssignor отдает ему одинаковые номера партиций обоих топиков, поэтому подтверждение
+// приходит на тот экземпляр, который держит день и резерв варианта
+// заменяет одиночные слушатели запросов и подтверждений из KafkaService
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@KafkaListener(id = ShardedKafkaService.LISTENER_ID, idIsGroup = false,
+        topics = {"request_topic", "confirmation_topic"}, containerFactory = "shardedFactory",
+        autoStartup = "#{${time-graph.sharding:false} and !${time-graph.replica:false}}")
+public class ShardedKafkaService {
+
+    public static final String LISTENER_ID = "shardedBookings";
+
+    private final KafkaTemplate<String, BookingResponse> kafkaTemplate;
+    private final BookingService bookingService;
+
+    @KafkaHandler
+    public void listenRequest(BookingRequestDto request,
+                              @Header(KafkaHeaders.RECEIVED_KEY) String key,
+                              @Header(name = KafkaHeaders.CORRELATION_ID, required = false) byte[] correlationId) {
+        log.info("Received request: {}", request);
+        reply("response_topic", key, correlationId, bookingService.getResponse(request));
+    }
+
+    @KafkaHandler
+    public void confirm(SlotConfirmation confirmation,
+                        @Header(KafkaHeaders.RECEIVED_KEY) String key,
+                        @Header(name = KafkaHeaders.CORRELATION_ID, required = false) byte[] correlationId) {
+        log.info("Received confirmation: {}", confirmation);
+        reply("slot-confirmation-response-topic", key, correlationId, bookingService.confirmSlot(confirmation));
+    }
+
+    private void reply(String topic, String key, byte[] correlationId, BookingResponse result) {
+        Message<BookingResponse> responseMessage = MessageBuilder
+                .withPayload(result)
+                .setHeader(KafkaHeaders.TOPIC, topic)
+                .setHeader(KafkaHeaders.KEY, key)
+                .setHeader(KafkaHeaders.CORRELATION_ID,
+                        correlationId != null ? correlationId : key.getBytes(StandardCharsets.UTF_8))
+                .build();
+        kafkaTemplate.send(responseMessage);
+    }
+}
@@ -0,0 +1,147 @@
+package com.katynova.resto.server_side.service;
+
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.common_dto_library.BusinessDay;
+import com.katynova.resto.server_side.config.TimeGraphDaysDroppedEvent;
+import com.katynova.resto.server_side.model.BookingPosition;
+import com.katynova.resto.server_side.model.info.SuggestBookingInfo;
+import com.katynova.resto.server_side.utility_service.OpeningHoursCalendar;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+// резервы предложенных вариантов живут только в памяти: слоты помечены в графе как зарезервированные,
+// а в базу попадает лишь тот вариант, который гость подтвердил
+// после рестарта резервов нет - граф строится из базы и журнала, где их никогда не было,
+// а подтверждение получит ответ "время истекло", как и после обычного истечения резерва
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SuggestionHolds {
+
+    private final TimeGraphService timeGraphService;
+    private final OpeningHoursCalendar openingHoursCalendar;
+
+    private final ConcurrentMap<Long, Hold> holds = new ConcurrentHashMap<>();
+
+    // сроки резервов: отдельный поток спит до ближайшего из них и снимает резерв сразу по истечении,
+    // без периодического обхода всех резервов; подтвержденные и отвергнутые резервы из очереди не удаляются,
+    // при срабатывании их просто нет в holds
+    private final DelayQueue<Expiry> expiries = new DelayQueue<>();
+    private Thread expiryThread;
+
+    // номера резервов растут и между рестартами, чтобы id из старого ответа не подтвердил чужой резерв
+    // в id номер сдвинут на биты рабочего дня (BusinessDay.holdId), поэтому начинаем с миллисекунд без множителя
+    private final AtomicLong nextSequence = new AtomicLong(System.currentTimeMillis());
+
+    // все, что нужно, чтобы при подтверждении создать бронь, не обращаясь к графу
+    public record Hold(long id, BookingRequestDto request, int tableNumber, LocalDateTime startTime,
+                       LocalDateTime endTime, BookingPosition position, LocalDateTime expired) {
+    }
+
+    private record Expiry(Hold hold, long deadline) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((Expiry) other).deadline);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        expiryThread = Thread.ofPlatform().daemon().name("suggestion-holds-expiry").start(this::releaseExpired);
+    }
+
+    @PreDestroy
+    public void stop() {
+        expiryThread.interrupt();
+    }
+
+    // слоты варианта уже зарезервированы в графе поиском, здесь только запоминаем резерв
+    public Hold hold(BookingRequestDto request, SuggestBookingInfo info, LocalDateTime startTime,
+                     LocalDateTime endTime, LocalDateTime expired) {
+        BookingPosition position = new BookingPosition(openingHoursCalendar.getDayOf(startTime).day(),
+                info.getCapacity(), info.getTableNumber(), info.getSlots());
+        Hold hold = new Hold(BusinessDay.holdId(nextSequence.incrementAndGet(), position.day()), request,
+                info.getTableNumber(), startTime, endTime, position, expired);
+        holds.put(hold.id(), hold);
+        expiries.add(new Expiry(hold, System.nanoTime() + Duration.between(LocalDateTime.now(), expired).toNanos()));
+        return hold;
+    }
+
+    // резерв забирается ровно один раз: подтверждение и истечение не могут получить его оба
+    // null - резерва нет или он уже истек
+    public Hold take(long holdId) {
+        Hold hold = holds.remove(holdId);
+        if (hold == null) {
+            return null;
+        }
+        if (hold.expired().isBefore(LocalDateTime.now())) {
+            timeGraphService.releaseHold(hold.position());
+            return null;
+        }
+        return hold;
+    }
+
+    public boolean contains(long holdId) {
+        return holds.containsKey(holdId);
+    }
+
+    public void release(Collection<Long> holdIds) {
+        for (Long holdId : holdIds) {
+            Hold hold = holds.remove(holdId);
+            if (hold != null) {
+                timeGraphService.releaseHold(hold.position());
+            }
+        }
+    }
+
+    // дни, удаленные из графа (горизонт, перебалансировка) или пересобранные под новые часы, заменяются целиком,
+    // поэтому резервы этих дней просто забываем, не освобождая слоты: в графе их столов уже нет
+    public void dropDays(Predicate<LocalDate> droppedDays) {
+        holds.values().removeIf(hold -> droppedDays.test(hold.position().day()));
+    }
+
+    @EventListener
+    public void onDaysDropped(TimeGraphDaysDroppedEvent event) {
+        dropDays(event.getDays()::contains);
+    }
+
+    // резерв могли подтвердить или отвергнуть раньше срока - тогда его уже нет в holds
+    private void releaseExpired() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Hold hold = expiries.take().hold();
+                if (holds.remove(hold.id(), hold)) {
+                    timeGraphService.releaseHold(hold.position());
+                    log.debug("Suggestion hold {} expired", hold.id());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // поток истечения не должен умирать из-за одного резерва
+                log.error("Failed to release expired suggestion hold: {}", e.getMessage());
+            }
+        }
+    }
+}
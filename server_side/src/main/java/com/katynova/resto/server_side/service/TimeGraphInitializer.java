@@ -1,5 +1,6 @@
 package com.katynova.resto.server_side.service;
 
+import com.katynova.resto.server_side.config.TimeGraphConfig;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,12 +15,27 @@ import org.springframework.context.annotation.Configuration;
 public class TimeGraphInitializer {
 
     private final TimeGraphService timeGraphService;
+    private final TimeGraphConfig timeGraphConfig;
+    private final BookingWriteBehind bookingWriteBehind;
 
     @PostConstruct
     public void init() {
+        // реплика строит граф из журнала изменений, когда запустится ее слушатель
+        if (timeGraphConfig.isReplica()) {
+            log.info("Time graph replica will follow the changelog topic");
+            return;
+        }
         try {
             log.info("Initializing time graph cache...");
-            timeGraphService.fillIn();
+            // брони, подтвержденные до падения, но не дошедшие до базы, должны попасть в граф вместе с остальными
+            bookingWriteBehind.recover();
+            // со снимком сервис готов сразу, а сверка с базой идет в фоне
+            if (timeGraphService.restoreFromJournal()) {
+                timeGraphService.reconcile();
+            } else {
+                timeGraphService.fillIn();
+            }
+            timeGraphService.maintainHorizon();
             log.info("Time graph cache initialized successfully");
         } catch (Exception e) {
             log.error("Failed to initialize time graph cache", e);
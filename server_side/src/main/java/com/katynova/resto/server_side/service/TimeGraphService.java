@@ -3,11 +3,18 @@ package com.katynova.resto.server_side.service;
 import com.katynova.resto.common_dto_library.BookingRequestDto;
 import com.katynova.resto.common_dto_library.response.BookingResponse;
 import com.katynova.resto.common_dto_library.response.BookingSuggestResponse;
+import com.katynova.resto.server_side.config.OpeningHoursChangedEvent;
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.config.TimeGraphDaysDroppedEvent;
 import com.katynova.resto.server_side.config.TimeGraphRefreshEvent;
 import com.katynova.resto.server_side.exception.ConsistencyException;
+import com.katynova.resto.server_side.model.BookingGraphRow;
+import com.katynova.resto.server_side.model.BookingPosition;
 import com.katynova.resto.server_side.model.FindResponse;
-import com.katynova.resto.server_side.model.GraphSlot;
-import com.katynova.resto.server_side.model.entity.Booking;
+import com.katynova.resto.server_side.model.FreeTableIndex;
+import com.katynova.resto.server_side.model.OpeningHours;
+import com.katynova.resto.server_side.model.SlotRange;
+import com.katynova.resto.server_side.model.TableSlots;
 import com.katynova.resto.server_side.model.entity.RestTable;
 import com.katynova.resto.server_side.model.info.AppropriateBookingInfo;
 import com.katynova.resto.server_side.model.info.SuggestBookingInfo;
@@ -15,24 +22,29 @@ import com.katynova.resto.server_side.model.status.ResponseStatus;
 import com.katynova.resto.server_side.repository.BookingRepository;
 import com.katynova.resto.server_side.repository.TableRepository;
 import com.katynova.resto.server_side.utility_service.CapacityService;
-import com.katynova.resto.server_side.utility_service.WorkingHoursCounter;
+import com.katynova.resto.server_side.utility_service.OpeningHoursCalendar;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -41,106 +53,413 @@ public class TimeGraphService implements ApplicationListener<TimeGraphRefreshEve
     private final BookingRepository bookingRepository;
     private final TableRepository tableRepository;
     private final GraphCreator graphCreator;
-    private final WorkingHoursCounter workingHoursCounter;
+    private final OpeningHoursCalendar openingHoursCalendar;
     private final CapacityService capacityService;
+    private final TimeGraphConfig timeGraphConfig;
+    private final GraphLocks graphLocks;
+    private final GraphJournal graphJournal;
+    private final GraphShards graphShards;
+    private final GraphChangelog graphChangelog;
+    private final BookingWriteBehind bookingWriteBehind;
+    private final ApplicationEventPublisher eventPublisher;
 
     private final ConcurrentMap<LocalDate, ConcurrentMap
             <Integer, ConcurrentMap
-                    <Integer, List<GraphSlot>>>> timeGraph = new ConcurrentHashMap<>();
+                    <Integer, TableSlots>>> timeGraph = new ConcurrentHashMap<>();
 
-    private final ConcurrentMap<LocalDate, ReentrantLock> locks = new ConcurrentHashMap<>();
+    // индекс свободных окон по (день, вместимость), создается и удаляется вместе с днем графа
+    private final ConcurrentMap<LocalDate, Map<Integer, FreeTableIndex>> freeTableIndex = new ConcurrentHashMap<>();
 
-    public ConcurrentMap<LocalDate, ConcurrentMap<Integer, ConcurrentMap<Integer, List<GraphSlot>>>> getTimeGraph() {
+    // обратный индекс: где в графе лежит бронь, чтобы освобождать ее, не обходя весь день
+    private final ConcurrentMap<Long, BookingPosition> bookingPositions = new ConcurrentHashMap<>();
+
+    // рабочий граф в виде буфера, чтобы загрузка писала в него так же, как в граф, собираемый в стороне
+    private final GraphBuffer live = new GraphBuffer(timeGraph, freeTableIndex, bookingPositions);
+
+    // брони, созданные в базе раньше этого момента, уже есть в графе
+    private volatile Instant watermark = Instant.EPOCH;
+
+    private static final Duration WATERMARK_OVERLAP = Duration.ofMinutes(1);
+
+    // брони, восстановленные из снимка: при сверке освобождаем те из них, которых уже нет в базе
+    private volatile Set<Long> restoredIds = Set.of();
+
+    // минимальная длина предложения - 2 часа
+    private static final int MIN_SUGGESTED_MINUTES = 120;
+    // предложения ищем в пределах часа до и после запрошенного времени
+    private static final int SUGGESTION_WINDOW_MINUTES = 60;
+
+    private static final Comparator<AppropriateBookingInfo> BEST_FIT = Comparator
+            .comparing((AppropriateBookingInfo info) -> info.getSlotsBefore() != 0 && info.getSlotsAfter() != 0)
+            .thenComparing(Comparator.comparingInt(
+                    (AppropriateBookingInfo info) -> info.getSlotsAfter() + info.getSlotsBefore()).reversed());
+
+    public ConcurrentMap<LocalDate, ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>>> getTimeGraph() {
         return timeGraph;
     }
 
+    // индекс свободных окон дня для чтения без блокировок; null, если дня нет в графе
+    public Map<Integer, FreeTableIndex> getFreeTableIndex(LocalDate day) {
+        return freeTableIndex.get(day);
+    }
+
+    // полная сборка графа (при старте): новый граф строится в стороне и публикуется по дням,
+    // поэтому запросы никогда не видят пустой или наполовину построенный день
+    // резервы, сделанные в старом графе во время сборки, не переносятся - для работающего сервиса есть refresh()
+    // читаем только брони горизонта и только нужные поля, курсором, без сущностей и ленивых загрузок
     @Transactional(readOnly = true)
     public void fillIn() {
-        locks.clear();
-        timeGraph.clear();
-        // достаем 1 запросом и столы, и бронирования
-        List<RestTable> tablesWithBookings = tableRepository.findAllWithBookings();
-        // предполагаем высоконагруженные системы, сделаем parallelStream
-        bookingRepository.findAll().parallelStream().forEach(booking -> {
-            addBookingFromDB(booking, tablesWithBookings);
+        Instant loadStartedAt = Instant.now();
+        long startedNanos = System.nanoTime();
+        LocalDate today = today();
+        LocalDate firstDay = today.minusDays(timeGraphConfig.getHorizonDaysBack());
+        LocalDate lastDay = today.plusDays(timeGraphConfig.getHorizonDaysAhead());
+        List<RestTable> allTables = tableRepository.findAll();
+        // строки раскладываем по рабочим дням: бронь после полуночи относится к дню открытия
+        // при шардировании чужие дни пропускаем, свои дни экземпляр получит при назначении партиций
+        Map<LocalDate, List<BookingGraphRow>> rowsByDay = new HashMap<>();
+        try (Stream<BookingGraphRow> stream = bookingRepository.streamGraphRows(
+                openingHoursCalendar.getDay(firstDay).openTime(), openingHoursCalendar.getDay(lastDay.plusDays(1)).openTime())) {
+            stream.forEach(row -> {
+                LocalDate day = dayOf(row);
+                if (graphShards.owns(day)) {
+                    rowsByDay.computeIfAbsent(day, d -> new ArrayList<>()).add(row);
+                }
+            });
+        }
+        long rows = rowsByDay.values().stream().mapToLong(List::size).sum();
+        long loadedNanos = System.nanoTime();
+        GraphBuffer buffer = GraphBuffer.empty();
+        // каждый день строится одной задачей в ForkJoin пуле: дни независимы, поэтому блокировки не нужны
+        rowsByDay.entrySet().parallelStream()
+                .forEach(entry -> buildDay(buffer, entry.getKey(), entry.getValue(), allTables));
+        publish(buffer);
+        watermark = loadStartedAt.minus(WATERMARK_OVERLAP);
+        graphJournal.writeSnapshot(bookingPositions);
+        long finishedNanos = System.nanoTime();
+        log.info("Filling up time-graph: {} bookings of {} days ({} - {}) read in {} ms ({} rows/sec), total {} ms",
+                rows, rowsByDay.size(), firstDay, lastDay, TimeUnit.NANOSECONDS.toMillis(loadedNanos - startedNanos),
+                rows * TimeUnit.SECONDS.toNanos(1) / Math.max(1, loadedNanos - startedNanos),
+                TimeUnit.NANOSECONDS.toMillis(finishedNanos - startedNanos));
+    }
+
+    // быстрый старт: граф восстанавливается из снимка и журнала без обращения к броням в базе
+    // возвращает false, если восстанавливать нечего и граф нужно строить из базы
+    public boolean restoreFromJournal() {
+        long startedNanos = System.nanoTime();
+        Map<Long, GraphJournal.Entry> entries = graphJournal.restore();
+        if (entries.isEmpty()) {
+            return false;
+        }
+        LocalDate firstDay = today().minusDays(timeGraphConfig.getHorizonDaysBack());
+        List<RestTable> allTables = tableRepository.findAll();
+        Map<LocalDate, List<GraphJournal.Entry>> entriesByDay = new HashMap<>();
+        entries.values().stream()
+                .filter(entry -> !entry.day().isBefore(firstDay) && graphShards.owns(entry.day()))
+                .forEach(entry -> entriesByDay.computeIfAbsent(entry.day(), day -> new ArrayList<>()).add(entry));
+        GraphBuffer buffer = GraphBuffer.empty();
+        entriesByDay.entrySet().parallelStream()
+                .forEach(entry -> restoreDay(buffer, entry.getKey(), entry.getValue(), allTables));
+        publish(buffer);
+        restoredIds = Set.copyOf(buffer.positions().keySet());
+        log.info("Time-graph restored from journal: {} bookings of {} days in {} ms", restoredIds.size(),
+                entriesByDay.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos));
+        return true;
+    }
+
+    // фоновая сверка восстановленного графа с базой: дописываем брони, которых не было в снимке,
+    // и освобождаем восстановленные брони, которых в базе уже нет; граф все это время обслуживает запросы
+    @Async
+    public void reconcile() {
+        Instant reconcileStartedAt = Instant.now();
+        LocalDate today = today();
+        LocalDate firstDay = today.minusDays(timeGraphConfig.getHorizonDaysBack());
+        LocalDate lastDay = today.plusDays(timeGraphConfig.getHorizonDaysAhead());
+        List<BookingGraphRow> rows = bookingRepository.findGraphRows(
+                openingHoursCalendar.getDay(firstDay).openTime(), openingHoursCalendar.getDay(lastDay.plusDays(1)).openTime());
+        List<RestTable> allTables = tableRepository.findAll();
+        Set<Long> databaseIds = new HashSet<>();
+        int applied = 0;
+        for (BookingGraphRow row : rows) {
+            databaseIds.add(row.id());
+            if (bookingPositions.containsKey(row.id())) {
+                continue;
+            }
+            LocalDate day = dayOf(row);
+            ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> daySlotsMap = timeGraph.get(day);
+            if (daySlotsMap == null) {
+                // дня не было в снимке: при создании он сам прочитает свои брони из базы
+                if (graphShards.owns(day)) {
+                    ensureDay(day, allTables);
+                }
+                continue;
+            }
+            if (addBookingFromDB(day, daySlotsMap, row)) {
+                applied++;
+            }
+        }
+        // брони за пределами прочитанного горизонта сверять не с чем
+        List<Long> deleted = restoredIds.stream()
+                .filter(bookingId -> !databaseIds.contains(bookingId))
+                .filter(bookingId -> {
+                    BookingPosition position = bookingPositions.get(bookingId);
+                    return position != null && !position.day().isAfter(lastDay);
+                })
+                .toList();
+        unreserveSlotsByBookingId(deleted);
+        restoredIds = Set.of();
+        watermark = reconcileStartedAt.minus(WATERMARK_OVERLAP);
+        log.info("Time-graph reconciled with database: {} bookings applied, {} released", applied, deleted.size());
+    }
+
+    @Scheduled(cron = "${time-graph.snapshot-cron:0 */5 * * * *}")
+    public void writeSnapshot() {
+        graphJournal.writeSnapshot(bookingPositions);
+    }
+
+    // инкрементальное обновление: удаляем прошедшие дни и дописываем брони, появившиеся в базе после водяного знака
+    // граф не очищается, поэтому запросы продолжают работать на нем без провалов
+    @Transactional(readOnly = true)
+    public void refresh() {
+        // реплика следует за журналом изменений, брони из базы ей не нужны
+        if (graphChangelog.isFollowing()) {
+            return;
+        }
+        Instant refreshStartedAt = Instant.now();
+        LocalDate today = today();
+        int evictedDays = evictDaysBefore(today.minusDays(timeGraphConfig.getHorizonDaysBack()));
+        List<BookingGraphRow> changed = bookingRepository.findGraphRowsCreatedAfter(watermark);
+        int applied = 0;
+        for (BookingGraphRow row : changed) {
+            LocalDate day = dayOf(row);
+            // брони, сделанные через этот сервис, уже лежат в графе, а дни вне графа прочитают брони при создании
+            ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> daySlotsMap = timeGraph.get(day);
+            if (bookingPositions.containsKey(row.id()) || daySlotsMap == null) {
+                continue;
+            }
+            // бронь касается одного стола, поэтому достаточно блокировки стола, страйп целиком не нужен
+            if (addBookingFromDB(day, daySlotsMap, row)) {
+                applied++;
+            }
+        }
+        // водяной знак сдвигаем с перекрытием: бронь могла получить created раньше, а закоммититься позже
+        // повторно прочитанные брони отсекаются по обратному индексу
+        watermark = refreshStartedAt.minus(WATERMARK_OVERLAP);
+        log.info("Time-graph refreshed: {} days evicted, {} of {} changed bookings applied",
+                evictedDays, applied, changed.size());
+    }
+
+    // дни заменяются целиком, индекс дня кладется раньше самого дня
+    private void publish(GraphBuffer buffer) {
+        buffer.days().forEach((day, daySlotsMap) -> {
+            freeTableIndex.put(day, buffer.indexes().get(day));
+            timeGraph.put(day, daySlotsMap);
+            graphChangelog.dayCreated(day, daySlotsMap);
         });
-        log.info("Filling up time-graph");
+        bookingPositions.putAll(buffer.positions());
+        timeGraph.keySet().removeIf(day -> !buffer.days().containsKey(day));
+        freeTableIndex.keySet().removeIf(day -> !buffer.days().containsKey(day));
+        bookingPositions.keySet().removeIf(bookingId -> !buffer.positions().containsKey(bookingId));
+    }
+
+    // скользящий горизонт: в тихое время удаляем прошедшие дни из графа и блокировок и заранее создаем
+    // ближайшие дни, чтобы первый запрос нового дня не строил его сам, держа страйп
+    @Scheduled(cron = "${time-graph.horizon-cron:0 30 4 * * *}")
+    public void maintainHorizon() {
+        LocalDate today = today();
+        int evictedDays = evictDaysBefore(today.minusDays(timeGraphConfig.getHorizonDaysBack()));
+        // при шардировании заодно удаляем чужие дни, созданные запросами, пришедшими не в свою партицию
+        evictedDays += dropDays(day -> !graphShards.owns(day));
+        // реплика получает новые дни из журнала изменений, а не из базы
+        int createdDays = graphChangelog.isFollowing() ? 0 : loadOwnedDays();
+        log.info("Time-graph horizon {} - {}: {} days evicted, {} days pre-warmed",
+                today.minusDays(timeGraphConfig.getHorizonDaysBack()),
+                today.plusDays(timeGraphConfig.getHorizonDaysAhead()), evictedDays, createdDays);
+    }
+
+    // создает дни горизонта, которые держит этот экземпляр и которых еще нет в графе
+    // при шардировании вызывается и при назначении партиций, до первых записей из них
+    public int loadOwnedDays() {
+        LocalDate today = today();
+        LocalDate lastDay = today.plusDays(timeGraphConfig.getHorizonDaysAhead());
+        List<RestTable> allTables = null;
+        int createdDays = 0;
+        for (LocalDate day = today; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            if (!timeGraph.containsKey(day) && graphShards.owns(day)) {
+                // столы читаем один раз на все создаваемые дни
+                if (allTables == null) {
+                    allTables = tableRepository.findAll();
+                }
+                ensureDay(day, allTables);
+                createdDays++;
+            }
+        }
+        return createdDays;
+    }
+
+    private LocalDate today() {
+        return openingHoursCalendar.getDayOf(LocalDateTime.now()).day();
+    }
+
+    private int evictDaysBefore(LocalDate day) {
+        timeGraph.forEach((graphDay, daySlotsMap) -> {
+            if (graphDay.isBefore(day)) {
+                graphChangelog.dayEvicted(graphDay, daySlotsMap);
+            }
+        });
+        return dropDays(graphDay -> graphDay.isBefore(day));
+    }
+
+    // дни удаляются из графа, индекса, обратного индекса и блокировок целиком
+    // при шардировании так уходят дни, отданные другому экземпляру: их брони он прочитает из базы сам
+    // резервы вариантов этих дней забываются по событию - так же, как при перестройке дня
+    public int dropDays(Predicate<LocalDate> droppedDays) {
+        List<LocalDate> dropped = timeGraph.keySet().stream().filter(droppedDays).toList();
+        dropped.forEach(timeGraph::remove);
+        freeTableIndex.keySet().removeIf(droppedDays);
+        bookingPositions.values().removeIf(position -> droppedDays.test(position.day()));
+        graphLocks.removeDays(droppedDays);
+        if (!dropped.isEmpty()) {
+            eventPublisher.publishEvent(new TimeGraphDaysDroppedEvent(this, Set.copyOf(dropped)));
+        }
+        return dropped.size();
+    }
+
+    private LocalDate dayOf(BookingGraphRow row) {
+        return openingHoursCalendar.getDayOf(row.startTime()).day();
+    }
+
+    // день, который еще никто не видит: брони кладем без блокировок
+    private void buildDay(GraphBuffer target, LocalDate day, List<BookingGraphRow> rows, List<RestTable> tables) {
+        ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> daySlotsMap = createDay(target, day, tables);
+        for (BookingGraphRow row : rows) {
+            addBookingFromDB(target.positions(), day, daySlotsMap, row, true);
+        }
+        target.days().put(day, daySlotsMap);
+    }
+
+    // день из снимка: отрезки уже посчитаны, время в слоты переводить не нужно
+    private void restoreDay(GraphBuffer target, LocalDate day, List<GraphJournal.Entry> entries,
+                            List<RestTable> tables) {
+        ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> daySlotsMap = createDay(target, day, tables);
+        for (GraphJournal.Entry entry : entries) {
+            ConcurrentMap<Integer, TableSlots> tablesWithCapacity = daySlotsMap.get(entry.capacity());
+            TableSlots table = tablesWithCapacity == null ? null : tablesWithCapacity.get(entry.tableNumber());
+            // столы могли поменяться со времени снимка - такие брони оставляем сверке с базой
+            if (table == null || entry.to() > table.size() || !table.isFree(entry.from(), entry.to())) {
+                log.warn("Booking {} from journal does not fit time-graph, skipping it", entry.bookingId());
+                continue;
+            }
+            table.book(entry.from(), entry.to(), entry.bookingId());
+            target.positions().put(entry.bookingId(), new BookingPosition(day, entry.capacity(), entry.tableNumber(),
+                    table.slice(entry.from(), entry.to())));
+        }
+        target.days().put(day, daySlotsMap);
     }
 
     // добавляем бронирования из базы
-    private void addBookingFromDB(Booking booking, List<RestTable> tables) {
-        LocalDate day = booking.getStartTime().toLocalDate();
-        LocalTime startTime = booking.getStartTime().toLocalTime();
-        LocalTime endTime = booking.getEndTime().toLocalTime();
-        // предполагается, что данные в бд полностью согласованы
-        ReentrantLock lock = locks.computeIfAbsent(day, k -> new ReentrantLock());
-        lock.lock();
+    // при полной загрузке конфликт означает несогласованные данные, при инкрементальной - бронь пропускается
+    private boolean addBookingFromDB(ConcurrentMap<Long, BookingPosition> positions, LocalDate day,
+                                     ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> daySlotsMap,
+                                     BookingGraphRow row, boolean failOnConflict) {
+        TableSlots table = daySlotsMap.get(row.capacity()).get(row.tableNumber());
+        int from = table.indexOf(row.startTime().toLocalTime());
+        // день могли закрыть или сократить особым расписанием уже после брони - места в графе для нее нет
+        if (from >= table.size()) {
+            log.warn("Booking {} at {} is outside opening hours of {}, skipping it", row.id(), row.startTime(), day);
+            return false;
+        }
+        int to = Math.min(from + getNeededSlots(Duration.between(row.startTime(), row.endTime()),
+                table.getSlotMinutes()), table.size());
+        int busy = table.nextOccupied(from, to);
+        if (busy != to) {
+            String errorMessage = String.format("Слот для стола %s уже забронирован на время %s",
+                    row.tableNumber(), table.timeAt(busy).toString());
+            if (!failOnConflict) {
+                log.warn(errorMessage);
+                return false;
+            }
+            log.error(errorMessage);
+            // предполагается, что данные в репозитории согласованы, поэтому здесь выкинем исключение
+            throw new ConsistencyException(errorMessage);
+        }
+        table.book(from, to, row.id());
+        positions.put(row.id(), new BookingPosition(day, row.capacity(), row.tableNumber(), table.slice(from, to)));
+        return true;
+    }
+
+    // бронь из базы в уже опубликованный день: под блокировкой стола и с публикацией его нового состояния
+    private boolean addBookingFromDB(LocalDate day, ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> daySlotsMap,
+                                     BookingGraphRow row) {
+        graphLocks.lockTable(day, row.capacity(), row.tableNumber());
         try {
-            // Атомарно создаём день если его нет
-            ConcurrentMap<Integer, ConcurrentMap<Integer, List<GraphSlot>>> daySlotsMap =
-                    timeGraph.computeIfAbsent(day, d -> graphCreator.createDay(d, tables));
-            int capacity = booking.getRestTable().getCapacity();
-            int tableNumber = booking.getTableNumber();
-            daySlotsMap.get(capacity).get(tableNumber).stream()
-                    .filter(slot -> isSlotInTimeRange(slot, startTime, endTime))
-                    .forEach(slot -> {
-                        if (!slot.isAvailable()) {
-                            String errorMessage = String.format("Слот для стола %s уже забронирован на время %s",
-                                    tableNumber, slot.getTime().toString());
-                            log.error(errorMessage);
-                            throw new ConsistencyException(errorMessage);
-                            // предполагается, что данные в репозитории согласованы, поэтому здесь выкинем исключение
-                        }
-                        slot.book(booking.getId());
-                    });
+            if (!addBookingFromDB(bookingPositions, day, daySlotsMap, row, false)) {
+                return false;
+            }
         } finally {
-            lock.unlock();
+            graphLocks.unlockTable(day, row.capacity(), row.tableNumber());
         }
+        graphChangelog.tableChanged(day, row.capacity(), row.tableNumber(),
+                daySlotsMap.get(row.capacity()).get(row.tableNumber()));
+        return true;
     }
 
     // ищем нужные слоты и резервируем их в графе
     public FindResponse<?> findBooking(BookingRequestDto bookingRequestDto) {
-        LocalDate day = workingHoursCounter.getOpenDateTime(bookingRequestDto.getStartTime()).toLocalDate();
-        LocalTime startTime = bookingRequestDto.getStartTime().toLocalTime();
-        LocalTime endTime = startTime.plus(bookingRequestDto.getDuration());
+        DaySearch search = toDaySearch(bookingRequestDto);
+        FindResponse<?> response = findOnRequestedDay(search, bookingRequestDto.getCorrelationId());
+        return withAdjacentDays(bookingRequestDto, search, response);
+    }
+
+    // пакетный поиск: запросы одного рабочего дня обслуживаются под одним захватом страйпов этого дня
+    // внутри дня запросы идут в порядке поступления, ответы возвращаются в порядке запросов
+    public List<FindResponse<?>> findBookings(List<BookingRequestDto> requests) {
+        List<DaySearch> searches = requests.stream().map(this::toDaySearch).toList();
+        Map<LocalDate, List<Integer>> positionsByDay = new LinkedHashMap<>();
+        for (int i = 0; i < searches.size(); i++) {
+            positionsByDay.computeIfAbsent(searches.get(i).day(), day -> new ArrayList<>()).add(i);
+        }
+        FindResponse<?>[] responses = new FindResponse<?>[requests.size()];
+        positionsByDay.forEach((day, positions) -> searchDayBatch(day, requests, searches, positions, responses));
+        // соседние дни - уже после того, как страйпы всех дней пакета отпущены, как и в одиночном поиске
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = withAdjacentDays(requests.get(i), searches.get(i), responses[i]);
+        }
+        return Arrays.asList(responses);
+    }
+
+    private DaySearch toDaySearch(BookingRequestDto bookingRequestDto) {
+        OpeningHours hours = openingHoursCalendar.getDayOf(bookingRequestDto.getStartTime());
+        int slotMinutes = openingHoursCalendar.getSlotMinutes();
+        // дальше работаем только с номерами слотов от открытия: переход через полночь в них уже учтен
+        // время начало брони ГАРАНТИРОВАННО совпадает с временем начала одного из слотов!
+        int startSlot = (int) (Duration.between(hours.openTime(), bookingRequestDto.getStartTime()).toMinutes() / slotMinutes);
+        int neededSlots = getNeededSlots(bookingRequestDto.getDuration(), slotMinutes);
+        SlotWindow window = toSlotWindow(hours, bookingRequestDto, slotMinutes);
         int capacity = capacityService.getCapacity(bookingRequestDto.getPersons());
-        ReentrantLock lock = locks.computeIfAbsent(day, k -> new ReentrantLock());
+        return new DaySearch(hours.day(), startSlot, neededSlots, window, capacity);
+    }
+
+    private FindResponse<?> withAdjacentDays(BookingRequestDto bookingRequestDto, DaySearch search, FindResponse<?> response) {
+        if (response.getStatus() != ResponseStatus.WAITLIST || timeGraphConfig.getCrossDaySpan() <= 0) {
+            return response;
+        }
+        // страйпы запрошенного дня к этому моменту уже отпущены, соседние дни берем по одному
+        FindResponse<SuggestBookingInfo> otherDays = findOnAdjacentDays(bookingRequestDto.getStartTime(),
+                search.neededSlots(), search.capacity());
+        return otherDays != null ? otherDays : response;
+    }
+
+    private FindResponse<?> findOnRequestedDay(DaySearch search, String correlationId) {
+        LocalDate day = search.day();
+        // страйпы, которые держит этот запрос, освобождаем все разом в конце
+        List<Integer> heldStripes = new ArrayList<>(2);
         try {
-            if (!lock.tryLock(1, TimeUnit.SECONDS)) {
+            if (!lockStripe(day, search.capacity(), heldStripes)) {
                 return new FindResponse<>(List.of("Ошибка при запросе на бронирование. Повторите попытку позже"), ResponseStatus.ERROR);
             }
-            try {
-                boolean isDayExists = timeGraph.containsKey(day);
-                if (!isDayExists) {
-                    return addFirstBookingInDay(day, startTime, endTime, capacity);
-                }
-                FindResponse<AppropriateBookingInfo> maybeBooking = findAppropriateTableForBooking(day, startTime, endTime, capacity);
-                if (maybeBooking != null) {
-                    return maybeBooking;
-                }
-                int increasedCapacity = capacity + 2;
-                boolean hasIncreasedCapacity = capacityService.getCapacities().contains(increasedCapacity);
-                if (hasIncreasedCapacity) {
-                    maybeBooking = findAppropriateTableForBooking(day, startTime, endTime, increasedCapacity);
-                    if (maybeBooking != null) {
-                        return maybeBooking;
-                    }
-                }
-                FindResponse<SuggestBookingInfo> suggests = findSuggestions(day, startTime, endTime, capacity,
-                        bookingRequestDto.getCorrelationId());
-                if (suggests != null) {
-                    return suggests;
-                }
-                if (hasIncreasedCapacity) {
-                    FindResponse<SuggestBookingInfo> suggest = findSuggestions(day, startTime, endTime,
-                            increasedCapacity, bookingRequestDto.getCorrelationId());
-                    if (suggest != null) {
-                        return suggest;
-                    }
-                }
-            } finally {
-                lock.unlock();
-            }
+            ensureDay(day);
+            return searchDay(search, correlationId, heldStripes);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt(); // Восстанавливаем флаг прерывания
             log.error("Поток был прерван при поиске бронирования: {}", e.getMessage());
@@ -148,34 +467,183 @@ public class TimeGraphService implements ApplicationListener<TimeGraphRefreshEve
                     List.of("Системная ошибка. Пожалуйста, попробуйте позже"),
                     ResponseStatus.ERROR
             );
+        } finally {
+            heldStripes.forEach(heldCapacity -> graphLocks.unlockStripe(day, heldCapacity));
+        }
+    }
+
+    // все страйпы дня берем один раз на группу по возрастанию вместимости, как и одиночные запросы
+    // страйпы реентерабельны, поэтому поиск внутри группы захватывает их повторно без ожидания
+    private void searchDayBatch(LocalDate day, List<BookingRequestDto> requests, List<DaySearch> searches,
+                                List<Integer> positions, FindResponse<?>[] responses) {
+        List<Integer> heldStripes = new ArrayList<>();
+        try {
+            for (int capacity : new TreeSet<>(capacityService.getCapacities())) {
+                if (!lockStripe(day, capacity, heldStripes)) {
+                    positions.forEach(position -> responses[position] = new FindResponse<>(
+                            List.of("Ошибка при запросе на бронирование. Повторите попытку позже"), ResponseStatus.ERROR));
+                    return;
+                }
+            }
+            ensureDay(day);
+            for (int position : positions) {
+                responses[position] = searchDay(searches.get(position), requests.get(position).getCorrelationId(),
+                        heldStripes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Поток был прерван при пакетном поиске на день {}: {}", day, e.getMessage());
+            positions.stream().filter(position -> responses[position] == null).forEach(position ->
+                    responses[position] = new FindResponse<>(List.of("Системная ошибка. Пожалуйста, попробуйте позже"),
+                            ResponseStatus.ERROR));
+        } finally {
+            heldStripes.forEach(heldCapacity -> graphLocks.unlockStripe(day, heldCapacity));
+        }
+    }
+
+    private FindResponse<?> searchDay(DaySearch search, String correlationId, List<Integer> heldStripes)
+            throws InterruptedException {
+        LocalDate day = search.day();
+        int startSlot = search.startSlot();
+        int neededSlots = search.neededSlots();
+        SlotWindow window = search.window();
+        int capacity = search.capacity();
+        FindResponse<AppropriateBookingInfo> maybeBooking = findAppropriateTableForBooking(day, startSlot, neededSlots, capacity);
+        if (maybeBooking != null) {
+            return maybeBooking;
+        }
+        int increasedCapacity = capacity + 2;
+        // второй страйп берем, продолжая держать первый: все запросы захватывают страйпы по возрастанию
+        // вместимости, поэтому взаимной блокировки быть не может
+        // если страйп занят дольше таймаута, считаем, что столов большей вместимости нет
+        boolean hasIncreasedCapacity = capacityService.getCapacities().contains(increasedCapacity)
+                && lockStripe(day, increasedCapacity, heldStripes);
+        if (hasIncreasedCapacity) {
+            maybeBooking = findAppropriateTableForBooking(day, startSlot, neededSlots, increasedCapacity);
+            if (maybeBooking != null) {
+                return maybeBooking;
+            }
+        }
+        // гость сам задал окно: вместо предложений в пределах часа ищем ближайшие варианты во всем окне
+        if (window != null) {
+            List<Integer> capacities = hasIncreasedCapacity ? List.of(capacity, increasedCapacity) : List.of(capacity);
+            FindResponse<SuggestBookingInfo> nearest = findNearestInWindow(day, startSlot, neededSlots, window, capacities);
+            return nearest != null ? nearest : new FindResponse<>(new ArrayList<>(), ResponseStatus.WAITLIST);
+        }
+        FindResponse<SuggestBookingInfo> suggests = findSuggestions(day, startSlot, neededSlots, capacity, correlationId);
+        if (suggests != null) {
+            return suggests;
+        }
+        if (hasIncreasedCapacity) {
+            FindResponse<SuggestBookingInfo> suggest = findSuggestions(day, startSlot, neededSlots,
+                    increasedCapacity, correlationId);
+            if (suggest != null) {
+                return suggest;
+            }
         }
         return new FindResponse<>(new ArrayList<>(), ResponseStatus.WAITLIST);
     }
 
-    private FindResponse<SuggestBookingInfo> findSuggestions(LocalDate day, LocalTime startTime, LocalTime endTime,
+    // в режиме без блокировок страйпы не нужны: слоты захватываются через CAS
+    // при привязке дней к партициям весь поиск по дню идет из одного потребителя, и страйп ему тоже не нужен;
+    // захват слотов остается атомарным, поэтому запрос, попавший не к своему потребителю
+    // (например, во время ребаланса), двойной брони все равно не даст
+    private boolean lockStripe(LocalDate day, int capacity, List<Integer> heldStripes) throws InterruptedException {
+        if (timeGraphConfig.isLockFree() || timeGraphConfig.isDayAffinity()) {
+            return true;
+        }
+        if (!graphLocks.tryLockStripe(day, capacity, 1, TimeUnit.SECONDS)) {
+            return false;
+        }
+        heldStripes.add(capacity);
+        return true;
+    }
+
+    // захват выбранных слотов; под блокировкой стола, чтобы не пересечься с освобождением броней этого стола
+    private boolean claim(LocalDate day, int capacity, int tableNumber, SlotRange slots) {
+        boolean claimed;
+        if (timeGraphConfig.isLockFree()) {
+            claimed = slots.tryReserve();
+        } else {
+            graphLocks.lockTable(day, capacity, tableNumber);
+            try {
+                claimed = slots.tryReserve();
+            } finally {
+                graphLocks.unlockTable(day, capacity, tableNumber);
+            }
+        }
+        if (claimed) {
+            graphChangelog.tableChanged(day, capacity, tableNumber, slots.getTable());
+        }
+        return claimed;
+    }
+
+    // день создаем атомарно: запросы разной вместимости могут прийти в новый день одновременно
+    // обычно день уже создан заранее при обслуживании горизонта
+    private void ensureDay(LocalDate day) {
+        if (!timeGraph.containsKey(day)) {
+            ensureDay(day, tableRepository.findAll());
+        }
+    }
+
+    // день вне загруженного горизонта может уже иметь брони в базе, поэтому читаем их перед созданием дня
+    // запрос идет до computeIfAbsent, внутри строим день только по готовым строкам
+    private void ensureDay(LocalDate day, List<RestTable> allTables) {
+        List<BookingGraphRow> rows = bookingRepository.findGraphRows(
+                openingHoursCalendar.getDay(day).openTime(), openingHoursCalendar.getDay(day.plusDays(1)).openTime());
+        // день публикуем в журнал изменений уже после computeIfAbsent, не держа блокировку мапы
+        AtomicReference<ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>>> created = new AtomicReference<>();
+        timeGraph.computeIfAbsent(day, d -> {
+            ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> daySlotsMap = createDay(live, d, allTables);
+            rows.forEach(row -> addBookingFromDB(bookingPositions, d, daySlotsMap, row, true));
+            created.set(daySlotsMap);
+            return daySlotsMap;
+        });
+        if (created.get() != null) {
+            graphChangelog.dayCreated(day, created.get());
+        }
+    }
+
+    // индекс публикуется раньше самого дня, поэтому любой поток, увидевший день, увидит и его индекс
+    private ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> createDay(GraphBuffer target, LocalDate day,
+                                                                                List<RestTable> tables) {
+        ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> daySlotsMap = graphCreator.createDay(day, tables);
+        target.indexes().put(day, graphCreator.createIndex(daySlotsMap));
+        return daySlotsMap;
+    }
+
+    private FindResponse<SuggestBookingInfo> findSuggestions(LocalDate day, int startSlot, int neededSlots,
                                                              int capacity, String correlationId) {
-        var decreasedStartTime = decreaseStartTime(startTime, day);
-        LocalTime increasedEndTime = increaseEndTime(endTime, day);
+        FreeTableIndex index = freeTableIndex.get(day).get(capacity);
+        if (index.size() == 0) {
+            return null;
+        }
+        // окно поиска - на час раньше и позже брони, но не раньше открытия и не позже закрытия
+        TableSlots anyTable = index.table(0);
+        int windowSlots = SUGGESTION_WINDOW_MINUTES / anyTable.getSlotMinutes();
+        int from = Math.max(startSlot - windowSlots, 0);
+        int to = Math.min(startSlot + neededSlots + windowSlots, anyTable.size());
+        // столы, полностью занятые на всем окне, отсекаем сразу по индексу; остальные идут в прежнем порядке
+        long[] candidates = index.tablesFreeWithin(from, to);
         List<SuggestBookingInfo> suggests = new ArrayList<>();
-        ConcurrentHashMap<Integer, List<GraphSlot>> slotsMap = new ConcurrentHashMap<>();
-        ConcurrentMap<Integer, List<GraphSlot>> allTablesWithCapacity = timeGraph.get(day).get(capacity)
-                .entrySet()
-                .stream()
-                .map(entry -> Map.entry(entry.getKey(), entry.getValue().stream()
-                        .filter(slot -> isSlotInTimeRange(slot, decreasedStartTime, increasedEndTime))
-                        .toList()))
-                .collect(Collectors.toConcurrentMap(Map.Entry::getKey, Map.Entry::getValue));
-        long neededSlots = getNeededSlots(startTime, endTime);
-        for (Map.Entry<Integer, List<GraphSlot>> entry : allTablesWithCapacity.entrySet()) {
-            SuggestBookingInfo maybeSuggest = getSuggestions(entry.getKey(), entry.getValue(), neededSlots);
-            if (maybeSuggest != null && !suggests.contains(maybeSuggest)) {
-                suggests.add(maybeSuggest);
-                // добавляем зарезервированные слоты в мапу
-                slotsMap.put(entry.getKey(), maybeSuggest.getSlots());
-            }
-            // нет смысла искать больше 4 предложений
-            if (suggests.size() >= 4) {
-                break;
+        for (int word = 0; word < candidates.length && suggests.size() < 4; word++) {
+            long bits = candidates[word];
+            while (bits != 0) {
+                int column = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int tableNumber = index.tableNumber(column);
+                SuggestBookingInfo maybeSuggest = getSuggestions(tableNumber, capacity, index.table(column), from, to,
+                        neededSlots);
+                // резервируем только после проверки на дубликат, чтобы не оставлять в графе лишних резервов
+                // если слоты успел занять другой поток, просто переходим к следующему столу
+                if (maybeSuggest != null && !suggests.contains(maybeSuggest)
+                        && claim(day, capacity, tableNumber, maybeSuggest.getSlots())) {
+                    suggests.add(maybeSuggest);
+                }
+                // нет смысла искать больше 4 предложений
+                if (suggests.size() >= 4) {
+                    break;
+                }
             }
         }
         if (!suggests.isEmpty()) {
@@ -184,192 +652,508 @@ public class TimeGraphService implements ApplicationListener<TimeGraphRefreshEve
         return null;
     }
 
-    // здесь мы избегаем лишних сохранений в базу и резерв отмечаем только в графе
-    private SuggestBookingInfo getSuggestions(int tableNumber, List<GraphSlot> slots, long neededSlots) {
-        List<GraphSlot> suggestedSlots = new ArrayList<>();
-        int counter = 0;
-        for (GraphSlot slot : slots) {
-            if (slot.isAvailable()) {
-                counter++;
-                suggestedSlots.add(slot);
-                if (counter == neededSlots) {
-                    // тк слоты - это объекты, то они зарезервируются и в графе
-                    suggestedSlots.forEach(GraphSlot::reserve);
-                    return new SuggestBookingInfo(tableNumber, suggestedSlots);
+    // окно гибкого поиска в номерах слотов дня: начало округляется вверх, конец - вниз, оба обрезаются по часам работы
+    private SlotWindow toSlotWindow(OpeningHours hours, BookingRequestDto bookingRequestDto, int slotMinutes) {
+        if (bookingRequestDto.getWindowStart() == null || bookingRequestDto.getWindowEnd() == null) {
+            return null;
+        }
+        long fromMinutes = Math.max(Duration.between(hours.openTime(), bookingRequestDto.getWindowStart()).toMinutes(), 0);
+        long toMinutes = Math.min(Duration.between(hours.openTime(), bookingRequestDto.getWindowEnd()).toMinutes(),
+                (long) hours.slots() * slotMinutes);
+        return new SlotWindow((int) ((fromMinutes + slotMinutes - 1) / slotMinutes), (int) (toMinutes / slotMinutes));
+    }
+
+    // поиск от желаемого слота наружу: startSlot - 1, startSlot + 1, startSlot - 2, ...
+    // при равном удалении раньше предлагается более раннее время
+    // кандидаты проверяются в порядке удаления, поэтому первые найденные варианты и есть ближайшие,
+    // и поиск останавливается, как только их набралось нужное число, - ширина окна на это не влияет
+    // на каждое время начала предлагается один стол, лучший по зазорам, как и при точном поиске
+    // сам startSlot уже проверен точным поиском
+    private FindResponse<SuggestBookingInfo> findNearestInWindow(LocalDate day, int startSlot, int neededSlots,
+                                                                 SlotWindow window, List<Integer> capacities) {
+        // бронь в окне должна поместиться целиком, без обрезки по закрытию
+        int lastStart = window.to() - neededSlots;
+        int maxDistance = Math.max(startSlot - window.from(), lastStart - startSlot);
+        int limit = timeGraphConfig.getWindowOptions();
+        List<SuggestBookingInfo> nearest = new ArrayList<>(limit);
+        for (int distance = 1; distance <= maxDistance && nearest.size() < limit; distance++) {
+            for (int candidate : new int[]{startSlot - distance, startSlot + distance}) {
+                if (candidate < window.from() || candidate > lastStart || nearest.size() >= limit) {
+                    continue;
                 }
-            } else {
-                if (suggestedSlots.size() >= 4) {
-                    suggestedSlots.forEach(GraphSlot::reserve);
-                    return new SuggestBookingInfo(tableNumber, suggestedSlots);
-                } else {
-                    counter = 0;
-                    suggestedSlots.clear();
+                for (int capacity : capacities) {
+                    SuggestBookingInfo option = claimBestTable(day, capacity, candidate, candidate + neededSlots);
+                    if (option != null) {
+                        nearest.add(option);
+                        break;
+                    }
                 }
             }
         }
+        if (!nearest.isEmpty()) {
+            return new FindResponse<>(nearest, ResponseStatus.SUGGESTED);
+        }
         return null;
     }
 
-    private long getNeededSlots(LocalTime startTime, LocalTime endTime) {
-        if (endTime.isAfter(startTime)) {
-            return Duration.between(startTime, endTime).toMinutes() / 30;
+    // то же время на соседних днях: сначала ближайшие, при равном удалении - более ранний день, прошедшее время пропускается
+    // по одному варианту на день, лучший стол по зазорам
+    private FindResponse<SuggestBookingInfo> findOnAdjacentDays(LocalDateTime startTime, int neededSlots, int capacity) {
+        LocalDateTime now = LocalDateTime.now();
+        List<SuggestBookingInfo> options = new ArrayList<>();
+        for (int distance = 1; distance <= timeGraphConfig.getCrossDaySpan(); distance++) {
+            for (int dayOffset : new int[]{-distance, distance}) {
+                LocalDateTime shifted = startTime.plusDays(dayOffset);
+                if (shifted.isBefore(now)) {
+                    continue;
+                }
+                SuggestBookingInfo option = findOnOtherDay(shifted, neededSlots, capacity);
+                if (option != null) {
+                    option.setDayOffset(dayOffset);
+                    options.add(option);
+                }
+            }
+        }
+        if (!options.isEmpty()) {
+            return new FindResponse<>(options, ResponseStatus.SUGGESTED);
+        }
+        return null;
+    }
+
+    // сначала смотрим сводку дня - снимок индекса, который читается без блокировок;
+    // страйп дня берем, только если в сводке есть стол, свободный на все время брони
+    // уже построенный день без свободных столов отсекается по сводке до ensureDay, без запроса в базу
+    // захват под страйпом (или через CAS в режиме без блокировок), как и в запрошенном дне
+    private SuggestBookingInfo findOnOtherDay(LocalDateTime startTime, int neededSlots, int capacity) {
+        OpeningHours hours = openingHoursCalendar.getDayOf(startTime);
+        LocalDate day = hours.day();
+        int startSlot = (int) (Duration.between(hours.openTime(), startTime).toMinutes() / openingHoursCalendar.getSlotMinutes());
+        // в другой день бронь должна поместиться целиком: день может быть закрыт или короче запрошенного
+        if (startSlot + neededSlots > hours.slots()) {
+            return null;
+        }
+        // чужой день держит другой экземпляр, его граф здесь не актуален
+        if (!graphShards.owns(day)) {
+            return null;
+        }
+        List<Integer> capacities = capacityService.getCapacities().contains(capacity + 2)
+                ? List.of(capacity, capacity + 2) : List.of(capacity);
+        Map<Integer, FreeTableIndex> dayIndexes = freeTableIndex.get(day);
+        if (dayIndexes != null && capacities.stream().noneMatch(candidateCapacity ->
+                hasFreeTable(dayIndexes, candidateCapacity, startSlot, startSlot + neededSlots))) {
+            return null;
+        }
+        ensureDay(day);
+        for (int candidateCapacity : capacities) {
+            // день могли вытеснить или сбросить сразу после ensureDay
+            Map<Integer, FreeTableIndex> indexes = freeTableIndex.get(day);
+            if (indexes == null) {
+                return null;
+            }
+            if (!hasFreeTable(indexes, candidateCapacity, startSlot, startSlot + neededSlots)) {
+                continue;
+            }
+            List<Integer> heldStripes = new ArrayList<>(1);
+            try {
+                if (!lockStripe(day, candidateCapacity, heldStripes)) {
+                    continue;
+                }
+                SuggestBookingInfo option = claimBestTable(day, candidateCapacity, startSlot, startSlot + neededSlots);
+                if (option != null) {
+                    return option;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Поток был прерван при поиске на день {}: {}", day, e.getMessage());
+                return null;
+            } finally {
+                heldStripes.forEach(heldCapacity -> graphLocks.unlockStripe(day, heldCapacity));
+            }
         }
-        return (Duration.between(startTime, LocalTime.of(23, 59)).plusMinutes(1).toMinutes() +
-                Duration.between(LocalTime.MIDNIGHT, endTime).toMinutes()) / 30;
+        return null;
+    }
 
+    private static boolean hasFreeTable(Map<Integer, FreeTableIndex> indexes, int capacity, int from, int to) {
+        FreeTableIndex index = indexes.get(capacity);
+        return index != null && index.snapshot().freeTablesDuring(from, to) != 0;
     }
 
-    private LocalTime decreaseStartTime(LocalTime startTime, LocalDate day) {
-        if (!startTime.minusHours(1).isBefore(workingHoursCounter.getOpenDateTime(LocalDateTime.of(day, startTime)).toLocalTime())) {
-            startTime = startTime.minusHours(1);
-        } else {
-            startTime = workingHoursCounter.getOpenDateTime(LocalDateTime.of(day, startTime)).toLocalTime();
+    // столы, свободные на [from, to), берем из индекса и захватываем лучший по зазорам
+    private SuggestBookingInfo claimBestTable(LocalDate day, int capacity, int from, int to) {
+        Map<Integer, FreeTableIndex> indexes = freeTableIndex.get(day);
+        FreeTableIndex index = indexes == null ? null : indexes.get(capacity);
+        if (index == null || index.size() == 0 || to > index.table(0).size()) {
+            return null;
+        }
+        long[] freeTables = index.tablesFreeDuring(from, to);
+        List<AppropriateBookingInfo> candidates = new ArrayList<>();
+        for (int word = 0; word < freeTables.length; word++) {
+            long bits = freeTables[word];
+            while (bits != 0) {
+                int column = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                candidates.add(findAppropriateSlots(index.tableNumber(column), capacity, from, to, index.table(column)));
+            }
         }
-        return startTime;
+        candidates.sort(BEST_FIT);
+        for (AppropriateBookingInfo info : candidates) {
+            if (claim(day, capacity, info.getTableNumber(), info.getSlots())) {
+                return new SuggestBookingInfo(info.getTableNumber(), info.getSlots(), 0, capacity);
+            }
+        }
+        return null;
     }
 
-    private LocalTime increaseEndTime(LocalTime endTime, LocalDate day) {
-        if (!endTime.plusHours(1).isAfter(workingHoursCounter.getCloseDateTime(LocalDateTime.of(day, endTime)).toLocalTime())) {
-            endTime = endTime.plusHours(1);
-        } else {
-            endTime = workingHoursCounter.getCloseDateTime(LocalDateTime.of(day, endTime)).toLocalTime();
+    // здесь мы избегаем лишних сохранений в базу и резерв отмечаем только в графе
+    private SuggestBookingInfo getSuggestions(int tableNumber, int capacity, TableSlots table, int from, int to,
+                                              int neededSlots) {
+        int minSuggestedSlots = MIN_SUGGESTED_MINUTES / table.getSlotMinutes();
+        int position = from;
+        while (position < to) {
+            int runStart = table.nextFree(position, to);
+            if (runStart == to) {
+                return null;
+            }
+            int runEnd = table.nextOccupied(runStart, to);
+            if (runEnd - runStart >= neededSlots) {
+                return new SuggestBookingInfo(tableNumber, table.slice(runStart, runStart + neededSlots), 0, capacity);
+            }
+            // окно короче запрошенного, но не короче минимальной брони - тоже предлагаем
+            // отрезок, упершийся в конец окна поиска, не предлагаем
+            if (runEnd < to && runEnd - runStart >= minSuggestedSlots) {
+                return new SuggestBookingInfo(tableNumber, table.slice(runStart, runEnd), 0, capacity);
+            }
+            position = runEnd;
         }
-        return endTime;
+        return null;
+    }
+
+    // неполный слот в конце брони тоже занимаем
+    private int getNeededSlots(Duration duration, int slotMinutes) {
+        return (int) ((duration.toMinutes() + slotMinutes - 1) / slotMinutes);
     }
 
     private FindResponse<AppropriateBookingInfo> insertBookingFromInfo(AppropriateBookingInfo info) {
         return new FindResponse<>(List.of(info), ResponseStatus.SUCCESS);
     }
 
-    private FindResponse<AppropriateBookingInfo> findAppropriateTableForBooking(LocalDate day, LocalTime startTime, LocalTime endTime, int capacity) {
-        ConcurrentMap<Integer, List<GraphSlot>> allTablesWithCapacity = timeGraph.get(day).get(capacity);
+    private FindResponse<AppropriateBookingInfo> findAppropriateTableForBooking(LocalDate day, int startSlot, int neededSlots, int capacity) {
+        FreeTableIndex index = freeTableIndex.get(day).get(capacity);
+        if (index.size() == 0) {
+            return null;
+        }
+        TableSlots anyTable = index.table(0);
+        int from = startSlot;
+        if (from >= anyTable.size()) {
+            return null;
+        }
+        // бронь, выходящая за время закрытия, обрезается по последнему слоту дня
+        int to = Math.min(from + neededSlots, anyTable.size());
+        // столы, свободные на всем отрезке брони, берем из индекса, не перебирая занятые
+        long[] freeTables = index.tablesFreeDuring(from, to);
         // пробуем найти столы, которые полностью удовлетворяют данным бронирования
         List<AppropriateBookingInfo> slotsForBooking = new ArrayList<>();
-        for (Map.Entry<Integer, List<GraphSlot>> entry : allTablesWithCapacity.entrySet()) {
-            AppropriateBookingInfo info = findAppropriateSlots(entry.getKey(), startTime, endTime, entry.getValue());
-            if (info != null) {
-                // если нашли идеально подходящий слот, сразу выходим из метода и сохраняемся в базу
+        for (int word = 0; word < freeTables.length; word++) {
+            long bits = freeTables[word];
+            while (bits != 0) {
+                int column = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                AppropriateBookingInfo info = findAppropriateSlots(index.tableNumber(column), capacity, from, to, index.table(column));
+                // если нашли идеально подходящий слот, сразу резервируем его и выходим из метода
                 if (info.getSlotsAfter() == 0 && info.getSlotsBefore() == 0) {
-                    return insertBookingFromInfo(info);
+                    if (claim(day, capacity, info.getTableNumber(), info.getSlots())) {
+                        return insertBookingFromInfo(info);
+                    }
+                    // слоты перехватил другой поток - ищем дальше
+                    continue;
                 }
                 slotsForBooking.add(info);
             }
         }
-        if (!slotsForBooking.isEmpty()) {
-            // ищем слот, стыкующийся с началом или концом
-            Optional<AppropriateBookingInfo> slotForBookingCloseToStartOrEnd = slotsForBooking.stream()
-                    .filter(info -> info.getSlotsBefore() == 0 || info.getSlotsAfter() == 0)
-                    .max(Comparator.comparingInt(info -> info.getSlotsAfter() + info.getSlotsBefore()));
-            if (slotForBookingCloseToStartOrEnd.isPresent()) {
-                return insertBookingFromInfo(slotForBookingCloseToStartOrEnd.get());
+        // сначала слоты, стыкующиеся с началом или концом, среди них и среди остальных - с максимальным зазором
+        // упрощенная сортировка - можно расписать также подробно, как в прошлой реализации
+        // сортировка стабильная, а колонки индекса идут в порядке обхода столов, поэтому при равенстве порядок прежний
+        slotsForBooking.sort(BEST_FIT);
+        for (AppropriateBookingInfo info : slotsForBooking) {
+            // при конфликте пробуем следующий по качеству стол
+            if (claim(day, capacity, info.getTableNumber(), info.getSlots())) {
+                return insertBookingFromInfo(info);
             }
-            // упрощенная сортировка - если нет точного стыка, то просто пытаемся найти максимальный зазор
-            // можно расписать также подробно, как в прошлой реализации
-            AppropriateBookingInfo appropriateBookingInfo = slotsForBooking.stream()
-                    .max(Comparator.comparingInt(info -> info.getSlotsAfter() + info.getSlotsBefore()))
-                    .get();
-            return insertBookingFromInfo(appropriateBookingInfo);
         }
         return null;
     }
 
-    // время начало брони ГАРАНТИРОВАННО совпадает с временем начала одного из слотов!
-    private AppropriateBookingInfo findAppropriateSlots(int tableNumber, LocalTime startTime, LocalTime endTime, List<GraphSlot> allSlots) {
-        int slotsBefore = 0;
-        int slotsAfter = 0;
-        List<GraphSlot> slots = new ArrayList<>();
-        Iterator<GraphSlot> iterator = allSlots.iterator();
-        while (iterator.hasNext()) {
-            GraphSlot slot = iterator.next();
-            // используем именно equals, чтобы корректно обработать переход через 0
-            if (slot.getTime().equals(startTime)) {
-                // первый слот подходящий по времени
-                if (slot.isAvailable()) {
-                    slots.add(slot);
-                } else {
-                    return null;
-                }
-                // прерываем эту логику
-                break;
+    // отрезок [from, to) у стола свободен по индексу, осталось посчитать зазоры до и после него
+    // индекс может ненадолго отставать от битов стола, но захват все равно проверяется через tryReserve
+    private AppropriateBookingInfo findAppropriateSlots(int tableNumber, int capacity, int from, int to,
+                                                        TableSlots table) {
+        int slotsBefore = table.freeBefore(from);
+        int slotsAfter = table.freeFrom(to);
+        return new AppropriateBookingInfo(tableNumber, slotsBefore, slotsAfter, table.slice(from, to), capacity);
+    }
+
+    // слоты, захваченные поиском под бронь: по этой позиции бронь потом получает id или резерв снимается
+    public BookingPosition reservedPosition(LocalDateTime startTime, AppropriateBookingInfo info) {
+        return new BookingPosition(openingHoursCalendar.getDayOf(startTime).day(), info.getCapacity(),
+                info.getTableNumber(), info.getSlots());
+    }
+
+    // проставляет id сохраненной брони уже зарезервированным слотам и запоминает, где бронь лежит в графе
+    // позиция передается целиком: вместимость стола не берется из ленивой ссылки брони, сессии здесь уже нет
+    // позиция из уже пересобранного дня ведет в столы, которых в графе нет - id туда не пишем
+    public void assignBooking(long bookingId, BookingPosition position) {
+        if (!isCurrent(position)) {
+            throw new ConsistencyException(String.format(": день %s перестроен, бронь %d нужно повторить",
+                    position.day(), bookingId));
+        }
+        position.slots().book(bookingId);
+        bookingPositions.put(bookingId, position);
+        graphJournal.appendBook(bookingId, position);
+        graphChangelog.tableChanged(position.day(), position.capacity(), position.tableNumber(),
+                position.slots().getTable());
+    }
+
+    // освобождение пропорционально числу слотов самих броней: день и стол каждой брони берем из обратного индекса
+    public void unreserveSlotsByBookingId(List<Long> bookingIds) {
+        for (Long bookingId : bookingIds) {
+            BookingPosition position = bookingPositions.remove(bookingId);
+            if (position == null) {
+                // брони нет в графе, например, граф перестроили после ее удаления из базы
+                log.debug("Booking {} is not in time-graph", bookingId);
+                continue;
             }
-            if (slot.isAvailable()) {
-                slotsBefore++;
-            } else {
-                slotsBefore = 0;
+            unreserveBooking(position, bookingId);
+            graphJournal.appendRelease(bookingId);
+        }
+    }
+
+    // снятие резерва предложения: освобождаются только слоты, которые все еще зарезервированы без id брони
+    // в пересобранном дне резерва уже нет, а состояние старого стола не должно уйти в журнал изменений
+    public void releaseHold(BookingPosition position) {
+        if (isCurrent(position)) {
+            unreserveBooking(position, TableSlots.RESERVED);
+        }
+    }
+
+    // стол позиции все еще в графе: день не пересобран и не удален с тех пор, как слоты захватили
+    public boolean isCurrent(BookingPosition position) {
+        Map<Integer, ConcurrentMap<Integer, TableSlots>> daySlotsMap = timeGraph.get(position.day());
+        Map<Integer, TableSlots> tables = daySlotsMap == null ? null : daySlotsMap.get(position.capacity());
+        return tables != null && tables.get(position.tableNumber()) == position.slots().getTable();
+    }
+
+    // вторая фаза брони (проверка позиции, запись и id в графе) идет под разделяемой блокировкой дней позиций:
+    // перестройка дня дожидается начатых записей и читает базу уже после них, а позиции, захваченные
+    // в старом дне позже, отвергает проверка isCurrent
+    public void lockDays(Collection<BookingPosition> positions) {
+        positions.stream().map(BookingPosition::day).distinct().sorted().forEach(graphLocks::lockDayShared);
+    }
+
+    public void unlockDays(Collection<BookingPosition> positions) {
+        positions.stream().map(BookingPosition::day).distinct().forEach(graphLocks::unlockDayShared);
+    }
+
+    // освобождение касается одного стола: берем блокировку только этого стола, страйпы не трогаем
+    private void unreserveBooking(BookingPosition position, long bookingId) {
+        if (timeGraphConfig.isLockFree()) {
+            // биты сбрасываются через CAS, индекс стол после записи сверяет с битами сам, блокировка не нужна
+            position.slots().unreserveBooking(bookingId);
+        } else {
+            graphLocks.lockTable(position.day(), position.capacity(), position.tableNumber());
+            try {
+                position.slots().unreserveBooking(bookingId);
+            } finally {
+                graphLocks.unlockTable(position.day(), position.capacity(), position.tableNumber());
             }
         }
-        while (iterator.hasNext()) {
-            GraphSlot slot = iterator.next();
-            if (slot.getTime().equals(endTime)) {
-                if (slot.isAvailable()) {
-                    slotsAfter++;
-                } else {
-                    return new AppropriateBookingInfo(tableNumber, slotsBefore, slotsAfter, slots);
-                }
-                break;
+        graphChangelog.tableChanged(position.day(), position.capacity(), position.tableNumber(),
+                position.slots().getTable());
+    }
+
+    // реплика: состояние стола из журнала изменений переносится в граф по слотам и только там, где отличается,
+    // поэтому читатели сводок не видят стол на мгновение свободным; записи журнала применяет один поток
+    public void applyTableState(GraphChangelog.TableState state) {
+        LocalDate day = state.day();
+        if (!timeGraph.containsKey(day)) {
+            timeGraph.put(day, createDay(live, day, tableRepository.findAll()));
+        }
+        ConcurrentMap<Integer, TableSlots> tablesWithCapacity = timeGraph.get(day).get(state.capacity());
+        TableSlots table = tablesWithCapacity == null ? null : tablesWithCapacity.get(state.tableNumber());
+        // часы дня или столы поменялись, а реплика о них еще не знает
+        if (table == null || table.size() != state.size()) {
+            log.warn("Time-graph change for table {} on {} does not fit replica graph, skipping it",
+                    state.tableNumber(), day);
+            return;
+        }
+        long[] target = new long[table.size()];
+        for (GraphChangelog.Run run : state.runs()) {
+            Arrays.fill(target, run.from(), run.to(), run.bookingId());
+        }
+        Set<Long> previousIds = new HashSet<>();
+        for (int i = 0; i < target.length; i++) {
+            long current = table.isAvailable(i) ? TableSlots.NO_BOOKING : table.bookingIdAt(i);
+            if (current > 0) {
+                previousIds.add(current);
             }
-            if (!slot.isAvailable()) {
-                // если хотя бы 1 слот в брони недоступен - прерываем метод
-                return null;
+            if (current == target[i]) {
+                continue;
             }
-            slots.add(slot);
-        }
-        while (iterator.hasNext()) {
-            GraphSlot slot = iterator.next();
-            if (slot.isAvailable()) {
-                slotsAfter++;
+            if (target[i] == TableSlots.NO_BOOKING) {
+                table.unreserve(i, i + 1);
             } else {
-                return new AppropriateBookingInfo(tableNumber, slotsBefore, slotsAfter, slots);
+                table.book(i, i + 1, target[i]);
             }
         }
-
-        return new AppropriateBookingInfo(tableNumber, slotsBefore, slotsAfter, slots);
+        // обратный индекс нужен реплике после переключения в основной экземпляр
+        for (GraphChangelog.Run run : state.runs()) {
+            if (run.bookingId() > 0) {
+                previousIds.remove(run.bookingId());
+                bookingPositions.put(run.bookingId(), new BookingPosition(day, state.capacity(), state.tableNumber(),
+                        table.slice(run.from(), run.to())));
+            }
+        }
+        previousIds.forEach(bookingPositions::remove);
     }
 
-    protected FindResponse<AppropriateBookingInfo> addFirstBookingInDay(LocalDate day, LocalTime startTime, LocalTime endTime, int capacity) {
-        List<RestTable> allTables = tableRepository.findAll();
-        ConcurrentMap<Integer, ConcurrentMap<Integer, List<GraphSlot>>> daySlotsMap = graphCreator
-                .createDay(day, allTables);
-        timeGraph.put(day, daySlotsMap);
-        int tableNumber = allTables.stream()
-                .filter(table -> table.getCapacity() == capacity)
-                .findAny().get().getTableNumber();
-        List<GraphSlot> slots = daySlotsMap.get(capacity).get(tableNumber).stream()
-                .filter(slot -> isSlotInTimeRange(slot, startTime, endTime))
-                .peek(GraphSlot::reserve) // резервируем стол, так как еще не знаем id брони
-                .toList();
-        AppropriateBookingInfo info = new AppropriateBookingInfo(tableNumber, 0, 0, slots);
-        return new FindResponse<>(List.of(info), ResponseStatus.SUCCESS);
+    // реплика: день удален из журнала изменений (tombstone первого из его столов)
+    public void applyDayEvicted(LocalDate day) {
+        dropDays(graphDay -> graphDay.equals(day));
     }
 
-    private boolean isSlotInTimeRange(GraphSlot slot, LocalTime startTime, LocalTime endTime) {
-        if (endTime.isAfter(startTime)) {
-            return !slot.getTime().isBefore(startTime) && slot.getTime().isBefore(endTime);
+    // переключение реплики в основной экземпляр: резервы вариантов упавшего экземпляра уже никто не подтвердит
+    public int releaseReserved() {
+        int released = 0;
+        for (Map.Entry<LocalDate, ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>>> dayEntry : timeGraph.entrySet()) {
+            LocalDate day = dayEntry.getKey();
+            for (Map.Entry<Integer, ConcurrentMap<Integer, TableSlots>> capacityEntry : dayEntry.getValue().entrySet()) {
+                for (Map.Entry<Integer, TableSlots> tableEntry : capacityEntry.getValue().entrySet()) {
+                    TableSlots table = tableEntry.getValue();
+                    int releasedSlots;
+                    graphLocks.lockTable(day, capacityEntry.getKey(), tableEntry.getKey());
+                    try {
+                        releasedSlots = table.unreserveBooking(0, table.size(), TableSlots.RESERVED);
+                    } finally {
+                        graphLocks.unlockTable(day, capacityEntry.getKey(), tableEntry.getKey());
+                    }
+                    if (releasedSlots > 0) {
+                        graphChangelog.tableChanged(day, capacityEntry.getKey(), tableEntry.getKey(), table);
+                        released += releasedSlots;
+                    }
+                }
+            }
         }
-        return !slot.getTime().isBefore(startTime) && slot.getTime().isBefore(LocalTime.of(23, 59)) ||
-                slot.getTime().isBefore(endTime);
+        return released;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void onApplicationEvent(TimeGraphRefreshEvent event) {
+        this.refresh();
     }
 
+    // часы работы дня поменялись: день пересобирается из базы под новое число слотов и подменяется целиком
+    // в новый день попадают брони из базы и еще не записанные брони отложенной записи; резервы предложений
+    // старого дня забываются, а брони, захваченные в нем и еще не записанные, отвергаются при записи -
+    // поэтому особые дни лучше заводить заранее, пока день не загружен в граф
+    @EventListener
+    public void onOpeningHoursChanged(OpeningHoursChangedEvent event) {
+        // реплика получит пересобранные дни из журнала изменений
+        if (graphChangelog.isFollowing()) {
+            return;
+        }
+        List<RestTable> allTables = null;
+        for (LocalDate day : event.getDays()) {
+            ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> current = timeGraph.get(day);
+            if (current == null) {
+                // дня нет в графе - он сам создастся по новым часам
+                continue;
+            }
+            if (allTables == null) {
+                allTables = tableRepository.findAll();
+            }
+            rebuildDay(day, current.keySet(), allTables);
+        }
+    }
 
-    public void unreserveSlotsByBookingId(List<Long> bookingIds, LocalDateTime startTime) {
-        LocalDate day = workingHoursCounter.getOpenDateTime(startTime).toLocalDate();
-        ReentrantLock lock = locks.computeIfAbsent(day, k -> new ReentrantLock());
-        lock.lock();
+    private void rebuildDay(LocalDate day, Set<Integer> capacities, List<RestTable> allTables) {
+        // блокировку дня берем всегда, даже без страйпов: она отделяет перестройку от записи броней
+        // затем все страйпы дня по возрастанию вместимости, как и запросы, чтобы поиск не шел по старому дню
+        List<Integer> heldStripes = new ArrayList<>();
+        boolean dayLocked = false;
         try {
-            timeGraph.get(day).values().stream()
-                    .flatMap(map -> map.values().stream())
-                    .flatMap(Collection::stream)
-                    .filter(graphSlot -> bookingIds.contains(graphSlot.bookingId().get()))
-                    .forEach(GraphSlot::unreserve);
+            dayLocked = graphLocks.tryLockDayExclusive(day, 1, TimeUnit.SECONDS);
+            if (!dayLocked) {
+                log.warn("Time-graph day {} is busy, opening hours will apply after restart", day);
+                return;
+            }
+            for (int capacity : new TreeSet<>(capacities)) {
+                if (!lockStripe(day, capacity, heldStripes)) {
+                    log.warn("Time-graph day {} is busy, opening hours will apply after restart", day);
+                    return;
+                }
+            }
+            // брони отложенной записи - до чтения базы, чтобы записанная между ними бронь не выпала из обоих
+            List<BookingWriteBehind.PendingBooking> unflushed = bookingWriteBehind.isEnabled()
+                    ? bookingWriteBehind.unflushedBookings() : List.of();
+            LocalDateTime from = openingHoursCalendar.getDay(day).openTime();
+            LocalDateTime to = openingHoursCalendar.getDay(day.plusDays(1)).openTime();
+            List<BookingGraphRow> rows = new ArrayList<>(bookingRepository.findGraphRows(from, to));
+            rows.addAll(unflushedRows(unflushed, rows, allTables, from, to));
+            GraphBuffer buffer = GraphBuffer.empty();
+            ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> daySlotsMap = createDay(buffer, day, allTables);
+            rows.forEach(row -> addBookingFromDB(buffer.positions(), day, daySlotsMap, row, false));
+            freeTableIndex.put(day, buffer.indexes().get(day));
+            timeGraph.put(day, daySlotsMap);
+            bookingPositions.values().removeIf(position -> position.day().equals(day));
+            bookingPositions.putAll(buffer.positions());
+            graphChangelog.dayCreated(day, daySlotsMap);
+            // резервы предложений указывают в столы старого дня
+            eventPublisher.publishEvent(new TimeGraphDaysDroppedEvent(this, Set.of(day)));
+            log.info("Time-graph day {} rebuilt for new opening hours: {} bookings", day, buffer.positions().size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Поток был прерван при перестройке дня {}: {}", day, e.getMessage());
+        } finally {
+            heldStripes.forEach(heldCapacity -> graphLocks.unlockStripe(day, heldCapacity));
+            if (dayLocked) {
+                graphLocks.unlockDayExclusive(day);
+            }
         }
-        finally {
-            lock.unlock();
+    }
+
+    // брони дня из журнала отложенной записи, которых еще нет среди строк из базы
+    private List<BookingGraphRow> unflushedRows(List<BookingWriteBehind.PendingBooking> unflushed,
+                                                List<BookingGraphRow> rows, List<RestTable> allTables,
+                                                LocalDateTime from, LocalDateTime to) {
+        if (unflushed.isEmpty()) {
+            return List.of();
         }
+        Set<Long> readIds = new HashSet<>();
+        rows.forEach(row -> readIds.add(row.id()));
+        Map<Integer, Integer> capacities = new HashMap<>();
+        allTables.forEach(table -> capacities.put(table.getTableNumber(), table.getCapacity()));
+        return unflushed.stream()
+                .filter(booking -> !booking.startTime().isBefore(from) && booking.startTime().isBefore(to))
+                .filter(booking -> !readIds.contains(booking.id()) && capacities.containsKey(booking.tableNumber()))
+                .map(booking -> new BookingGraphRow(booking.id(), booking.tableNumber(),
+                        capacities.get(booking.tableNumber()), booking.startTime(), booking.endTime()))
+                .toList();
     }
 
-    @Override
-    @Transactional(readOnly = true)
-    public void onApplicationEvent(TimeGraphRefreshEvent event) {
-        this.fillIn();
+    // окно гибкого поиска в номерах слотов дня, [from, to)
+    private record SlotWindow(int from, int to) {
+    }
+
+    // запрос, переведенный в номера слотов своего рабочего дня
+    private record DaySearch(LocalDate day, int startSlot, int neededSlots, SlotWindow window, int capacity) {
+    }
+
+    private record GraphBuffer(ConcurrentMap<LocalDate, ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>>> days,
+                               ConcurrentMap<LocalDate, Map<Integer, FreeTableIndex>> indexes,
+                               ConcurrentMap<Long, BookingPosition> positions) {
+
+        static GraphBuffer empty() {
+            return new GraphBuffer(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
     }
 }
@@ -0,0 +1,138 @@
+package com.katynova.resto.server_side.utility_service;
+
+import com.katynova.resto.server_side.config.OpeningHoursChangedEvent;
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.model.OpeningHours;
+import com.katynova.resto.server_side.model.entity.OpeningHoursOverride;
+import com.katynova.resto.server_side.repository.OpeningHoursOverrideRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// часы работы по датам, посчитанные заранее на весь горизонт графа: обычное расписание плюс особые дни из базы
+// запросы получают часы дня одним обращением к мапе, без пересчета правил и лишних LocalDateTime
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OpeningHoursCalendar {
+
+    private final WorkingHoursCounter workingHoursCounter;
+    private final OpeningHoursOverrideRepository overrideRepository;
+    private final TimeGraphConfig timeGraphConfig;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // дни горизонта; после построения мапа не меняется и заменяется целиком при перезагрузке
+    private volatile Map<LocalDate, OpeningHours> days = Map.of();
+
+    // дни за пределами горизонта считаются при первом обращении
+    private final ConcurrentMap<LocalDate, OpeningHours> outsideHorizon = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    // перечитываем особые дни; об изменившихся днях сообщаем, чтобы граф пересобрал их под новые часы
+    @Scheduled(cron = "${worktime.calendar-reload-cron:0 */10 * * * *}")
+    public void reload() {
+        LocalDate today = workingHoursCounter.getOpenDateTime(LocalDateTime.now()).toLocalDate();
+        LocalDate firstDay = today.minusDays(timeGraphConfig.getHorizonDaysBack());
+        // на день больше горизонта: граф успеет создать следующий день до очередной перезагрузки
+        LocalDate lastDay = today.plusDays(timeGraphConfig.getHorizonDaysAhead() + 1L);
+        Map<LocalDate, OpeningHoursOverride> overrides = new HashMap<>();
+        overrideRepository.findAllByDayBetween(firstDay, lastDay)
+                .forEach(override -> overrides.put(override.getDay(), override));
+        Map<LocalDate, OpeningHours> computed = new HashMap<>();
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            computed.put(day, compute(day, overrides.get(day)));
+        }
+        Set<LocalDate> changed = new HashSet<>();
+        Map<LocalDate, OpeningHours> previous = days;
+        computed.forEach((day, hours) -> {
+            OpeningHours old = previous.containsKey(day) ? previous.get(day) : outsideHorizon.get(day);
+            if (old != null && !old.equals(hours)) {
+                changed.add(day);
+            }
+        });
+        // дни вне горизонта перечитываем по одному, их обычно единицы
+        outsideHorizon.forEach((day, hours) -> {
+            if (!computed.containsKey(day) && !hours.equals(computeFromDatabase(day))) {
+                changed.add(day);
+            }
+        });
+        days = computed;
+        outsideHorizon.clear();
+        log.info("Opening hours calendar {} - {} loaded: {} overrides, {} days changed",
+                firstDay, lastDay, overrides.size(), changed.size());
+        if (!changed.isEmpty()) {
+            eventPublisher.publishEvent(new OpeningHoursChangedEvent(this, Set.copyOf(changed)));
+        }
+    }
+
+    public OpeningHours getDay(LocalDate day) {
+        OpeningHours hours = days.get(day);
+        if (hours != null) {
+            return hours;
+        }
+        hours = outsideHorizon.get(day);
+        if (hours != null) {
+            return hours;
+        }
+        // запрос к базе идет вне мапы, поэтому при гонке день может посчитаться дважды - берем первый
+        OpeningHours computed = computeFromDatabase(day);
+        OpeningHours existing = outsideHorizon.putIfAbsent(day, computed);
+        return existing != null ? existing : computed;
+    }
+
+    // рабочий день, к которому относится момент: до открытия это еще предыдущий день
+    public OpeningHours getDayOf(LocalDateTime moment) {
+        OpeningHours hours = getDay(moment.toLocalDate());
+        if (moment.isBefore(hours.openTime())) {
+            return getDay(moment.toLocalDate().minusDays(1));
+        }
+        return hours;
+    }
+
+    public int getSlotMinutes() {
+        return workingHoursCounter.getSlotMinutes();
+    }
+
+    private OpeningHours computeFromDatabase(LocalDate day) {
+        return compute(day, overrideRepository.findByDay(day).orElse(null));
+    }
+
+    private OpeningHours compute(LocalDate day, OpeningHoursOverride override) {
+        LocalDateTime openTime = workingHoursCounter.getOpenDateTime(day);
+        LocalDateTime closeTime = workingHoursCounter.getCloseDateTime(openTime);
+        if (override != null) {
+            if (override.isClosed()) {
+                return new OpeningHours(day, openTime, openTime, 0);
+            }
+            if (override.getOpenTime() != null) {
+                openTime = day.atTime(override.getOpenTime());
+            }
+            if (override.getCloseTime() != null) {
+                closeTime = day.atTime(override.getCloseTime());
+                // закрытие не позже открытия - значит после полуночи
+                if (!closeTime.isAfter(openTime)) {
+                    closeTime = closeTime.plusDays(1);
+                }
+            }
+        }
+        long minutes = Math.max(Duration.between(openTime, closeTime).toMinutes(), 0);
+        return new OpeningHours(day, openTime, closeTime, (int) (minutes / workingHoursCounter.getSlotMinutes()));
+    }
+}
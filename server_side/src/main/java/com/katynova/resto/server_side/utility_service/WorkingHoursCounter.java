@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 
@@ -23,6 +24,15 @@ public class WorkingHoursCounter {
         return openDateTime;
     }
 
+    public int getSlotMinutes() {
+        return workTimeConfig.getSlotMinutes();
+    }
+
+    // время открытия рабочего дня
+    public LocalDateTime getOpenDateTime(LocalDate day) {
+        return day.atTime(workTimeConfig.getOpenTime());
+    }
+
     public LocalDateTime getCloseDateTime(LocalDateTime end) {
         LocalTime openTime = workTimeConfig.getOpenTime();
         LocalTime closeWeekdayTime = workTimeConfig.getCloseWeekdaysTime();
@@ -35,13 +45,13 @@ public class WorkingHoursCounter {
             if (dayOfWeek == DayOfWeek.FRIDAY || dayOfWeek == DayOfWeek.SATURDAY) {
                 // если закрываемся после полуночи
                 if (openTime.isAfter(closeWeekendTime)) {
-                    return LocalDateTime.of(end.getYear(), end.getMonth(), end.getDayOfMonth() + 1, closeWeekendTime.getHour(), 0, 0);
+                    return end.toLocalDate().plusDays(1).atTime(closeWeekendTime);
                 }
                 // если закрываемся до полуночи
                 return end.with(closeWeekendTime);
             }
             if (openTime.isAfter(closeWeekdayTime)) {
-                return LocalDateTime.of(end.getYear(), end.getMonth(), end.getDayOfMonth() + 1, closeWeekdayTime.getHour(), 0, 0);
+                return end.toLocalDate().plusDays(1).atTime(closeWeekdayTime);
             }
             // если закрываемся до полуночи
             return end.with(closeWeekdayTime);
@@ -88,4 +88,13 @@ public class TimeWorkingTest {
         assertEquals(LocalDateTime.of(2025, 7, 18, 1, 0), result);
     }
 
+    @Test
+    void getCloseDateTime_lastDayOfMonth_shouldCloseNextMonth() {
+        when(workTimeConfig.getCloseWeekdaysTime()).thenReturn(LocalTime.of(23, 0));
+        when(workTimeConfig.getCloseWeekendTime()).thenReturn(LocalTime.of(1, 0));
+        LocalDateTime input = LocalDateTime.of(2025, 5, 31, 14, 0); // суббота, последний день месяца
+        LocalDateTime result = workingHoursCounter.getCloseDateTime(input);
+        assertEquals(LocalDateTime.of(2025, 6, 1, 1, 0), result);
+    }
+
 }
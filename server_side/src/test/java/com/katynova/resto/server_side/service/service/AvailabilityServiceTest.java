@@ -0,0 +1,179 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.common_dto_library.AvailabilityProbeRequestDto;
+import com.katynova.resto.common_dto_library.AvailabilityRequestDto;
+import com.katynova.resto.common_dto_library.response.AvailabilityDay;
+import com.katynova.resto.common_dto_library.response.AvailabilityProbeResponse;
+import com.katynova.resto.common_dto_library.response.AvailabilityResponse;
+import com.katynova.resto.common_dto_library.response.BookingErrorResponse;
+import com.katynova.resto.common_dto_library.response.BookingResponse;
+import com.katynova.resto.common_dto_library.response.Slot;
+import com.katynova.resto.server_side.exception.ManagerRequirementException;
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.service.AvailabilityService;
+import com.katynova.resto.server_side.service.BookingService;
+import com.katynova.resto.server_side.service.KafkaService;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import com.katynova.resto.server_side.utility_service.CapacityService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.TABLES;
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// просмотр доступности по снимкам индекса поверх настоящего графа и слушатели, отвечающие на него
+class AvailabilityServiceTest {
+
+    // вторник и среда, работают до 23:00
+    private final LocalDate day = LocalDate.of(2025, 7, 15);
+
+    private TimeGraphService service;
+    private AvailabilityService availabilityService;
+
+    @BeforeEach
+    void setUp() {
+        TimeGraphFixture fixture = new TimeGraphFixture();
+        service = fixture.build();
+        CapacityService capacityService = mock(CapacityService.class);
+        when(capacityService.getCapacities()).thenReturn(List.of(2, 4));
+        when(capacityService.getCapacity(anyInt())).thenAnswer(invocation -> {
+            int persons = invocation.getArgument(0);
+            if (persons > 4) {
+                throw new ManagerRequirementException("Для компании больше 4 человек свяжитесь с менеджером");
+            }
+            return persons <= 2 ? 2 : 4;
+        });
+        availabilityService = new AvailabilityService(service, capacityService, fixture.calendar());
+        // в первый день все столы заняты с 19:00 до 21:00, во второй - один стол в обед
+        for (int i = 0; i < TABLES; i++) {
+            assertEquals(ResponseStatus.SUCCESS, service.findBooking(request(day, LocalTime.of(19, 0))).getStatus());
+        }
+        assertEquals(ResponseStatus.SUCCESS, service.findBooking(request(day.plusDays(1), LocalTime.of(12, 0))).getStatus());
+    }
+
+    @Test
+    void shouldListFreeWindowsOfDaysInGraph() {
+        AvailabilityResponse response = (AvailabilityResponse) availabilityService.getAvailability(availabilityRequest());
+
+        assertEquals("availability-1", response.getCorrelationId());
+        // третьего дня в графе нет, ради просмотра он не создается
+        assertEquals(List.of(day, day.plusDays(1)), response.getDays().stream().map(AvailabilityDay::getDay).toList());
+        assertEquals(List.of(window(day, 10, 19), window(day, 21, 23)), response.getDays().get(0).getFreeWindows());
+        assertEquals(List.of(window(day.plusDays(1), 10, 23)), response.getDays().get(1).getFreeWindows());
+        assertFalse(service.getTimeGraph().containsKey(day.plusDays(2)));
+    }
+
+    @Test
+    void shouldReplyToAvailabilityRequestWithCorrelationId() {
+        KafkaTemplate<String, BookingResponse> kafkaTemplate = kafkaTemplate();
+        KafkaService kafkaService = new KafkaService(kafkaTemplate, mock(BookingService.class), availabilityService);
+        ConsumerRecord<String, AvailabilityRequestDto> record =
+                new ConsumerRecord<>("availability_request_topic", 0, 0, day.toString(), availabilityRequest());
+        record.headers().add(KafkaHeaders.CORRELATION_ID, "availability-1".getBytes(StandardCharsets.UTF_8));
+
+        kafkaService.listenAvailability(record);
+
+        Message<BookingResponse> reply = sentMessage(kafkaTemplate);
+        assertEquals("availability_response_topic", reply.getHeaders().get(KafkaHeaders.TOPIC));
+        assertEquals(day.toString(), reply.getHeaders().get(KafkaHeaders.KEY));
+        assertArrayEquals("availability-1".getBytes(StandardCharsets.UTF_8),
+                (byte[]) reply.getHeaders().get(KafkaHeaders.CORRELATION_ID));
+        assertEquals(2, ((AvailabilityResponse) reply.getPayload()).getDays().size());
+    }
+
+    @Test
+    void shouldProbeMatrixOfStartsDurationsAndParties() {
+        AvailabilityProbeResponse response = (AvailabilityProbeResponse) availabilityService.probe(probeRequest(day));
+
+        assertEquals(day, response.getDay());
+        // [компания][длительность][время начала]: на двоих подходят и столы на четверых,
+        // 00:30 - после закрытия вторника, компанию из 6 человек сажает только менеджер
+        assertArrayEquals(new int[]{
+                30, 30, 0, 0, 30, 0,
+                10, 10, 0, 0, 10, 0,
+                -1, -1, -1, -1, -1, -1}, response.getFreeTables());
+        // проба ничего не резервирует
+        assertArrayEquals(response.getFreeTables(),
+                ((AvailabilityProbeResponse) availabilityService.probe(probeRequest(day))).getFreeTables());
+    }
+
+    @Test
+    void shouldRejectProbeOfDayOutsideGraph() {
+        BookingResponse response = availabilityService.probe(probeRequest(day.plusDays(2)));
+
+        assertInstanceOf(BookingErrorResponse.class, response);
+        assertEquals("probe-1", response.getCorrelationId());
+        assertFalse(service.getTimeGraph().containsKey(day.plusDays(2)));
+    }
+
+    @Test
+    void shouldReplyToProbeWithCorrelationId() {
+        KafkaTemplate<String, BookingResponse> kafkaTemplate = kafkaTemplate();
+        KafkaService kafkaService = new KafkaService(kafkaTemplate, mock(BookingService.class), availabilityService);
+        ConsumerRecord<String, AvailabilityProbeRequestDto> record =
+                new ConsumerRecord<>("availability_probe_topic", 0, 0, day.toString(), probeRequest(day));
+        record.headers().add(KafkaHeaders.CORRELATION_ID, "probe-1".getBytes(StandardCharsets.UTF_8));
+
+        kafkaService.listenProbe(record);
+
+        Message<BookingResponse> reply = sentMessage(kafkaTemplate);
+        assertEquals("availability_probe_response_topic", reply.getHeaders().get(KafkaHeaders.TOPIC));
+        assertEquals(day.toString(), reply.getHeaders().get(KafkaHeaders.KEY));
+        assertArrayEquals("probe-1".getBytes(StandardCharsets.UTF_8),
+                (byte[]) reply.getHeaders().get(KafkaHeaders.CORRELATION_ID));
+        assertEquals(18, ((AvailabilityProbeResponse) reply.getPayload()).getFreeTables().length);
+    }
+
+    private AvailabilityProbeRequestDto probeRequest(LocalDate probedDay) {
+        AvailabilityProbeRequestDto request = new AvailabilityProbeRequestDto();
+        request.setCorrelationId("probe-1");
+        request.setDay(probedDay);
+        request.setStartTimes(List.of(LocalTime.of(18, 0), LocalTime.of(21, 0), LocalTime.of(0, 30)));
+        request.setDurations(List.of(Duration.ofHours(1), Duration.ofHours(2)));
+        request.setPartySizes(List.of(2, 4, 6));
+        return request;
+    }
+
+    private AvailabilityRequestDto availabilityRequest() {
+        AvailabilityRequestDto request = new AvailabilityRequestDto();
+        request.setCorrelationId("availability-1");
+        request.setFrom(day);
+        request.setDays(3);
+        request.setDuration(Duration.ofHours(2));
+        request.setPersons(2);
+        return request;
+    }
+
+    private static Slot window(LocalDate day, int fromHour, int toHour) {
+        return new Slot(null, LocalDateTime.of(day, LocalTime.of(fromHour, 0)), LocalDateTime.of(day, LocalTime.of(toHour, 0)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static KafkaTemplate<String, BookingResponse> kafkaTemplate() {
+        return mock(KafkaTemplate.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Message<BookingResponse> sentMessage(KafkaTemplate<String, BookingResponse> kafkaTemplate) {
+        ArgumentCaptor<Message<BookingResponse>> message = ArgumentCaptor.forClass(Message.class);
+        verify(kafkaTemplate).send(message.capture());
+        return message.getValue();
+    }
+}
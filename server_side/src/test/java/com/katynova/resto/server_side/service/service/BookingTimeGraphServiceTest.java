@@ -1,34 +1,49 @@
 package com.katynova.resto.server_side.service.service;
 
 import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.common_dto_library.response.BookingErrorResponse;
 import com.katynova.resto.common_dto_library.response.BookingResponse;
+import com.katynova.resto.common_dto_library.response.BookingSuccessResponse;
 import com.katynova.resto.common_dto_library.response.BookingSuggestResponse;
 import com.katynova.resto.common_dto_library.response.Slot;
+import com.katynova.resto.server_side.model.BookingPosition;
 import com.katynova.resto.server_side.model.FindResponse;
-import com.katynova.resto.server_side.model.GraphSlot;
+import com.katynova.resto.server_side.model.TableSlots;
+import com.katynova.resto.server_side.model.entity.Booking;
 import com.katynova.resto.server_side.model.entity.RestTable;
+import com.katynova.resto.server_side.model.info.AppropriateBookingInfo;
 import com.katynova.resto.server_side.model.info.SuggestBookingInfo;
 import com.katynova.resto.server_side.model.status.ResponseStatus;
 import com.katynova.resto.server_side.repository.BookingRepository;
 import com.katynova.resto.server_side.repository.TableRepository;
 import com.katynova.resto.server_side.service.BookingTimeGraphService;
+import com.katynova.resto.server_side.service.BookingWriteBehind;
+import com.katynova.resto.server_side.service.SuggestionHolds;
+import com.katynova.resto.server_side.service.TimeGraphService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.dao.DataAccessResourceFailureException;
 
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -43,6 +58,15 @@ class BookingTimeGraphServiceTest {
     @Mock
     BookingRepository bookingRepository;
 
+    @Mock
+    TimeGraphService timeGraphService;
+
+    @Mock
+    SuggestionHolds suggestionHolds;
+
+    @Mock
+    BookingWriteBehind bookingWriteBehind;
+
     BookingRequestDto bookingRequestDto;
 
     @Test
@@ -52,20 +76,14 @@ class BookingTimeGraphServiceTest {
         bookingRequestDto.setPersons(1);
         bookingRequestDto.setStartTime(LocalDateTime.of(2025, 7,21, 14, 0));
         bookingRequestDto.setDuration(Duration.of(2, ChronoUnit.HOURS));
-        GraphSlot slot1 = new GraphSlot(LocalTime.of(13, 0), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        GraphSlot slot2 = new GraphSlot(LocalTime.of(13, 30), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        GraphSlot slot3 = new GraphSlot(LocalTime.of(14, 0), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        GraphSlot slot4 = new GraphSlot(LocalTime.of(14, 30), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        List<GraphSlot> slots = List.of(slot1, slot2, slot3, slot4);
+        // будний день: с 10:00 до 23:00, слоты 6-9 - с 13:00 до 15:00
+        TableSlots table = new TableSlots(LocalTime.of(10, 0), 30, 26);
+        table.reserve(6, 10);
         SuggestBookingInfo suggestBookingInfo = new SuggestBookingInfo();
-        suggestBookingInfo.setSlots(slots);
+        suggestBookingInfo.setSlots(table.slice(6, 10));
         suggestBookingInfo.setTableNumber(1);
         FindResponse<SuggestBookingInfo> response = new FindResponse<>(List.of(suggestBookingInfo), ResponseStatus.SUGGESTED);
-        RestTable restTable = new RestTable();
-        restTable.setTableNumber(1);
-        restTable.setCapacity(2);
-        when(tableRepository.getReferenceById(1)).thenReturn(restTable);
-        when(bookingRepository.save(any())).thenReturn(null);
+        stubHolds();
         BookingResponse bookingResponse = bookingTimeGraphService.sendSuggestResponse(bookingRequestDto, response);
         assertInstanceOf(BookingSuggestResponse.class, bookingResponse);
         BookingSuggestResponse suggestResponse = (BookingSuggestResponse) bookingResponse;
@@ -83,19 +101,13 @@ class BookingTimeGraphServiceTest {
         bookingRequestDto.setPersons(1);
         bookingRequestDto.setStartTime(LocalDateTime.of(2025, 7,18, 22, 0));
         bookingRequestDto.setDuration(Duration.of(2, ChronoUnit.HOURS));
-        GraphSlot slot1 = new GraphSlot(LocalTime.of(23, 0), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        GraphSlot slot2 = new GraphSlot(LocalTime.of(23, 30), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        GraphSlot slot3 = new GraphSlot(LocalTime.of(0, 0), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        GraphSlot slot4 = new GraphSlot(LocalTime.of(0, 30), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        List<GraphSlot> slots = List.of(slot1, slot2, slot3, slot4);
+        // выходной: с 10:00 до 01:00, слоты 26-29 - с 23:00 до 01:00
+        TableSlots table = new TableSlots(LocalTime.of(10, 0), 30, 30);
+        table.reserve(26, 30);
         SuggestBookingInfo suggestBookingInfo = new SuggestBookingInfo();
-        suggestBookingInfo.setSlots(slots);
+        suggestBookingInfo.setSlots(table.slice(26, 30));
         suggestBookingInfo.setTableNumber(1);
-        RestTable restTable = new RestTable();
-        restTable.setTableNumber(1);
-        restTable.setCapacity(2);
-        when(tableRepository.getReferenceById(1)).thenReturn(restTable);
-        when(bookingRepository.save(any())).thenReturn(null);
+        stubHolds();
         FindResponse<SuggestBookingInfo> response = new FindResponse<>(List.of(suggestBookingInfo), ResponseStatus.SUGGESTED);
         BookingResponse bookingResponse = bookingTimeGraphService.sendSuggestResponse(bookingRequestDto, response);
         assertInstanceOf(BookingSuggestResponse.class, bookingResponse);
@@ -113,19 +125,13 @@ class BookingTimeGraphServiceTest {
         bookingRequestDto.setPersons(1);
         bookingRequestDto.setStartTime(LocalDateTime.of(2025, 7,19, 0, 0));
         bookingRequestDto.setDuration(Duration.of(2, ChronoUnit.HOURS));
-        GraphSlot slot1 = new GraphSlot(LocalTime.of(23, 0), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        GraphSlot slot2 = new GraphSlot(LocalTime.of(23, 30), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        GraphSlot slot3 = new GraphSlot(LocalTime.of(0, 0), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        GraphSlot slot4 = new GraphSlot(LocalTime.of(0, 30), new AtomicBoolean(false), new AtomicReference<>(-1L));
-        List<GraphSlot> slots = List.of(slot1, slot2, slot3, slot4);
+        // выходной: с 10:00 до 01:00, слоты 26-29 - с 23:00 до 01:00
+        TableSlots table = new TableSlots(LocalTime.of(10, 0), 30, 30);
+        table.reserve(26, 30);
         SuggestBookingInfo suggestBookingInfo = new SuggestBookingInfo();
-        suggestBookingInfo.setSlots(slots);
+        suggestBookingInfo.setSlots(table.slice(26, 30));
         suggestBookingInfo.setTableNumber(1);
-        RestTable restTable = new RestTable();
-        restTable.setTableNumber(1);
-        restTable.setCapacity(2);
-        when(tableRepository.getReferenceById(1)).thenReturn(restTable);
-        when(bookingRepository.save(any())).thenReturn(null);
+        stubHolds();
         FindResponse<SuggestBookingInfo> response = new FindResponse<>(List.of(suggestBookingInfo), ResponseStatus.SUGGESTED);
         BookingResponse bookingResponse = bookingTimeGraphService.sendSuggestResponse(bookingRequestDto, response);
         assertInstanceOf(BookingSuggestResponse.class, bookingResponse);
@@ -136,4 +142,127 @@ class BookingTimeGraphServiceTest {
         assertEquals(LocalDateTime.of(2025, 7, 18, 23, 0), slot.getStartTime());
         assertEquals(LocalDateTime.of(2025, 7, 19, 1, 0), slot.getEndTime());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReleaseReservedSlotsWhenSaveFails() {
+        bookingRequestDto = new BookingRequestDto();
+        bookingRequestDto.setGuestId(2L);
+        bookingRequestDto.setPersons(2);
+        bookingRequestDto.setStartTime(LocalDateTime.of(2025, 7, 21, 13, 0));
+        bookingRequestDto.setDuration(Duration.of(2, ChronoUnit.HOURS));
+        // поиск уже зарезервировал слоты 6-9, вставка брони падает
+        TableSlots table = new TableSlots(LocalTime.of(10, 0), 30, 26);
+        table.reserve(6, 10);
+        AppropriateBookingInfo info = new AppropriateBookingInfo(1, 0, 0, table.slice(6, 10), 2);
+        BookingPosition position = new BookingPosition(LocalDate.of(2025, 7, 21), 2, 1, info.getSlots());
+        doReturn(new FindResponse<>(List.of(info), ResponseStatus.SUCCESS))
+                .when(timeGraphService).findBooking(bookingRequestDto);
+        when(timeGraphService.reservedPosition(bookingRequestDto.getStartTime(), info)).thenReturn(position);
+        when(timeGraphService.isCurrent(position)).thenReturn(true);
+        when(bookingRepository.save(any())).thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        BookingResponse bookingResponse = bookingTimeGraphService.getResponse(bookingRequestDto);
+
+        assertInstanceOf(BookingErrorResponse.class, bookingResponse);
+        verify(timeGraphService).releaseHold(position);
+        verify(timeGraphService, never()).assignBooking(anyLong(), any());
+    }
+
+    @Test
+    void shouldRejectPositionOfRebuiltDay() {
+        bookingRequestDto = new BookingRequestDto();
+        bookingRequestDto.setGuestId(2L);
+        bookingRequestDto.setPersons(2);
+        bookingRequestDto.setStartTime(LocalDateTime.of(2025, 7, 21, 13, 0));
+        bookingRequestDto.setDuration(Duration.of(2, ChronoUnit.HOURS));
+        // слоты захвачены в дне, который успели пересобрать под новые часы
+        TableSlots table = new TableSlots(LocalTime.of(10, 0), 30, 26);
+        table.reserve(6, 10);
+        AppropriateBookingInfo info = new AppropriateBookingInfo(1, 0, 0, table.slice(6, 10), 2);
+        BookingPosition position = new BookingPosition(LocalDate.of(2025, 7, 21), 2, 1, info.getSlots());
+        doReturn(new FindResponse<>(List.of(info), ResponseStatus.SUCCESS))
+                .when(timeGraphService).findBooking(bookingRequestDto);
+        when(timeGraphService.reservedPosition(bookingRequestDto.getStartTime(), info)).thenReturn(position);
+        when(timeGraphService.isCurrent(position)).thenReturn(false);
+
+        BookingResponse bookingResponse = bookingTimeGraphService.getResponse(bookingRequestDto);
+
+        assertInstanceOf(BookingErrorResponse.class, bookingResponse);
+        verify(bookingRepository, never()).save(any());
+        verify(timeGraphService, never()).assignBooking(anyLong(), any());
+        verify(timeGraphService).unlockDays(List.of(position));
+    }
+
+    @Test
+    void shouldReleaseReservedSlotsWhenBookingCannotBeCreated() {
+        bookingRequestDto = request(LocalTime.of(13, 0));
+        // поиск уже зарезервировал слоты, а стола в базе нет
+        AppropriateBookingInfo info = reservedInfo(1, 6);
+        BookingPosition position = new BookingPosition(LocalDate.of(2025, 7, 21), 2, 1, info.getSlots());
+        doReturn(new FindResponse<>(List.of(info), ResponseStatus.SUCCESS))
+                .when(timeGraphService).findBooking(bookingRequestDto);
+        when(timeGraphService.reservedPosition(bookingRequestDto.getStartTime(), info)).thenReturn(position);
+        when(tableRepository.getReferenceById(1)).thenThrow(new EntityNotFoundException("table 1"));
+
+        BookingResponse bookingResponse = bookingTimeGraphService.getResponse(bookingRequestDto);
+
+        assertInstanceOf(BookingErrorResponse.class, bookingResponse);
+        verify(timeGraphService).releaseHold(position);
+        verify(bookingRepository, never()).save(any());
+    }
+
+    @Test
+    void shouldKeepBatchBookingsAndPositionsInStepWhenBookingCannotBeCreated() {
+        BookingRequestDto missingTable = request(LocalTime.of(13, 0));
+        BookingRequestDto existingTable = request(LocalTime.of(15, 0));
+        AppropriateBookingInfo missingInfo = reservedInfo(1, 6);
+        AppropriateBookingInfo existingInfo = reservedInfo(2, 10);
+        BookingPosition missingPosition = new BookingPosition(LocalDate.of(2025, 7, 21), 2, 1, missingInfo.getSlots());
+        BookingPosition existingPosition = new BookingPosition(LocalDate.of(2025, 7, 21), 2, 2, existingInfo.getSlots());
+        doReturn(List.of(new FindResponse<>(List.of(missingInfo), ResponseStatus.SUCCESS),
+                new FindResponse<>(List.of(existingInfo), ResponseStatus.SUCCESS)))
+                .when(timeGraphService).findBookings(List.of(missingTable, existingTable));
+        when(timeGraphService.reservedPosition(missingTable.getStartTime(), missingInfo)).thenReturn(missingPosition);
+        when(timeGraphService.reservedPosition(existingTable.getStartTime(), existingInfo)).thenReturn(existingPosition);
+        when(timeGraphService.isCurrent(existingPosition)).thenReturn(true);
+        when(tableRepository.getReferenceById(1)).thenThrow(new EntityNotFoundException("table 1"));
+        when(tableRepository.getReferenceById(2)).thenReturn(new RestTable());
+        when(bookingRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Booking> saved = invocation.getArgument(0);
+            saved.forEach(booking -> booking.setId(42L));
+            return saved;
+        });
+
+        List<BookingResponse> responses = bookingTimeGraphService.getResponses(List.of(missingTable, existingTable));
+
+        assertInstanceOf(BookingErrorResponse.class, responses.get(0));
+        assertInstanceOf(BookingSuccessResponse.class, responses.get(1));
+        verify(timeGraphService).releaseHold(missingPosition);
+        // id сохраненной брони достается ее собственной позиции, а не позиции отвергнутого запроса
+        verify(timeGraphService).assignBooking(42L, existingPosition);
+        verify(timeGraphService, never()).assignBooking(anyLong(), eq(missingPosition));
+    }
+
+    private static BookingRequestDto request(LocalTime startTime) {
+        BookingRequestDto request = new BookingRequestDto();
+        request.setGuestId(2L);
+        request.setPersons(2);
+        request.setStartTime(LocalDateTime.of(LocalDate.of(2025, 7, 21), startTime));
+        request.setDuration(Duration.of(2, ChronoUnit.HOURS));
+        return request;
+    }
+
+    // будний день с 10:00: слоты [from, from + 4) стола уже зарезервированы поиском
+    private static AppropriateBookingInfo reservedInfo(int tableNumber, int from) {
+        TableSlots table = new TableSlots(LocalTime.of(10, 0), 30, 26);
+        table.reserve(from, from + 4);
+        return new AppropriateBookingInfo(tableNumber, 0, 0, table.slice(from, from + 4), 2);
+    }
+
+    // резерв в памяти: время варианта берется из того, что посчитал сервис
+    private void stubHolds() {
+        when(suggestionHolds.hold(any(), any(), any(), any(), any())).thenAnswer(invocation ->
+                new SuggestionHolds.Hold(1L, invocation.getArgument(0), 1, invocation.getArgument(2),
+                        invocation.getArgument(3), null, invocation.getArgument(4)));
+    }
+}
@@ -0,0 +1,121 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.model.entity.Booking;
+import com.katynova.resto.server_side.model.entity.RestTable;
+import com.katynova.resto.server_side.model.status.Status;
+import com.katynova.resto.server_side.service.BookingWriteBehind;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@Sql(scripts = "/tables_insert.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class BookingWriteBehindIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:13")
+            .withDatabaseName("booking_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @TempDir
+    Path journalDir;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldSkipAlreadyWrittenBookingsOnRecovery() throws Exception {
+        // первая бронь пачки успела попасть в базу до падения, вторая - нет
+        jdbcTemplate.update("INSERT INTO bookings (id, start_time, end_time, notes, table_number, persons, guest_id, "
+                + "status, created) VALUES (900001, '2025-07-18 19:00', '2025-07-18 21:00', 'в базе', 1, 2, 7, "
+                + "'CONFIRMED', now())");
+        JdbcTemplate downDatabase = mock(JdbcTemplate.class);
+        when(downDatabase.queryForObject(anyString(), eq(Long.class))).thenReturn(900001L);
+        when(downDatabase.batchUpdate(anyString(), any(Collection.class), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+        BookingWriteBehind crashed = createWriter(downDatabase);
+        crashed.enqueue(booking(1, "из журнала"));
+        crashed.enqueue(booking(2, "из журнала"));
+        crashed.stop();
+        byte[] journal = Files.readAllBytes(journalDir.resolve("write-behind.log"));
+
+        BookingWriteBehind restarted = createWriter(jdbcTemplate);
+        assertEquals(2, restarted.recover());
+        // повторное падение до обнуления журнала: те же записи проигрываются еще раз
+        Files.write(journalDir.resolve("write-behind.log"), journal);
+        assertEquals(2, restarted.recover());
+        restarted.stop();
+
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM bookings", Integer.class));
+        assertEquals("в базе", jdbcTemplate.queryForObject(
+                "SELECT notes FROM bookings WHERE id = 900001", String.class));
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT table_number FROM bookings WHERE id = 900002", Integer.class));
+    }
+
+    private BookingWriteBehind createWriter(JdbcTemplate jdbc) throws Exception {
+        TimeGraphConfig config = new TimeGraphConfig();
+        config.setWriteBehind(true);
+        config.setWriteBehindDir(journalDir.toString());
+        TransactionTemplate transactions = jdbc == jdbcTemplate ? transactionTemplate
+                : new TransactionTemplate(mock(PlatformTransactionManager.class));
+        BookingWriteBehind writer = new BookingWriteBehind(config, jdbc, transactions);
+        writer.start();
+        return writer;
+    }
+
+    private static Booking booking(int tableNumber, String notes) {
+        RestTable table = new RestTable();
+        table.setTableNumber(tableNumber);
+        Booking booking = new Booking();
+        booking.setRestTable(table);
+        booking.setGuestId(7L);
+        booking.setPersons(2);
+        booking.setStatus(Status.CONFIRMED);
+        booking.setStartTime(LocalDateTime.of(2025, 7, 18, 19, 0));
+        booking.setEndTime(LocalDateTime.of(2025, 7, 18, 21, 0));
+        booking.setNotes(notes);
+        return booking;
+    }
+}
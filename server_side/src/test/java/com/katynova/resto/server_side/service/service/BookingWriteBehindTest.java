@@ -0,0 +1,210 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.model.entity.Booking;
+import com.katynova.resto.server_side.model.entity.RestTable;
+import com.katynova.resto.server_side.model.status.Status;
+import com.katynova.resto.server_side.service.BookingWriteBehind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookingWriteBehindTest {
+
+    @TempDir
+    Path journalDir;
+
+    private final List<BookingWriteBehind> writers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (BookingWriteBehind writer : writers) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void shouldReplayJournalAfterCrash() throws Exception {
+        // база недоступна: брони подтверждены, но остались только в журнале
+        BookingWriteBehind crashed = createWriter(downDatabase(), null);
+        List<Booking> bookings = List.of(booking(1, null), booking(2, "у окна"), booking(3, "день рождения"));
+        bookings.forEach(crashed::enqueue);
+        crashed.stop();
+
+        List<BookingWriteBehind.PendingBooking> inserted = new CopyOnWriteArrayList<>();
+        BookingWriteBehind restarted = createWriter(sequence(1000), inserted);
+        assertEquals(3, restarted.recover());
+        assertEquals(bookings.stream().map(Booking::getId).toList(),
+                inserted.stream().map(BookingWriteBehind.PendingBooking::id).toList());
+        BookingWriteBehind.PendingBooking second = inserted.get(1);
+        assertEquals(2, second.tableNumber());
+        assertEquals("у окна", second.notes());
+        assertEquals(Status.CONFIRMED, second.status());
+        assertEquals(bookings.get(1).getStartTime(), second.startTime());
+        assertEquals(bookings.get(1).getCreated(), second.created());
+        assertNull(inserted.getFirst().notes());
+        assertEquals(0, Files.size(journalFile()));
+    }
+
+    @Test
+    void shouldDropTornTailRecord() throws Exception {
+        BookingWriteBehind crashed = createWriter(downDatabase(), null);
+        crashed.enqueue(booking(1, null));
+        crashed.enqueue(booking(2, null));
+        crashed.stop();
+        // падение посреди записи: заголовок обещает 120 байт, а дописано только 4
+        Files.write(journalFile(), ByteBuffer.allocate(16).putInt(120).putLong(42).putInt(7).array(),
+                StandardOpenOption.APPEND);
+
+        List<BookingWriteBehind.PendingBooking> inserted = new CopyOnWriteArrayList<>();
+        BookingWriteBehind restarted = createWriter(sequence(1000), inserted);
+        assertEquals(2, restarted.recover());
+        assertEquals(2, inserted.size());
+        assertEquals(0, Files.size(journalFile()));
+    }
+
+    @Test
+    void shouldStopReplayAtFirstCorruptedRecord() throws Exception {
+        BookingWriteBehind crashed = createWriter(downDatabase(), null);
+        crashed.enqueue(booking(1, null));
+        crashed.enqueue(booking(2, null));
+        crashed.enqueue(booking(3, null));
+        crashed.stop();
+        // записи одной длины: портим тело второй, ее CRC больше не сходится
+        byte[] journal = Files.readAllBytes(journalFile());
+        int recordBytes = journal.length / 3;
+        journal[recordBytes + 20] ^= 0x5A;
+        Files.write(journalFile(), journal);
+
+        List<BookingWriteBehind.PendingBooking> inserted = new CopyOnWriteArrayList<>();
+        BookingWriteBehind restarted = createWriter(sequence(1000), inserted);
+        assertEquals(1, restarted.recover());
+        assertEquals(1, inserted.size());
+    }
+
+    @Test
+    void shouldAllocateIdsFromSequenceBlocks() throws Exception {
+        AtomicLong sequence = new AtomicLong(1);
+        Set<Long> blocks = new HashSet<>();
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenAnswer(invocation -> {
+            long start = sequence.getAndAdd(50);
+            blocks.add(start);
+            return start;
+        });
+        BookingWriteBehind writer = createWriter(jdbcTemplate, new CopyOnWriteArrayList<>());
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 175; i++) {
+            Booking booking = booking(1 + i % 9, null);
+            writer.enqueue(booking);
+            assertTrue(ids.add(booking.getId()), "duplicate id " + booking.getId());
+            long blockStart = booking.getId() - (booking.getId() - 1) % 50;
+            assertTrue(blocks.contains(blockStart), "id " + booking.getId() + " is outside fetched blocks");
+        }
+        // 175 id укладываются в 4 блока, плюс не больше одного заранее взятого
+        assertTrue(blocks.size() <= 5);
+    }
+
+    @Test
+    void shouldKeepWritingAfterSequenceFailure() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        List<BookingWriteBehind.PendingBooking> inserted = new CopyOnWriteArrayList<>();
+        // первая заготовка блока id падает, как при недоступной базе
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"))
+                .thenReturn(1L, 51L, 101L);
+        BookingWriteBehind writer = createWriter(jdbcTemplate, inserted);
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertDoesNotThrow(() -> writer.enqueue(booking(1, null))));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> writer.getFlushedBookings() >= 1);
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(0, Files.size(journalFile()));
+    }
+
+    private BookingWriteBehind createWriter(JdbcTemplate jdbcTemplate,
+                                            List<BookingWriteBehind.PendingBooking> inserted) throws IOException {
+        if (inserted != null) {
+            capture(jdbcTemplate, inserted);
+        }
+        TimeGraphConfig config = new TimeGraphConfig();
+        config.setWriteBehind(true);
+        config.setWriteBehindDir(journalDir.toString());
+        BookingWriteBehind writer = new BookingWriteBehind(config, jdbcTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        writer.start();
+        writers.add(writer);
+        return writer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void capture(JdbcTemplate jdbcTemplate, List<BookingWriteBehind.PendingBooking> inserted) {
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any())).thenAnswer(invocation -> {
+            inserted.addAll(invocation.getArgument(1));
+            return new int[0][];
+        });
+    }
+
+    // база лежит: блок id выдается, а пачки не записываются
+    @SuppressWarnings("unchecked")
+    private static JdbcTemplate downDatabase() {
+        JdbcTemplate jdbcTemplate = sequence(1);
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+        return jdbcTemplate;
+    }
+
+    private static JdbcTemplate sequence(long start) {
+        AtomicLong next = new AtomicLong(start);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenAnswer(invocation -> next.getAndAdd(50));
+        return jdbcTemplate;
+    }
+
+    private Path journalFile() {
+        return journalDir.resolve("write-behind.log");
+    }
+
+    private static Booking booking(int tableNumber, String notes) {
+        RestTable table = new RestTable();
+        table.setTableNumber(tableNumber);
+        Booking booking = new Booking();
+        booking.setRestTable(table);
+        booking.setGuestId(7L);
+        booking.setPersons(2);
+        booking.setStatus(Status.CONFIRMED);
+        booking.setStartTime(LocalDateTime.of(2025, 7, 18, 19, 0));
+        booking.setEndTime(LocalDateTime.of(2025, 7, 18, 21, 0));
+        booking.setNotes(notes);
+        return booking;
+    }
+}
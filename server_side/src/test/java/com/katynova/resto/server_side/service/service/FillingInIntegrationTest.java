@@ -1,6 +1,7 @@
 package com.katynova.resto.server_side.service.service;
 
 import com.katynova.resto.server_side.model.GraphSlot;
+import com.katynova.resto.server_side.model.TableSlots;
 import com.katynova.resto.server_side.service.TimeGraphService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,7 +46,7 @@ public class FillingInIntegrationTest {
 
     private ConcurrentMap<LocalDate, ConcurrentMap
             <Integer, ConcurrentMap
-                    <Integer, List<GraphSlot>>>> timeGraph;
+                    <Integer, TableSlots>>> timeGraph;
     private final int firstCapacity = 2;
     private final int secondCapacity = 4;
 
@@ -57,17 +58,17 @@ public class FillingInIntegrationTest {
         assertFalse(timeGraph.isEmpty());
         LocalDate firstDay = LocalDate.of(2025, 7, 13);
         // достаем день
-        ConcurrentMap<Integer, ConcurrentMap<Integer, List<GraphSlot>>> firstDayMap = timeGraph.get(firstDay);
+        ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> firstDayMap = timeGraph.get(firstDay);
         assertNotNull(firstDayMap);
         assertFalse(firstDayMap.isEmpty());
         assertEquals(2, firstDayMap.size());
         // достаем capacity = 2
-        ConcurrentMap<Integer, List<GraphSlot>> firstDayFirstCapacityMap = firstDayMap.get(firstCapacity);
+        ConcurrentMap<Integer, TableSlots> firstDayFirstCapacityMap = firstDayMap.get(firstCapacity);
         assertNotNull(firstDayFirstCapacityMap);
         assertFalse(firstDayFirstCapacityMap.isEmpty());
         assertEquals(2, firstDayFirstCapacityMap.size());
         // достаем capacity = 4
-        ConcurrentMap<Integer, List<GraphSlot>> firstDaySecondCapacityMap = firstDayMap.get(secondCapacity);
+        ConcurrentMap<Integer, TableSlots> firstDaySecondCapacityMap = firstDayMap.get(secondCapacity);
         assertNotNull(firstDaySecondCapacityMap);
         assertFalse(firstDaySecondCapacityMap.isEmpty());
         assertEquals(1, firstDaySecondCapacityMap.size());
@@ -0,0 +1,124 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.model.FreeTableIndex;
+import com.katynova.resto.server_side.model.TableSlots;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// индекс после случайных захватов и освобождений отвечает так же, как полный перебор столов
+// 130 столов - три слова маски с неполным последним, 70 слотов - биты стола тоже занимают два слова
+class FreeTableIndexTest {
+
+    private static final int TABLES = 130;
+    private static final int SLOTS = 70;
+
+    @Test
+    void shouldMatchLinearScanAfterRandomBookAndRelease() {
+        Random random = new Random(42);
+        Map<Integer, TableSlots> tablesByNumber = new LinkedHashMap<>();
+        for (int number = 1; number <= TABLES; number++) {
+            tablesByNumber.put(number, new TableSlots(LocalTime.of(10, 0), 15, SLOTS));
+        }
+        FreeTableIndex index = new FreeTableIndex(tablesByNumber);
+
+        for (int step = 0; step < 5_000; step++) {
+            TableSlots table = index.table(random.nextInt(TABLES));
+            int from = random.nextInt(SLOTS);
+            int to = from + 1 + random.nextInt(Math.min(8, SLOTS - from));
+            switch (random.nextInt(4)) {
+                case 0 -> table.tryReserve(from, to);
+                case 1 -> {
+                    if (table.isFree(from, to)) {
+                        table.book(from, to, step + 1);
+                    }
+                }
+                case 2 -> table.unreserve(from, to);
+                default -> table.unreserveBooking(from, to, table.bookingIdAt(from));
+            }
+
+            int checkFrom = random.nextInt(SLOTS);
+            int checkTo = checkFrom + 1 + random.nextInt(SLOTS - checkFrom);
+            long[] during = index.tablesFreeDuring(checkFrom, checkTo);
+            long[] within = index.tablesFreeWithin(checkFrom, checkTo);
+            int freeDuring = 0;
+            for (int column = 0; column < TABLES; column++) {
+                TableSlots candidate = index.table(column);
+                boolean anyFree = candidate.nextFree(checkFrom, checkTo) < checkTo;
+                boolean allFree = candidate.isFree(checkFrom, checkTo);
+                assertEquals(allFree, isSet(during, column), "during, step " + step + ", column " + column);
+                assertEquals(anyFree, isSet(within, column), "within, step " + step + ", column " + column);
+                if (allFree) {
+                    freeDuring++;
+                }
+            }
+            assertEquals(freeDuring, index.snapshot().freeTablesDuring(checkFrom, checkTo), "snapshot, step " + step);
+        }
+    }
+
+    // захват и освобождение одних слотов из разных потоков без блокировок:
+    // запоздавшее освобождение в индексе не должно перетирать захват, сделанный после него
+    @Test
+    void shouldKeepIndexInStepWithBitsUnderConcurrentReserveAndUnreserve() throws Exception {
+        int threads = 4;
+        int slots = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                Map<Integer, TableSlots> tablesByNumber = new LinkedHashMap<>();
+                tablesByNumber.put(1, new TableSlots(LocalTime.of(10, 0), 30, slots));
+                FreeTableIndex index = new FreeTableIndex(tablesByNumber);
+                TableSlots table = index.table(0);
+                CountDownLatch start = new CountDownLatch(1);
+                Future<?>[] workers = new Future<?>[threads];
+                for (int t = 0; t < threads; t++) {
+                    workers[t] = executor.submit(() -> {
+                        start.await();
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        int heldFrom = -1;
+                        int heldTo = -1;
+                        for (int step = 0; step < 2_000; step++) {
+                            if (heldFrom >= 0) {
+                                table.unreserve(heldFrom, heldTo);
+                                heldFrom = -1;
+                            }
+                            int from = random.nextInt(slots);
+                            int to = from + 1 + random.nextInt(Math.min(3, slots - from));
+                            if (table.tryReserve(from, to)) {
+                                heldFrom = from;
+                                heldTo = to;
+                            }
+                        }
+                        // последний захват каждый поток оставляет за собой
+                        return null;
+                    });
+                }
+                start.countDown();
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+
+                for (int slot = 0; slot < slots; slot++) {
+                    assertEquals(table.isAvailable(slot), isSet(index.tablesFreeDuring(slot, slot + 1), 0),
+                            "round " + round + ", slot " + slot);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isSet(long[] mask, int column) {
+        return (mask[column >>> 6] & (1L << column)) != 0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.model.FreeWindowScanner;
+import com.katynova.resto.server_side.model.ScannerType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// векторный сканер на случайных масках дает тот же результат, что и скалярный
+// ширина до 9 слов: захватываются и полные векторы, и скалярный хвост при любой длине вектора
+class FreeWindowScannerTest {
+
+    private final FreeWindowScanner scalar = ScannerType.SCALAR.create();
+    private final FreeWindowScanner vector = ScannerType.VECTOR.create();
+
+    @Test
+    void shouldMatchScalarScannerOnRandomMasks() {
+        Random random = new Random(42);
+        for (int run = 0; run < 2_000; run++) {
+            int wordsPerSlot = 1 + random.nextInt(9);
+            int slots = 1 + random.nextInt(48);
+            long[] freeTables = new long[slots * wordsPerSlot];
+            for (int i = 0; i < freeTables.length; i++) {
+                // разреженные и плотные маски, чтобы и and, и or не вырождались в 0 или -1
+                freeTables[i] = random.nextBoolean() ? random.nextLong() : random.nextLong() | random.nextLong();
+            }
+            int from = random.nextInt(slots);
+            int to = from + random.nextInt(slots - from + 1);
+            long[] mask = new long[wordsPerSlot];
+            for (int i = 0; i < mask.length; i++) {
+                mask[i] = random.nextLong();
+            }
+
+            long[] scalarDuring = mask.clone();
+            long[] vectorDuring = mask.clone();
+            scalar.tablesFreeDuring(freeTables, wordsPerSlot, from, to, scalarDuring);
+            vector.tablesFreeDuring(freeTables, wordsPerSlot, from, to, vectorDuring);
+            assertArrayEquals(scalarDuring, vectorDuring, "during, run " + run);
+
+            long[] scalarWithin = mask.clone();
+            long[] vectorWithin = mask.clone();
+            scalar.tablesFreeWithin(freeTables, wordsPerSlot, from, to, scalarWithin);
+            vector.tablesFreeWithin(freeTables, wordsPerSlot, from, to, vectorWithin);
+            assertArrayEquals(scalarWithin, vectorWithin, "within, run " + run);
+        }
+    }
+}
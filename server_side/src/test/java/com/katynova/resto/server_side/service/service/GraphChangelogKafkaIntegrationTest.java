@@ -0,0 +1,162 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.katynova.resto.server_side.config.KafkaConsumerConfig;
+import com.katynova.resto.server_side.config.KafkaProducerConfig;
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.model.FindResponse;
+import com.katynova.resto.server_side.model.TableSlots;
+import com.katynova.resto.server_side.model.info.AppropriateBookingInfo;
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.service.GraphChangelog;
+import com.katynova.resto.server_side.service.GraphReplica;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.condition.EmbeddedKafkaCondition;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// основной экземпляр пишет граф в компактный топик на встроенном брокере, реплика строит граф из топика,
+// после promote реплика сама пишет в журнал, и новая реплика сходится уже к ней
+@EmbeddedKafka(kraft = true)
+class GraphChangelogKafkaIntegrationTest {
+
+    private static final String TOPIC = "time_graph_changelog_it";
+
+    private final ObjectMapper objectMapper = new KafkaConsumerConfig().objectMapper();
+    private final EmbeddedKafkaBroker broker = EmbeddedKafkaCondition.getBroker();
+    private final LocalDate day = LocalDate.now().plusDays(5);
+    private final List<ConcurrentMessageListenerContainer<?, ?>> containers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        containers.forEach(ConcurrentMessageListenerContainer::stop);
+    }
+
+    @Test
+    void shouldRebuildReplicaFromCompactedTopicAndPromoteIt() {
+        TimeGraphConfig topicConfig = new TimeGraphConfig();
+        topicConfig.setChangelogTopic(TOPIC);
+        broker.addTopics(new KafkaProducerConfig().graphChangelogTopic(topicConfig));
+
+        TimeGraphFixture primaryFixture = fixture(config -> config.setChangelogEnabled(true));
+        TimeGraphService primary = primaryFixture.changelog(template()).build();
+        // три подтвержденные брони и один резерв варианта, который никто не подтвердит
+        for (int i = 0; i < 3; i++) {
+            book(primary, LocalTime.of(19, 0), 100L + i);
+        }
+        assertEquals(ResponseStatus.SUCCESS, primary.findBooking(request(day, LocalTime.of(12, 0))).getStatus());
+
+        TimeGraphFixture replicaFixture = fixture(config -> {
+            config.setChangelogEnabled(true);
+            config.setReplica(true);
+        });
+        TimeGraphService replica = replicaFixture.changelog(template()).build();
+        KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+        GraphReplica graphReplica = new GraphReplica(replica, replicaFixture.graphChangelog(),
+                replicaFixture.timeGraphConfig(), registry);
+        ConcurrentMessageListenerContainer<String, GraphChangelog.TableState> follower = follow(graphReplica);
+        when(registry.getListenerContainer(GraphReplica.LISTENER_ID)).thenReturn(follower);
+        await().atMost(Duration.ofSeconds(30)).untilAsserted(() -> TimeGraphFixture.assertSameDay(primary, replica, day));
+        assertTrue(replicaFixture.graphChangelog().isFollowing());
+
+        graphReplica.promote();
+
+        assertFalse(follower.isRunning());
+        assertFalse(replicaFixture.graphChangelog().isFollowing());
+        int reserved = 0;
+        int booked = 0;
+        for (Map<Integer, TableSlots> tables : replica.getTimeGraph().get(day).values()) {
+            for (TableSlots table : tables.values()) {
+                for (int i = 0; i < table.size(); i++) {
+                    if (!table.isAvailable(i)) {
+                        if (table.bookingIdAt(i) == TableSlots.RESERVED) {
+                            reserved++;
+                        } else {
+                            booked++;
+                        }
+                    }
+                }
+            }
+        }
+        // резерв упавшего экземпляра снят, брони остались
+        assertEquals(0, reserved);
+        assertEquals(3 * 4, booked);
+
+        // новый основной экземпляр пишет в журнал: свежая реплика сходится к нему
+        book(replica, LocalTime.of(15, 0), 200L);
+        TimeGraphFixture nextFixture = fixture(config -> {
+            config.setChangelogEnabled(true);
+            config.setReplica(true);
+        });
+        TimeGraphService nextReplica = nextFixture.build();
+        follow(new GraphReplica(nextReplica, nextFixture.graphChangelog(), nextFixture.timeGraphConfig(),
+                mock(KafkaListenerEndpointRegistry.class)));
+        await().atMost(Duration.ofSeconds(30)).untilAsserted(() -> TimeGraphFixture.assertSameDay(replica, nextReplica, day));
+    }
+
+    private TimeGraphFixture fixture(Consumer<TimeGraphConfig> settings) {
+        return new TimeGraphFixture().config(config -> {
+            config.setChangelogTopic(TOPIC);
+            settings.accept(config);
+        });
+    }
+
+    private void book(TimeGraphService service, LocalTime startTime, long bookingId) {
+        FindResponse<?> found = service.findBooking(request(day, startTime));
+        assertEquals(ResponseStatus.SUCCESS, found.getStatus());
+        service.assignBooking(bookingId, service.reservedPosition(LocalDateTime.of(day, startTime),
+                (AppropriateBookingInfo) found.getList().getFirst()));
+    }
+
+    private KafkaTemplate<String, GraphChangelog.TableState> template() {
+        KafkaProducerConfig producerConfig = new KafkaProducerConfig();
+        DefaultKafkaProducerFactory<String, GraphChangelog.TableState> producerFactory =
+                (DefaultKafkaProducerFactory<String, GraphChangelog.TableState>)
+                        producerConfig.changelogProducerFactory(objectMapper);
+        producerFactory.updateConfigs(Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()));
+        return producerConfig.changelogTemplate(producerFactory);
+    }
+
+    private ConcurrentMessageListenerContainer<String, GraphChangelog.TableState> follow(GraphReplica graphReplica) {
+        DefaultKafkaConsumerFactory<String, GraphChangelog.TableState> consumerFactory =
+                (DefaultKafkaConsumerFactory<String, GraphChangelog.TableState>)
+                        new KafkaConsumerConfig().changelogConsumerFactory(objectMapper);
+        consumerFactory.updateConfigs(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, "time-graph-replica-" + UUID.randomUUID()));
+        ContainerProperties properties = new ContainerProperties(TOPIC);
+        properties.setMessageListener((MessageListener<String, GraphChangelog.TableState>) graphReplica::follow);
+        ConcurrentMessageListenerContainer<String, GraphChangelog.TableState> container =
+                new ConcurrentMessageListenerContainer<>(consumerFactory, properties);
+        container.start();
+        containers.add(container);
+        return container;
+    }
+}
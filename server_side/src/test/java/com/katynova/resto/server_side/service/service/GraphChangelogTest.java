@@ -0,0 +1,85 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.service.GraphChangelog;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GraphChangelogTest {
+
+    private final LocalDate bookingDate = LocalDate.of(2025, 7, 15);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReplicateGraphThroughChangelog() {
+        // в топике после компакции остается последнее значение каждого ключа
+        Map<String, GraphChangelog.TableState> topic = new ConcurrentHashMap<>();
+        KafkaTemplate<String, GraphChangelog.TableState> template = mock(KafkaTemplate.class);
+        when(template.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            topic.put(invocation.getArgument(1), invocation.getArgument(2));
+            return CompletableFuture.completedFuture(null);
+        });
+        TimeGraphService primary = new TimeGraphFixture()
+                .config(config -> config.setChangelogEnabled(true))
+                .changelog(template)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(ResponseStatus.SUCCESS, primary.findBooking(request(bookingDate, LocalTime.of(19, 0))).getStatus());
+        }
+        assertEquals(ResponseStatus.SUCCESS, primary.findBooking(request(bookingDate, LocalTime.of(12, 0))).getStatus());
+
+        // отправка идет из отдельного потока
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            TimeGraphService replica = new TimeGraphFixture().build();
+            topic.values().forEach(replica::applyTableState);
+            TimeGraphFixture.assertSameDay(primary, replica, bookingDate);
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldNotHoldTableLockWhileSending() throws Exception {
+        // брокер недоступен: send висит, как при ожидании метаданных до max.block.ms
+        CountDownLatch brokerDown = new CountDownLatch(1);
+        KafkaTemplate<String, GraphChangelog.TableState> template = mock(KafkaTemplate.class);
+        when(template.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            brokerDown.await();
+            return CompletableFuture.completedFuture(null);
+        });
+        TimeGraphFixture fixture = new TimeGraphFixture()
+                .config(config -> config.setChangelogEnabled(true))
+                .changelog(template);
+        TimeGraphService service = fixture.build();
+        try {
+            // каждое изменение стола ставит его состояние в очередь и не ждет отправки
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < 3; i++) {
+                    assertEquals(ResponseStatus.SUCCESS,
+                            service.findBooking(request(bookingDate, LocalTime.of(19, 0))).getStatus());
+                }
+                fixture.graphLocks().lockTable(bookingDate, 2, 1);
+                fixture.graphLocks().unlockTable(bookingDate, 2, 1);
+            });
+        } finally {
+            brokerDown.countDown();
+        }
+    }
+}
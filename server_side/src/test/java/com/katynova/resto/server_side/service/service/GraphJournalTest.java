@@ -0,0 +1,78 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.model.BookingPosition;
+import com.katynova.resto.server_side.model.TableSlots;
+import com.katynova.resto.server_side.service.GraphJournal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphJournalTest {
+
+    @TempDir
+    Path journalDir;
+
+    private GraphJournal journal;
+    private final LocalDate day = LocalDate.of(2025, 7, 18);
+    private final TableSlots table = new TableSlots(LocalTime.of(10, 0), 30, 30);
+
+    @BeforeEach
+    void setUp() {
+        TimeGraphConfig config = new TimeGraphConfig();
+        config.setJournalEnabled(true);
+        config.setJournalDir(journalDir.toString());
+        journal = new GraphJournal(config);
+    }
+
+    @Test
+    void shouldRestoreSnapshotWithLogAppliedOnTop() {
+        journal.writeSnapshot(Map.of(
+                1L, new BookingPosition(day, 2, 1, table.slice(0, 4)),
+                2L, new BookingPosition(day, 4, 3, table.slice(26, 30))));
+        journal.appendBook(3L, new BookingPosition(day, 2, 2, table.slice(6, 10)));
+        journal.appendRelease(1L);
+
+        Map<Long, GraphJournal.Entry> restored = journal.restore();
+        assertEquals(2, restored.size());
+        assertFalse(restored.containsKey(1L));
+        assertEquals(new GraphJournal.Entry(2L, day, 4, 3, 26, 30), restored.get(2L));
+        assertEquals(new GraphJournal.Entry(3L, day, 2, 2, 6, 10), restored.get(3L));
+    }
+
+    @Test
+    void shouldStartNewLogAfterSnapshot() {
+        journal.appendBook(1L, new BookingPosition(day, 2, 1, table.slice(0, 4)));
+        journal.writeSnapshot(Map.of());
+        journal.appendBook(2L, new BookingPosition(day, 2, 1, table.slice(4, 8)));
+
+        Map<Long, GraphJournal.Entry> restored = journal.restore();
+        assertEquals(1, restored.size());
+        assertTrue(restored.containsKey(2L));
+    }
+
+    @Test
+    void shouldStopLogReplayAtFirstCorruptedRecord() throws Exception {
+        journal.appendBook(1L, new BookingPosition(day, 2, 1, table.slice(0, 4)));
+        journal.appendBook(2L, new BookingPosition(day, 2, 2, table.slice(0, 4)));
+        journal.appendBook(3L, new BookingPosition(day, 2, 3, table.slice(0, 4)));
+        // записи одной длины: портим тело второй, ее CRC больше не сходится
+        Path log = journalDir.resolve("graph.log");
+        byte[] bytes = Files.readAllBytes(log);
+        int recordBytes = bytes.length / 3;
+        bytes[recordBytes + 12] ^= 0x5A;
+        Files.write(log, bytes);
+
+        Map<Long, GraphJournal.Entry> restored = journal.restore();
+        assertEquals(1, restored.size());
+        assertTrue(restored.containsKey(1L));
+    }
+}
@@ -0,0 +1,104 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// рестарт графа на миллионе броней: полная загрузка из Postgres (fillIn) против снимка и журнала (restoreFromJournal)
+// замер долгий, поэтому включается только переменной окружения:
+// GRAPH_RESTART_BENCHMARK=true ./gradlew :server_side:test --tests '*GraphRestartIntegrationTest'
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+@EnabledIfEnvironmentVariable(named = "GRAPH_RESTART_BENCHMARK", matches = "true")
+@Sql(scripts = "/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class GraphRestartIntegrationTest {
+
+    // 500 столов, год вперед, шесть двухчасовых броней на стол в день - ровно миллион строк отбирается LIMIT-ом
+    private static final int TABLES = 500;
+    private static final int DAYS = 365;
+    private static final int BOOKINGS = 1_000_000;
+    private static final int RUNS = 3;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:13")
+            .withDatabaseName("booking_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("time-graph.horizon-days-back", () -> 1);
+        registry.add("time-graph.horizon-days-ahead", () -> DAYS);
+        registry.add("time-graph.journal-enabled", () -> true);
+        registry.add("time-graph.journal-dir", () -> {
+            try {
+                return Files.createTempDirectory("graph-restart").toString();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TimeGraphService timeGraphService;
+
+    @Test
+    void shouldReportRestoreFromJournalAgainstLoadingFromDatabase() {
+        jdbcTemplate.update("INSERT INTO restaurant_tables(table_number, capacity) "
+                + "SELECT n, CASE WHEN n % 3 = 0 THEN 4 ELSE 2 END FROM generate_series(1, ?) n", TABLES);
+        jdbcTemplate.update("INSERT INTO bookings(start_time, end_time, table_number, persons, guest_id, status) "
+                + "SELECT current_date + d + time '10:00' + k * interval '2 hours', "
+                + "current_date + d + time '12:00' + k * interval '2 hours', n, 2, n, 'CONFIRMED' "
+                + "FROM generate_series(0, ? - 1) d, generate_series(1, ?) n, generate_series(0, 5) k "
+                + "ORDER BY d, n, k LIMIT ?", DAYS, TABLES, BOOKINGS);
+        jdbcTemplate.execute("ANALYZE bookings");
+
+        // первые прогоны прогревают JIT; граф каждого прогона заменяет предыдущий, и старый уходит в мусор,
+        // поэтому время здесь только выводится, а проверяется, что восстановленный граф содержит все брони
+        long[] fillInMillis = new long[RUNS];
+        long[] restoreMillis = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long started = System.nanoTime();
+            timeGraphService.fillIn();
+            fillInMillis[run] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            started = System.nanoTime();
+            assertTrue(timeGraphService.restoreFromJournal());
+            restoreMillis[run] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        }
+        // каждая бронь занимает четыре слота по 30 минут
+        assertEquals(BOOKINGS, timeGraphService.getTimeGraph().values().stream()
+                .flatMap(day -> day.values().stream())
+                .flatMap(tables -> tables.values().stream())
+                .mapToLong(table -> table.stream().filter(slot -> !slot.isAvailable()).count())
+                .sum() / 4);
+
+        System.out.printf("Graph restart, %d bookings: fillIn %s ms, restoreFromJournal %s ms%n",
+                BOOKINGS, Arrays.toString(fillInMillis), Arrays.toString(restoreMillis));
+    }
+}
@@ -0,0 +1,249 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.common_dto_library.BusinessDay;
+import com.katynova.resto.server_side.config.KafkaConsumerConfig;
+import com.katynova.resto.server_side.config.TimeGraphDaysDroppedEvent;
+import com.katynova.resto.server_side.service.GraphRebalanceListener;
+import com.katynova.resto.server_side.service.GraphShards;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import com.katynova.resto.server_side.model.BookingPosition;
+import com.katynova.resto.server_side.model.FindResponse;
+import com.katynova.resto.server_side.model.info.AppropriateBookingInfo;
+import com.katynova.resto.server_side.model.info.SuggestBookingInfo;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.condition.EmbeddedKafkaCondition;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+// два экземпляра в одной группе потребителей на встроенном брокере: партиции, дни графа и записи дней
+// должны совпадать у каждого экземпляра и покрывать горизонт без пересечений
+@EmbeddedKafka(kraft = true, partitions = GraphShardsKafkaIntegrationTest.PARTITIONS,
+        topics = {"request_topic", "confirmation_topic"})
+class GraphShardsKafkaIntegrationTest {
+
+    static final int PARTITIONS = 6;
+    private static final int HORIZON_DAYS_AHEAD = 13;
+    // записи замера пропускной способности помечены гостем: их не путают с записями проверки перебалансировки
+    private static final long THROUGHPUT_GUEST = 777L;
+    private static final int THROUGHPUT_RECORDS = 20_000;
+
+    private final ObjectMapper objectMapper = new KafkaConsumerConfig().objectMapper();
+    private final EmbeddedKafkaBroker broker = EmbeddedKafkaCondition.getBroker();
+    private final List<Instance> instances = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        instances.forEach(instance -> instance.container().stop());
+    }
+
+    @Test
+    void shouldSplitDaysBetweenInstancesAndFollowRebalance() {
+        Instance first = start();
+        // партиции отмечаются своими до того, как построены их дни: ждем и того, и другого
+        await().atMost(Duration.ofSeconds(30)).until(() -> first.shards().ownedPartitions().size() == PARTITIONS
+                && first.service().getTimeGraph().keySet().equals(horizon()));
+
+        // второй экземпляр забирает половину партиций, первый отдает их дни
+        Instance second = start();
+        await().atMost(Duration.ofSeconds(30)).until(() -> first.shards().ownedPartitions().size() == PARTITIONS / 2
+                && second.shards().ownedPartitions().size() == PARTITIONS / 2
+                && daysLoaded(List.of(first, second)));
+        Set<Integer> all = new HashSet<>(first.shards().ownedPartitions());
+        all.addAll(second.shards().ownedPartitions());
+        assertEquals(PARTITIONS, all.size());
+        for (LocalDate day : horizon()) {
+            assertTrue(first.service().getTimeGraph().containsKey(day) ^ second.service().getTimeGraph().containsKey(day),
+                    "День " + day + " должен быть ровно у одного экземпляра");
+        }
+        assertTrue(first.fixture().publishedEvents().stream().anyMatch(TimeGraphDaysDroppedEvent.class::isInstance));
+
+        // запрос дня приходит к тому экземпляру, который держит день
+        KafkaTemplate<String, BookingRequestDto> template = template();
+        for (LocalDate day : horizon()) {
+            template.send("request_topic", BusinessDay.partition(day, PARTITIONS), day.toString(),
+                    request(day, LocalTime.of(19, 0)));
+        }
+        await().atMost(Duration.ofSeconds(30)).until(() ->
+                first.received().size() + second.received().size() == horizon().size());
+        assertTrue(first.received().values().stream().allMatch(Boolean::booleanValue));
+        assertTrue(second.received().values().stream().allMatch(Boolean::booleanValue));
+
+        // второй экземпляр остановлен: его партиции и дни возвращаются первому
+        second.container().stop();
+        await().atMost(Duration.ofSeconds(30)).until(() -> first.shards().ownedPartitions().size() == PARTITIONS
+                && first.service().getTimeGraph().keySet().equals(horizon()));
+    }
+
+    // одни и те же записи обрабатывают один и три экземпляра: каждый ищет стол в своих днях и снимает резерв
+    // на общем встроенном брокере экземпляры делят и процессор, поэтому сравнение мягкое - дни должны
+    // разойтись по экземплярам, все записи обработаны, и несколько экземпляров не в разы медленнее одного
+    @Test
+    void shouldReportThroughputOfOneAndThreeInstances() throws Exception {
+        double single = throughput(1);
+        double sharded = throughput(3);
+        System.out.printf("Sharded request_topic throughput, %d records: 1 instance %.0f records/s, 3 instances %.0f records/s%n",
+                THROUGHPUT_RECORDS, single, sharded);
+        assertTrue(sharded > single / 2, "3 instances " + sharded + " records/s, 1 instance " + single + " records/s");
+    }
+
+    private double throughput(int instanceCount) throws Exception {
+        String groupId = "resto-shards-throughput-" + instanceCount;
+        // группа начинает с конца топика: записи других проверок и прошлого замера не читаются
+        startFromEnd(groupId);
+        List<Instance> started = IntStream.range(0, instanceCount).mapToObj(i -> start(groupId)).toList();
+        await().atMost(Duration.ofSeconds(60)).until(() -> started.stream()
+                .allMatch(instance -> instance.shards().ownedPartitions().size() == PARTITIONS / instanceCount)
+                && daysLoaded(started));
+
+        List<LocalDate> days = List.copyOf(horizon());
+        KafkaTemplate<String, BookingRequestDto> template = template();
+        long startedNanos = System.nanoTime();
+        for (int i = 0; i < THROUGHPUT_RECORDS; i++) {
+            LocalDate day = days.get(i % days.size());
+            BookingRequestDto request = request(day, LocalTime.of(10, 0).plusMinutes(30L * (i % 19)));
+            request.setGuestId(THROUGHPUT_GUEST);
+            request.setPersons(1 + i % 4);
+            template.send("request_topic", BusinessDay.partition(day, PARTITIONS), day.toString(), request);
+        }
+        template.flush();
+        await().atMost(Duration.ofSeconds(120)).until(() ->
+                started.stream().mapToInt(instance -> instance.processed().get()).sum() == THROUGHPUT_RECORDS);
+        double seconds = (System.nanoTime() - startedNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        assertTrue(started.stream().allMatch(instance -> instance.processed().get() > 0));
+        started.forEach(instance -> instance.container().stop());
+        return THROUGHPUT_RECORDS / seconds;
+    }
+
+    // дни горизонта построены, и каждый - ровно у одного экземпляра
+    private boolean daysLoaded(List<Instance> running) {
+        int loaded = running.stream().mapToInt(instance -> instance.service().getTimeGraph().size()).sum();
+        Set<LocalDate> days = new HashSet<>();
+        running.forEach(instance -> days.addAll(instance.service().getTimeGraph().keySet()));
+        return loaded == days.size() && days.equals(horizon());
+    }
+
+    private void startFromEnd(String groupId) throws Exception {
+        try (AdminClient admin = AdminClient.create(Map.of("bootstrap.servers", broker.getBrokersAsString()))) {
+            Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+            for (String topic : List.of("request_topic", "confirmation_topic")) {
+                for (int partition = 0; partition < PARTITIONS; partition++) {
+                    latest.put(new TopicPartition(topic, partition), OffsetSpec.latest());
+                }
+            }
+            Map<TopicPartition, OffsetAndMetadata> offsets = admin.listOffsets(latest).all().get().entrySet().stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, entry -> new OffsetAndMetadata(entry.getValue().offset())));
+            admin.alterConsumerGroupOffsets(groupId, offsets).all().get();
+        }
+    }
+
+    // поиск с захватом и сразу снятие захваченного: занятость дней от записи к записи не меняется
+    private static void bookAndRelease(TimeGraphService service, BookingRequestDto request) {
+        FindResponse<?> response = service.findBooking(request);
+        for (Object info : response.getList()) {
+            if (info instanceof AppropriateBookingInfo appropriate) {
+                service.releaseHold(service.reservedPosition(request.getStartTime(), appropriate));
+            } else if (info instanceof SuggestBookingInfo suggest) {
+                service.releaseHold(new BookingPosition(request.getStartTime().toLocalDate().plusDays(suggest.getDayOffset()),
+                        suggest.getCapacity(), suggest.getTableNumber(), suggest.getSlots()));
+            }
+        }
+    }
+
+    private Instance start() {
+        return start("resto-shards-test");
+    }
+
+    private Instance start(String groupId) {
+        TimeGraphFixture fixture = new TimeGraphFixture().config(config -> {
+            config.setSharding(true);
+            config.setHorizonDaysAhead(HORIZON_DAYS_AHEAD);
+        });
+        GraphShards shards = new GraphShards(fixture.timeGraphConfig());
+        TimeGraphService service = fixture.shards(shards).build();
+        DefaultKafkaConsumerFactory<String, Object> consumerFactory =
+                (DefaultKafkaConsumerFactory<String, Object>) new KafkaConsumerConfig().shardedConsumerFactory(objectMapper);
+        consumerFactory.updateConfigs(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, groupId,
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest"));
+        // день записи и держал ли его экземпляр в момент получения
+        Map<LocalDate, Boolean> received = new ConcurrentHashMap<>();
+        AtomicInteger processed = new AtomicInteger();
+        ContainerProperties properties = new ContainerProperties("request_topic", "confirmation_topic");
+        properties.setConsumerRebalanceListener(new GraphRebalanceListener(shards, service));
+        properties.setMessageListener((MessageListener<String, Object>) record -> {
+            if (record.value() instanceof BookingRequestDto request && request.getGuestId() == THROUGHPUT_GUEST) {
+                bookAndRelease(service, request);
+                processed.incrementAndGet();
+                return;
+            }
+            LocalDate day = LocalDate.parse(record.key());
+            received.put(day, shards.owns(day) && service.getTimeGraph().containsKey(day));
+        });
+        ConcurrentMessageListenerContainer<String, Object> container =
+                new ConcurrentMessageListenerContainer<>(consumerFactory, properties);
+        container.start();
+        Instance instance = new Instance(fixture, shards, service, container, received, processed);
+        instances.add(instance);
+        return instance;
+    }
+
+    private KafkaTemplate<String, BookingRequestDto> template() {
+        Map<String, Object> props = KafkaTestUtils.producerProps(broker);
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(props, new StringSerializer(),
+                new JsonSerializer<>(objectMapper)));
+    }
+
+    private Set<LocalDate> horizon() {
+        LocalDate today = LocalDate.now();
+        // до открытия рабочий день еще вчерашний
+        if (LocalTime.now().isBefore(LocalTime.of(10, 0))) {
+            today = today.minusDays(1);
+        }
+        LocalDate first = today;
+        return IntStream.rangeClosed(0, HORIZON_DAYS_AHEAD)
+                .mapToObj(first::plusDays)
+                .collect(Collectors.toSet());
+    }
+
+    private record Instance(TimeGraphFixture fixture, GraphShards shards, TimeGraphService service,
+                            ConcurrentMessageListenerContainer<String, Object> container,
+                            Map<LocalDate, Boolean> received, AtomicInteger processed) {
+    }
+}
@@ -0,0 +1,58 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.common_dto_library.BusinessDay;
+import com.katynova.resto.server_side.config.TimeGraphDaysDroppedEvent;
+import com.katynova.resto.server_side.service.GraphRebalanceListener;
+import com.katynova.resto.server_side.service.GraphShards;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GraphShardsTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldFollowPartitionsOnRebalance() {
+        TimeGraphFixture fixture = new TimeGraphFixture().config(config -> config.setSharding(true));
+        GraphShards graphShards = new GraphShards(fixture.timeGraphConfig());
+        TimeGraphService service = fixture.shards(graphShards).build();
+        GraphRebalanceListener listener = new GraphRebalanceListener(graphShards, service);
+        Consumer<String, Object> consumer = mock(Consumer.class);
+        when(consumer.partitionsFor("request_topic")).thenReturn(IntStream.range(0, 3)
+                .mapToObj(partition -> new PartitionInfo("request_topic", partition, null, null, null))
+                .toList());
+
+        // партиции подтверждений дней не определяют
+        listener.onPartitionsAssigned(consumer, List.of(new TopicPartition("request_topic", 0),
+                new TopicPartition("request_topic", 1), new TopicPartition("confirmation_topic", 2)));
+        assertEquals(Set.of(0, 1), graphPartitions(service));
+
+        // партиция 1 ушла к другому экземпляру, партиция 2 пришла: ее дни строятся до первых записей
+        listener.onPartitionsRevokedBeforeCommit(consumer, List.of(new TopicPartition("request_topic", 0),
+                new TopicPartition("request_topic", 1)));
+        listener.onPartitionsAssigned(consumer, List.of(new TopicPartition("request_topic", 0),
+                new TopicPartition("request_topic", 2)));
+        assertEquals(Set.of(0, 2), graphPartitions(service));
+        // резервы вариантов отданных дней забываются по событию
+        assertTrue(fixture.publishedEvents().stream().anyMatch(event -> event instanceof TimeGraphDaysDroppedEvent dropped
+                && dropped.getDays().stream().allMatch(day -> BusinessDay.partition(day, 3) == 1)));
+    }
+
+    private Set<Integer> graphPartitions(TimeGraphService service) {
+        return service.getTimeGraph().keySet().stream()
+                .map(day -> BusinessDay.partition(day, 3))
+                .collect(Collectors.toSet());
+    }
+}
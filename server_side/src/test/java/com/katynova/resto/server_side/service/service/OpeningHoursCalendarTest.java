@@ -0,0 +1,92 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.config.OpeningHoursChangedEvent;
+import com.katynova.resto.server_side.model.OpeningHours;
+import com.katynova.resto.server_side.model.entity.OpeningHoursOverride;
+import com.katynova.resto.server_side.utility_service.OpeningHoursCalendar;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OpeningHoursCalendarTest {
+
+    private final TimeGraphFixture fixture = new TimeGraphFixture();
+    // дни внутри горизонта календаря
+    private final LocalDate closedDay = LocalDate.now().plusDays(2);
+    private final LocalDate shortDay = LocalDate.now().plusDays(3);
+    private final LocalDate lateDay = LocalDate.now().plusDays(4);
+
+    @Test
+    void shouldApplyOverrideDays() {
+        when(fixture.overrideRepository().findAllByDayBetween(any(), any())).thenReturn(List.of(
+                override(closedDay, null, null, true),
+                override(shortDay, LocalTime.of(12, 0), LocalTime.of(18, 0), false),
+                override(lateDay, null, LocalTime.of(2, 0), false)));
+        fixture.build();
+        OpeningHoursCalendar calendar = fixture.calendar();
+        calendar.reload();
+
+        assertTrue(calendar.getDay(closedDay).isClosed());
+        OpeningHours shortHours = calendar.getDay(shortDay);
+        assertEquals(LocalDateTime.of(shortDay, LocalTime.of(12, 0)), shortHours.openTime());
+        assertEquals(12, shortHours.slots());
+        // закрытие раньше открытия - это уже следующая дата
+        OpeningHours lateHours = calendar.getDay(lateDay);
+        assertEquals(LocalDateTime.of(lateDay.plusDays(1), LocalTime.of(2, 0)), lateHours.closeTime());
+        assertEquals(32, lateHours.slots());
+    }
+
+    @Test
+    void shouldPublishOnlyChangedDaysOnReload() {
+        fixture.build();
+        OpeningHoursCalendar calendar = fixture.calendar();
+        LocalDate farDay = LocalDate.now().plusYears(1);
+        calendar.reload();
+        OpeningHours farHours = calendar.getDay(farDay);
+        assertTrue(fixture.publishedEvents().isEmpty());
+
+        when(fixture.overrideRepository().findAllByDayBetween(any(), any()))
+                .thenReturn(List.of(override(shortDay, null, LocalTime.of(20, 0), false)));
+        when(fixture.overrideRepository().findByDay(farDay))
+                .thenReturn(Optional.of(override(farDay, null, null, true)));
+        calendar.reload();
+
+        OpeningHoursChangedEvent event = (OpeningHoursChangedEvent) fixture.publishedEvents().getFirst();
+        assertEquals(Set.of(shortDay, farDay), event.getDays());
+        assertFalse(farHours.isClosed());
+        assertTrue(calendar.getDay(farDay).isClosed());
+    }
+
+    @Test
+    void shouldReadDayOutsideHorizonOnce() {
+        fixture.build();
+        OpeningHoursCalendar calendar = fixture.calendar();
+        LocalDate farDay = LocalDate.now().plusYears(1);
+
+        OpeningHours first = calendar.getDay(farDay);
+        assertSame(first, calendar.getDay(farDay));
+        calendar.getDayOf(LocalDateTime.of(farDay, LocalTime.of(19, 0)));
+        verify(fixture.overrideRepository(), times(1)).findByDay(farDay);
+    }
+
+    private static OpeningHoursOverride override(LocalDate day, LocalTime openTime, LocalTime closeTime,
+                                                 boolean closed) {
+        OpeningHoursOverride override = new OpeningHoursOverride();
+        override.setDay(day);
+        override.setOpenTime(openTime);
+        override.setCloseTime(closeTime);
+        override.setClosed(closed);
+        return override;
+    }
+}
@@ -0,0 +1,126 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.common_dto_library.BusinessDay;
+import com.katynova.resto.server_side.config.TimeGraphDaysDroppedEvent;
+import com.katynova.resto.server_side.model.FindResponse;
+import com.katynova.resto.server_side.model.SlotRange;
+import com.katynova.resto.server_side.model.info.SuggestBookingInfo;
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.service.SuggestionHolds;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.TABLES;
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+// резервы предложенных вариантов поверх настоящего графа: слоты варианта резервирует поиск,
+// SuggestionHolds только помнит резерв и снимает его
+class SuggestionHoldsTest {
+
+    private final LocalDate day = LocalDate.now().plusDays(3);
+
+    private TimeGraphService service;
+    private SuggestionHolds suggestionHolds;
+    private BookingRequestDto request;
+    private SuggestBookingInfo option;
+
+    @BeforeEach
+    void setUp() {
+        TimeGraphFixture fixture = new TimeGraphFixture();
+        service = fixture.build();
+        suggestionHolds = new SuggestionHolds(service, fixture.calendar());
+        // все столы заняты на 19:00, поэтому поиск в окне гостя резервирует варианты рядом
+        for (int i = 0; i < TABLES; i++) {
+            assertEquals(ResponseStatus.SUCCESS, service.findBooking(request(day, LocalTime.of(19, 0))).getStatus());
+        }
+        request = request(day, LocalTime.of(19, 0));
+        request.setWindowStart(LocalDateTime.of(day, LocalTime.of(16, 0)));
+        request.setWindowEnd(LocalDateTime.of(day, LocalTime.of(23, 0)));
+        FindResponse<?> response = service.findBooking(request);
+        assertEquals(ResponseStatus.SUGGESTED, response.getStatus());
+        option = (SuggestBookingInfo) response.getList().getFirst();
+        assertFalse(isFree(option.getSlots()));
+    }
+
+    @Test
+    void shouldHoldSuggestionAndGiveItOutOnce() {
+        SuggestionHolds.Hold hold = hold(LocalDateTime.now().plusMinutes(5));
+
+        // рабочий день варианта зашит в id: по нему клиент ключует подтверждение
+        assertEquals(day, BusinessDay.ofHoldId(hold.id()));
+        assertEquals(day, hold.position().day());
+        assertEquals(option.getTableNumber(), hold.position().tableNumber());
+        assertTrue(suggestionHolds.contains(hold.id()));
+
+        assertSame(hold, suggestionHolds.take(hold.id()));
+        assertNull(suggestionHolds.take(hold.id()));
+        assertFalse(suggestionHolds.contains(hold.id()));
+        // забранный резерв подтверждается: слоты остаются за ним
+        assertFalse(isFree(option.getSlots()));
+    }
+
+    @Test
+    void shouldReleaseSlotsOfExpiredHoldOnTake() {
+        SuggestionHolds.Hold hold = hold(LocalDateTime.now().minusSeconds(1));
+
+        assertNull(suggestionHolds.take(hold.id()));
+        assertTrue(isFree(option.getSlots()));
+    }
+
+    @Test
+    void shouldReleaseSlotsOfRejectedHolds() {
+        SuggestionHolds.Hold hold = hold(LocalDateTime.now().plusMinutes(5));
+
+        suggestionHolds.release(List.of(hold.id()));
+        assertFalse(suggestionHolds.contains(hold.id()));
+        assertTrue(isFree(option.getSlots()));
+    }
+
+    @Test
+    void shouldForgetHoldsOfDroppedDays() {
+        SuggestionHolds.Hold hold = hold(LocalDateTime.now().plusMinutes(5));
+
+        suggestionHolds.onDaysDropped(new TimeGraphDaysDroppedEvent(service, Set.of(day.plusDays(1))));
+        assertTrue(suggestionHolds.contains(hold.id()));
+
+        suggestionHolds.onDaysDropped(new TimeGraphDaysDroppedEvent(service, Set.of(day)));
+        assertFalse(suggestionHolds.contains(hold.id()));
+        assertNull(suggestionHolds.take(hold.id()));
+    }
+
+    @Test
+    void shouldReleaseSlotsWhenHoldExpires() {
+        suggestionHolds.start();
+        try {
+            SuggestionHolds.Hold expiring = hold(LocalDateTime.now().plus(Duration.ofMillis(300)));
+            assertFalse(isFree(option.getSlots()));
+
+            await().atMost(Duration.ofSeconds(5)).until(() -> !suggestionHolds.contains(expiring.id()));
+            assertTrue(isFree(option.getSlots()));
+            assertNull(suggestionHolds.take(expiring.id()));
+        } finally {
+            suggestionHolds.stop();
+        }
+    }
+
+    private SuggestionHolds.Hold hold(LocalDateTime expired) {
+        SlotRange slots = option.getSlots();
+        return suggestionHolds.hold(request, option, slots.getStartDateTime(request.getStartTime()),
+                slots.getEndDateTime(request.getStartTime()), expired);
+    }
+
+    private static boolean isFree(SlotRange slots) {
+        return slots.getTable().isFree(slots.getFrom(), slots.getTo());
+    }
+}
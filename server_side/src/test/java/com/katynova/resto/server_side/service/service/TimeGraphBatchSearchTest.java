@@ -0,0 +1,42 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.server_side.model.FindResponse;
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.TABLES;
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimeGraphBatchSearchTest {
+
+    private final LocalDate bookingDate = LocalDate.of(2025, 7, 15);
+
+    @Test
+    void shouldAnswerBatchInRequestOrder() {
+        TimeGraphService service = new TimeGraphFixture().build();
+        // запросы двух дней вперемешку: в каждом дне столов хватает на 30 броней, последний запрос первого дня лишний
+        List<BookingRequestDto> requests = new ArrayList<>();
+        for (int i = 0; i < TABLES + 1; i++) {
+            requests.add(request(bookingDate, LocalTime.of(19, 0)));
+            if (i < TABLES) {
+                requests.add(request(bookingDate.plusDays(1), LocalTime.of(19, 0)));
+            }
+        }
+        List<FindResponse<?>> responses = service.findBookings(requests);
+
+        assertEquals(requests.size(), responses.size());
+        for (int i = 0; i < requests.size(); i++) {
+            boolean overbooked = i == 2 * TABLES;
+            assertEquals(overbooked ? ResponseStatus.WAITLIST : ResponseStatus.SUCCESS, responses.get(i).getStatus(),
+                    "Ответ " + i);
+        }
+    }
+}
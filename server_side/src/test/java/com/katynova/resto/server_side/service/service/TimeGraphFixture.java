@@ -0,0 +1,178 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.server_side.config.TimeGraphConfig;
+import com.katynova.resto.server_side.config.WorkTimeConfig;
+import com.katynova.resto.server_side.model.TableSlots;
+import com.katynova.resto.server_side.model.entity.RestTable;
+import com.katynova.resto.server_side.repository.BookingRepository;
+import com.katynova.resto.server_side.repository.OpeningHoursOverrideRepository;
+import com.katynova.resto.server_side.repository.TableRepository;
+import com.katynova.resto.server_side.service.BookingWriteBehind;
+import com.katynova.resto.server_side.service.GraphChangelog;
+import com.katynova.resto.server_side.service.GraphCreator;
+import com.katynova.resto.server_side.service.GraphJournal;
+import com.katynova.resto.server_side.service.GraphLocks;
+import com.katynova.resto.server_side.service.GraphShards;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import com.katynova.resto.server_side.utility_service.CapacityService;
+import com.katynova.resto.server_side.utility_service.OpeningHoursCalendar;
+import com.katynova.resto.server_side.utility_service.WorkingHoursCounter;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// TimeGraphService без Spring: 30 столов (каждый третий - на 4 человек, остальные на 2),
+// часы работы 10:00 - 23:00, в выходные до 01:00, слоты по 30 минут
+// настройки графа и часов работы меняются через config/workTime, остальное подставляется по умолчанию
+class TimeGraphFixture {
+
+    static final int TABLES = 30;
+
+    private final TimeGraphConfig timeGraphConfig = new TimeGraphConfig();
+    private final WorkTimeConfig workTimeConfig = new WorkTimeConfig();
+    private final BookingRepository bookingRepository = mock(BookingRepository.class);
+    private final TableRepository tableRepository = mock(TableRepository.class);
+    private final CapacityService capacityService = mock(CapacityService.class);
+    private final OpeningHoursOverrideRepository overrideRepository = mock(OpeningHoursOverrideRepository.class);
+    private final BookingWriteBehind bookingWriteBehind = mock(BookingWriteBehind.class);
+    private final GraphLocks graphLocks = new GraphLocks();
+    private final List<Object> publishedEvents = new ArrayList<>();
+    private GraphShards graphShards;
+    private KafkaTemplate<String, GraphChangelog.TableState> changelogTemplate;
+    private GraphChangelog graphChangelog;
+    private OpeningHoursCalendar calendar;
+
+    TimeGraphFixture() {
+        workTimeConfig.setOpenTime(LocalTime.of(10, 0));
+        workTimeConfig.setCloseWeekdaysTime(LocalTime.of(23, 0));
+        workTimeConfig.setCloseWeekendTime(LocalTime.of(1, 0));
+        List<RestTable> tables = IntStream.rangeClosed(1, TABLES).mapToObj(number -> {
+            RestTable table = new RestTable();
+            table.setTableNumber(number);
+            // каждый третий стол - на 4 человек, чтобы запросы на 2 человек уходили и в страйп capacity + 2
+            table.setCapacity(capacityOf(number));
+            return table;
+        }).toList();
+        when(tableRepository.findAll()).thenReturn(tables);
+        when(capacityService.getCapacity(anyInt())).thenAnswer(invocation -> invocation.<Integer>getArgument(0) <= 2 ? 2 : 4);
+        when(capacityService.getCapacities()).thenReturn(List.of(2, 4));
+    }
+
+    static int capacityOf(int tableNumber) {
+        return tableNumber % 3 == 0 ? 4 : 2;
+    }
+
+    TimeGraphFixture config(Consumer<TimeGraphConfig> settings) {
+        settings.accept(timeGraphConfig);
+        return this;
+    }
+
+    TimeGraphFixture workTime(Consumer<WorkTimeConfig> settings) {
+        settings.accept(workTimeConfig);
+        return this;
+    }
+
+    TimeGraphFixture shards(GraphShards graphShards) {
+        this.graphShards = graphShards;
+        return this;
+    }
+
+    TimeGraphFixture changelog(KafkaTemplate<String, GraphChangelog.TableState> changelogTemplate) {
+        this.changelogTemplate = changelogTemplate;
+        return this;
+    }
+
+    TimeGraphService build() {
+        WorkingHoursCounter workingHoursCounter = new WorkingHoursCounter(workTimeConfig);
+        // календарь без загрузки: часы дня считаются по расписанию при первом обращении
+        calendar = new OpeningHoursCalendar(workingHoursCounter, overrideRepository, timeGraphConfig,
+                publishedEvents::add);
+        if (graphShards == null) {
+            graphShards = new GraphShards(timeGraphConfig);
+        }
+        graphChangelog = new GraphChangelog(timeGraphConfig, changelogTemplate, graphLocks);
+        graphChangelog.init();
+        return new TimeGraphService(bookingRepository, tableRepository, new GraphCreator(calendar, timeGraphConfig),
+                calendar, capacityService, timeGraphConfig, graphLocks, new GraphJournal(timeGraphConfig), graphShards,
+                graphChangelog, bookingWriteBehind, publishedEvents::add);
+    }
+
+    TimeGraphConfig timeGraphConfig() {
+        return timeGraphConfig;
+    }
+
+    BookingRepository bookingRepository() {
+        return bookingRepository;
+    }
+
+    TableRepository tableRepository() {
+        return tableRepository;
+    }
+
+    OpeningHoursOverrideRepository overrideRepository() {
+        return overrideRepository;
+    }
+
+    BookingWriteBehind bookingWriteBehind() {
+        return bookingWriteBehind;
+    }
+
+    GraphLocks graphLocks() {
+        return graphLocks;
+    }
+
+    GraphShards graphShards() {
+        return graphShards;
+    }
+
+    GraphChangelog graphChangelog() {
+        return graphChangelog;
+    }
+
+    OpeningHoursCalendar calendar() {
+        return calendar;
+    }
+
+    List<Object> publishedEvents() {
+        return publishedEvents;
+    }
+
+    // столы дня совпадают по каждому слоту: занятость и id брони
+    static void assertSameDay(TimeGraphService expected, TimeGraphService actual, LocalDate day) {
+        Map<Integer, ? extends Map<Integer, TableSlots>> expectedDay = expected.getTimeGraph().get(day);
+        Map<Integer, ? extends Map<Integer, TableSlots>> actualDay = actual.getTimeGraph().get(day);
+        assertNotNull(actualDay, "День " + day);
+        assertEquals(expectedDay.keySet(), actualDay.keySet());
+        expectedDay.forEach((capacity, tables) -> tables.forEach((tableNumber, table) -> {
+            TableSlots replicated = actualDay.get(capacity).get(tableNumber);
+            for (int i = 0; i < table.size(); i++) {
+                assertEquals(table.isAvailable(i), replicated.isAvailable(i), "Стол " + tableNumber + ", слот " + i);
+                assertEquals(table.bookingIdAt(i), replicated.bookingIdAt(i), "Стол " + tableNumber + ", слот " + i);
+            }
+        }));
+    }
+
+    static BookingRequestDto request(LocalDate day, LocalTime startTime) {
+        BookingRequestDto request = new BookingRequestDto();
+        request.setGuestId(1L);
+        request.setPersons(2);
+        request.setStartTime(LocalDateTime.of(day, startTime));
+        request.setDuration(Duration.ofHours(2));
+        return request;
+    }
+}
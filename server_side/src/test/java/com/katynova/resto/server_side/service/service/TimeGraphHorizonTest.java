@@ -0,0 +1,62 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.config.TimeGraphDaysDroppedEvent;
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.service.GraphLocks;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeGraphHorizonTest {
+
+    @Test
+    void shouldEvictPastDaysAndPrewarmHorizon() {
+        TimeGraphFixture fixture = new TimeGraphFixture().config(config -> {
+            config.setHorizonDaysBack(1);
+            config.setHorizonDaysAhead(3);
+        });
+        TimeGraphService service = fixture.build();
+        LocalDate today = fixture.calendar().getDayOf(LocalDateTime.now()).day();
+        LocalDate past = today.minusDays(3);
+        LocalDate yesterday = today.minusDays(1);
+        assertEquals(ResponseStatus.SUCCESS, service.findBooking(request(past, LocalTime.of(19, 0))).getStatus());
+        assertEquals(ResponseStatus.SUCCESS, service.findBooking(request(yesterday, LocalTime.of(19, 0))).getStatus());
+        // стол прошедшего дня занят другим потоком: его страйп переживет первую чистку
+        fixture.graphLocks().lockTable(past, 2, 1);
+        try {
+            service.maintainHorizon();
+        } finally {
+            fixture.graphLocks().unlockTable(past, 2, 1);
+        }
+
+        assertFalse(service.getTimeGraph().containsKey(past));
+        assertNull(service.getFreeTableIndex(past));
+        assertTrue(fixture.publishedEvents().stream().anyMatch(event ->
+                event instanceof TimeGraphDaysDroppedEvent dropped && dropped.getDays().equals(Set.of(past))));
+        // вчерашний день еще в горизонте, дни до today + 3 созданы заранее, дальше - нет
+        assertTrue(service.getTimeGraph().containsKey(yesterday));
+        for (int offset = 0; offset <= 3; offset++) {
+            assertTrue(service.getTimeGraph().containsKey(today.plusDays(offset)), "День " + today.plusDays(offset));
+        }
+        assertFalse(service.getTimeGraph().containsKey(today.plusDays(4)));
+        assertEquals(List.of(2), stripeCapacities(fixture.graphLocks(), past));
+
+        service.maintainHorizon();
+        assertEquals(List.of(), stripeCapacities(fixture.graphLocks(), past));
+    }
+
+    private static List<Integer> stripeCapacities(GraphLocks graphLocks, LocalDate day) {
+        return graphLocks.stats().stream()
+                .filter(stats -> stats.day().equals(day))
+                .map(GraphLocks.StripeStats::capacity)
+                .toList();
+    }
+}
@@ -0,0 +1,83 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.config.OpeningHoursChangedEvent;
+import com.katynova.resto.server_side.config.TimeGraphDaysDroppedEvent;
+import com.katynova.resto.server_side.exception.ConsistencyException;
+import com.katynova.resto.server_side.model.BookingGraphRow;
+import com.katynova.resto.server_side.model.BookingPosition;
+import com.katynova.resto.server_side.model.FindResponse;
+import com.katynova.resto.server_side.model.TableSlots;
+import com.katynova.resto.server_side.model.entity.OpeningHoursOverride;
+import com.katynova.resto.server_side.model.info.AppropriateBookingInfo;
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.model.status.Status;
+import com.katynova.resto.server_side.service.BookingWriteBehind;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+class TimeGraphRebuildDayTest {
+
+    private final LocalDate day = LocalDate.now().plusDays(3);
+
+    @Test
+    void shouldKeepBookingsAndRejectStalePositionsOnRebuild() {
+        TimeGraphFixture fixture = new TimeGraphFixture();
+        TimeGraphService service = fixture.build();
+        fixture.calendar().reload();
+        // захват поиска, который еще не записан, и бронь, записанная в базу
+        FindResponse<?> found = service.findBooking(request(day, LocalTime.of(19, 0)));
+        assertEquals(ResponseStatus.SUCCESS, found.getStatus());
+        BookingPosition inFlight = service.reservedPosition(LocalDateTime.of(day, LocalTime.of(19, 0)),
+                (AppropriateBookingInfo) found.getList().getFirst());
+        assertTrue(service.isCurrent(inFlight));
+        when(fixture.bookingRepository().findGraphRows(any(), any())).thenReturn(List.of(
+                new BookingGraphRow(5L, 1, 2, LocalDateTime.of(day, LocalTime.of(12, 0)),
+                        LocalDateTime.of(day, LocalTime.of(14, 0)))));
+        // и подтвержденная бронь, которую поток отложенной записи еще не донес до базы
+        when(fixture.bookingWriteBehind().isEnabled()).thenReturn(true);
+        when(fixture.bookingWriteBehind().unflushedBookings()).thenReturn(List.of(
+                new BookingWriteBehind.PendingBooking(77L, 1L, 2, 2, LocalDateTime.of(day, LocalTime.of(20, 0)),
+                        LocalDateTime.of(day, LocalTime.of(22, 0)), Instant.now(), Status.CONFIRMED, null)));
+
+        // день теперь закрывается в 22:00
+        OpeningHoursOverride override = new OpeningHoursOverride();
+        override.setDay(day);
+        override.setCloseTime(LocalTime.of(22, 0));
+        when(fixture.overrideRepository().findAllByDayBetween(any(), any())).thenReturn(List.of(override));
+        fixture.calendar().reload();
+        service.onOpeningHoursChanged((OpeningHoursChangedEvent) fixture.publishedEvents().getFirst());
+
+        assertFalse(service.isCurrent(inFlight));
+        assertThrows(ConsistencyException.class, () -> service.assignBooking(9L, inFlight));
+        TableSlots first = service.getTimeGraph().get(day).get(2).get(1);
+        assertEquals(24, first.size());
+        assertEquals(5L, first.bookingIdAt(4));
+        assertEquals(77L, service.getTimeGraph().get(day).get(2).get(2).bookingIdAt(20));
+        // резерв поиска в новый день не переносится
+        int reserved = 0;
+        for (var tables : service.getTimeGraph().get(day).values()) {
+            for (TableSlots table : tables.values()) {
+                for (int i = 0; i < table.size(); i++) {
+                    if (!table.isAvailable(i) && table.bookingIdAt(i) == TableSlots.RESERVED) {
+                        reserved++;
+                    }
+                }
+            }
+        }
+        assertEquals(0, reserved);
+        assertTrue(fixture.publishedEvents().stream().anyMatch(event ->
+                event instanceof TimeGraphDaysDroppedEvent dropped && dropped.getDays().equals(Set.of(day))));
+    }
+}
@@ -0,0 +1,95 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.server_side.model.BookingGraphRow;
+import com.katynova.resto.server_side.model.TableSlots;
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TimeGraphRefreshTest {
+
+    private final LocalDate day = LocalDate.now().plusDays(3);
+
+    @Test
+    void shouldApplyOnlyBookingsCreatedAfterWatermark() {
+        TimeGraphFixture fixture = new TimeGraphFixture();
+        TimeGraphService service = fixture.build();
+        when(fixture.bookingRepository().streamGraphRows(any(), any()))
+                .thenReturn(Stream.of(row(1L, 1, LocalTime.of(12, 0))));
+        Instant loadStartedAt = Instant.now();
+        service.fillIn();
+        Instant loaded = Instant.now();
+        // резерв, сделанный между загрузкой и обновлением
+        assertEquals(ResponseStatus.SUCCESS, service.findBooking(request(day, LocalTime.of(16, 0))).getStatus());
+        int reservedBefore = reserved(service.getTimeGraph().get(day));
+
+        // бронь из загрузки читается повторно из-за перекрытия водяного знака, вторая ей противоречит,
+        // третья - новая, четвертая приходится на день вне графа
+        when(fixture.bookingRepository().findGraphRowsCreatedAfter(any())).thenReturn(List.of(
+                row(1L, 1, LocalTime.of(12, 0)),
+                row(2L, 1, LocalTime.of(13, 0)),
+                row(3L, 2, LocalTime.of(19, 0)),
+                new BookingGraphRow(4L, 2, 2, LocalDateTime.of(day.plusDays(60), LocalTime.of(19, 0)),
+                        LocalDateTime.of(day.plusDays(60), LocalTime.of(21, 0)))));
+        Instant refreshStartedAt = Instant.now();
+        service.refresh();
+        Instant refreshed = Instant.now();
+        service.refresh();
+
+        ArgumentCaptor<Instant> watermarks = ArgumentCaptor.forClass(Instant.class);
+        verify(fixture.bookingRepository(), times(2)).findGraphRowsCreatedAfter(watermarks.capture());
+        // водяной знак - начало прошлого чтения с перекрытием в минуту
+        Instant afterLoad = watermarks.getAllValues().get(0);
+        Instant afterRefresh = watermarks.getAllValues().get(1);
+        assertFalse(afterLoad.isBefore(loadStartedAt.minus(Duration.ofMinutes(1))));
+        assertFalse(afterLoad.isAfter(loaded.minus(Duration.ofMinutes(1))));
+        assertFalse(afterRefresh.isBefore(refreshStartedAt.minus(Duration.ofMinutes(1))));
+        assertFalse(afterRefresh.isAfter(refreshed.minus(Duration.ofMinutes(1))));
+
+        ConcurrentMap<Integer, ConcurrentMap<Integer, TableSlots>> graphDay = service.getTimeGraph().get(day);
+        TableSlots first = graphDay.get(2).get(1);
+        assertEquals(1L, first.bookingIdAt(4));
+        assertEquals(1L, first.bookingIdAt(7));
+        assertEquals(3L, graphDay.get(2).get(2).bookingIdAt(18));
+        assertFalse(service.getTimeGraph().containsKey(day.plusDays(60)));
+        // граф не пересобирался: резерв на месте
+        assertEquals(reservedBefore, reserved(graphDay));
+    }
+
+    private BookingGraphRow row(long id, int tableNumber, LocalTime startTime) {
+        return new BookingGraphRow(id, tableNumber, TimeGraphFixture.capacityOf(tableNumber),
+                LocalDateTime.of(day, startTime), LocalDateTime.of(day, startTime.plusHours(2)));
+    }
+
+    private static int reserved(Map<Integer, ? extends Map<Integer, TableSlots>> graphDay) {
+        int reserved = 0;
+        for (Map<Integer, TableSlots> tables : graphDay.values()) {
+            for (TableSlots table : tables.values()) {
+                for (int i = 0; i < table.size(); i++) {
+                    if (!table.isAvailable(i) && table.bookingIdAt(i) == TableSlots.RESERVED) {
+                        reserved++;
+                    }
+                }
+            }
+        }
+        return reserved;
+    }
+}
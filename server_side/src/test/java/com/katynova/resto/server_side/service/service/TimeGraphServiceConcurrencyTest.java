@@ -0,0 +1,137 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.server_side.model.BookingPosition;
+import com.katynova.resto.server_side.model.FindResponse;
+import com.katynova.resto.server_side.model.SlotRange;
+import com.katynova.resto.server_side.model.SlotStorage;
+import com.katynova.resto.server_side.model.TableSlots;
+import com.katynova.resto.server_side.model.info.AppropriateBookingInfo;
+import com.katynova.resto.server_side.model.info.SuggestBookingInfo;
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeGraphServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 200;
+
+    private final LocalDate bookingDate = LocalDate.of(2025, 7, 15);
+
+    @Test
+    void shouldNeverDoubleBookUnderContentionWithoutLocks() throws Exception {
+        assertNoDoubleBooking(new TimeGraphFixture().config(config -> config.setLockFree(true)).build());
+    }
+
+    @Test
+    void shouldNeverDoubleBookOrDeadlockWithStripedLocks() throws Exception {
+        assertNoDoubleBooking(new TimeGraphFixture().build());
+    }
+
+    @Test
+    void shouldNeverDoubleBookWithOffHeapStorage() throws Exception {
+        assertNoDoubleBooking(new TimeGraphFixture().config(config -> {
+            config.setLockFree(true);
+            config.setStorage(SlotStorage.OFF_HEAP);
+        }).build());
+    }
+
+    private void assertNoDoubleBooking(TimeGraphService service) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<FindResponse<?>>>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                List<FindResponse<?>> responses = new ArrayList<>();
+                start.await();
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    BookingRequestDto request = new BookingRequestDto();
+                    request.setGuestId((long) seed);
+                    request.setPersons(1 + random.nextInt(4));
+                    // все запросы приходятся на один "горячий" день
+                    int slot = random.nextInt(19);
+                    request.setStartTime(LocalDateTime.of(bookingDate, LocalTime.of(10, 0).plusMinutes(30L * slot)));
+                    request.setDuration(Duration.of(2 + random.nextInt(3), ChronoUnit.HOURS));
+                    responses.add(service.findBooking(request));
+                }
+                return responses;
+            }));
+        }
+        start.countDown();
+        List<SlotRange> claimed = new ArrayList<>();
+        List<Integer> claimedTables = new ArrayList<>();
+        for (Future<List<FindResponse<?>>> future : futures) {
+            // взаимная блокировка проявится как таймаут
+            for (FindResponse<?> response : future.get(30, TimeUnit.SECONDS)) {
+                assertNotEquals(ResponseStatus.ERROR, response.getStatus());
+                for (Object info : response.getList()) {
+                    if (info instanceof AppropriateBookingInfo appropriate) {
+                        claimed.add(appropriate.getSlots());
+                        claimedTables.add(appropriate.getTableNumber());
+                    } else if (info instanceof SuggestBookingInfo suggest) {
+                        claimed.add(suggest.getSlots());
+                        claimedTables.add(suggest.getTableNumber());
+                    }
+                }
+            }
+        }
+        executor.shutdown();
+
+        // ни один слот не должен достаться двум запросам
+        Map<TableSlots, boolean[]> owned = new IdentityHashMap<>();
+        int claimedSlots = 0;
+        for (SlotRange range : claimed) {
+            boolean[] slots = owned.computeIfAbsent(range.getTable(), table -> new boolean[table.size()]);
+            for (int i = range.getFrom(); i < range.getTo(); i++) {
+                assertFalse(slots[i], "Слот " + range.getTable().timeAt(i) + " забронирован дважды");
+                slots[i] = true;
+                claimedSlots++;
+            }
+        }
+        // и в графе заняты ровно те слоты, которые были выданы
+        int occupiedSlots = 0;
+        for (Map<Integer, TableSlots> tables : service.getTimeGraph().get(bookingDate).values()) {
+            for (TableSlots table : tables.values()) {
+                for (int i = 0; i < table.size(); i++) {
+                    if (!table.isAvailable(i)) {
+                        occupiedSlots++;
+                    }
+                }
+            }
+        }
+        assertFalse(claimed.isEmpty());
+        assertEquals(claimedSlots, occupiedSlots);
+
+        // после проставления id брони освобождаются по обратному индексу, и граф снова пуст
+        List<Long> bookingIds = new ArrayList<>();
+        for (int i = 0; i < claimed.size(); i++) {
+            long bookingId = i + 1L;
+            int tableNumber = claimedTables.get(i);
+            service.assignBooking(bookingId, new BookingPosition(bookingDate, TimeGraphFixture.capacityOf(tableNumber),
+                    tableNumber, claimed.get(i)));
+            bookingIds.add(bookingId);
+        }
+        service.unreserveSlotsByBookingId(bookingIds);
+        for (Map<Integer, TableSlots> tables : service.getTimeGraph().get(bookingDate).values()) {
+            for (TableSlots table : tables.values()) {
+                assertEquals(table.size(), table.nextOccupied(0, table.size()));
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.server_side.config.WorkTimeConfig;
+import com.katynova.resto.server_side.model.FindResponse;
+import com.katynova.resto.server_side.model.SlotRange;
+import com.katynova.resto.server_side.model.TableSlots;
+import com.katynova.resto.server_side.model.info.AppropriateBookingInfo;
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.junit.jupiter.api.Assertions.*;
+
+// граф с длиной слота worktime.slot-minutes, отличной от 30 минут
+class TimeGraphSlotLengthTest {
+
+    private final LocalDate weekday = LocalDate.of(2025, 7, 15);
+    // суббота: в фикстуре выходные работают до 01:00
+    private final LocalDate saturday = LocalDate.of(2025, 7, 19);
+
+    @Test
+    void shouldBookWithQuarterHourSlots() {
+        TimeGraphService service = new TimeGraphFixture().workTime(workTime -> workTime.setSlotMinutes(15)).build();
+        SlotRange slots = book(service, request(weekday, LocalTime.of(19, 15))).getSlots();
+        // 10:00 - 23:00 по 15 минут
+        assertEquals(52, tableOf(service, weekday, 1).size());
+        assertEquals(LocalTime.of(19, 15), slots.getStartTime());
+        assertEquals(LocalTime.of(21, 15), slots.getEndTime());
+        assertEquals(8, slots.size());
+    }
+
+    @Test
+    void shouldBookWithHourSlots() {
+        TimeGraphService service = new TimeGraphFixture().workTime(workTime -> workTime.setSlotMinutes(60)).build();
+        // 1,5 часа округляются вверх до двух слотов
+        BookingRequestDto request = request(weekday, LocalTime.of(19, 0));
+        request.setDuration(Duration.ofMinutes(90));
+        SlotRange slots = book(service, request).getSlots();
+        assertEquals(13, tableOf(service, weekday, 1).size());
+        assertEquals(LocalTime.of(19, 0), slots.getStartTime());
+        assertEquals(LocalTime.of(21, 0), slots.getEndTime());
+    }
+
+    @Test
+    void shouldBookPastMidnightWithQuarterHourSlots() {
+        TimeGraphService service = new TimeGraphFixture().workTime(workTime -> workTime.setSlotMinutes(15)).build();
+        // бронь переходит через полночь и заканчивается ровно к закрытию
+        BookingRequestDto lateEvening = request(saturday, LocalTime.of(23, 30));
+        lateEvening.setDuration(Duration.ofMinutes(90));
+        SlotRange evening = book(service, lateEvening).getSlots();
+        // 10:00 - 01:00 следующих суток
+        assertEquals(60, tableOf(service, saturday, 1).size());
+        assertEquals(LocalTime.of(23, 30), evening.getStartTime());
+        assertEquals(LocalTime.of(1, 0), evening.getEndTime());
+
+        // бронь после полуночи по календарю следующая дата, но относится к субботнему рабочему дню
+        BookingRequestDto afterMidnight = new BookingRequestDto();
+        afterMidnight.setGuestId(1L);
+        afterMidnight.setPersons(2);
+        afterMidnight.setStartTime(LocalDateTime.of(saturday.plusDays(1), LocalTime.of(0, 15)));
+        afterMidnight.setDuration(Duration.ofMinutes(30));
+        AppropriateBookingInfo night = book(service, afterMidnight);
+        assertEquals(LocalTime.of(0, 15), night.getSlots().getStartTime());
+        assertEquals(LocalTime.of(0, 45), night.getSlots().getEndTime());
+        TableSlots table = tableOf(service, saturday, night.getTableNumber());
+        assertFalse(table.isFree(57, 59));
+        assertTrue(table.isFree(56, 57));
+        assertTrue(table.isFree(59, 60));
+    }
+
+    @Test
+    void shouldRejectSlotLengthNotDividingAnHour() {
+        WorkTimeConfig workTimeConfig = new WorkTimeConfig();
+        assertThrows(IllegalArgumentException.class, () -> workTimeConfig.setSlotMinutes(25));
+        assertThrows(IllegalArgumentException.class, () -> workTimeConfig.setSlotMinutes(0));
+    }
+
+    private static AppropriateBookingInfo book(TimeGraphService service, BookingRequestDto request) {
+        FindResponse<?> response = service.findBooking(request);
+        assertEquals(ResponseStatus.SUCCESS, response.getStatus());
+        return (AppropriateBookingInfo) response.getList().getFirst();
+    }
+
+    private static TableSlots tableOf(TimeGraphService service, LocalDate day, int tableNumber) {
+        return service.getTimeGraph().get(day).get(TimeGraphFixture.capacityOf(tableNumber)).get(tableNumber);
+    }
+}
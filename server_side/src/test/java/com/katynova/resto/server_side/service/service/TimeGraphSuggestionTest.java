@@ -0,0 +1,63 @@
+package com.katynova.resto.server_side.service.service;
+
+import com.katynova.resto.common_dto_library.BookingRequestDto;
+import com.katynova.resto.server_side.model.FindResponse;
+import com.katynova.resto.server_side.model.info.SuggestBookingInfo;
+import com.katynova.resto.server_side.model.status.ResponseStatus;
+import com.katynova.resto.server_side.service.TimeGraphService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.TABLES;
+import static com.katynova.resto.server_side.service.service.TimeGraphFixture.request;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimeGraphSuggestionTest {
+
+    private final LocalDate bookingDate = LocalDate.of(2025, 7, 15);
+
+    @Test
+    void shouldSuggestNearestTimesWithinWindow() {
+        TimeGraphService service = new TimeGraphFixture().build();
+        // все 30 столов заняты с 19:00 до 21:00: 20 на двоих и 10 на четверых
+        for (int i = 0; i < TABLES; i++) {
+            assertEquals(ResponseStatus.SUCCESS, service.findBooking(request(bookingDate, LocalTime.of(19, 0))).getStatus());
+        }
+        BookingRequestDto flexible = request(bookingDate, LocalTime.of(19, 0));
+        flexible.setWindowStart(LocalDateTime.of(bookingDate, LocalTime.of(16, 0)));
+        flexible.setWindowEnd(LocalDateTime.of(bookingDate, LocalTime.of(23, 30)));
+        FindResponse<?> response = service.findBooking(flexible);
+
+        assertEquals(ResponseStatus.SUGGESTED, response.getStatus());
+        // ближе всего 17:00 и 21:00 (на 2 часа от желаемого), при равенстве раньше идет более раннее время,
+        // дальше 16:30 и 16:00; 21:30 не помещается до закрытия в 23:00
+        List<LocalTime> starts = response.getList().stream()
+                .map(info -> ((SuggestBookingInfo) info).getSlots().getStartTime())
+                .toList();
+        assertEquals(List.of(LocalTime.of(17, 0), LocalTime.of(21, 0), LocalTime.of(16, 30), LocalTime.of(16, 0)), starts);
+    }
+
+    @Test
+    void shouldSuggestSameTimeOnAdjacentDays() {
+        TimeGraphService service = new TimeGraphFixture().config(config -> config.setCrossDaySpan(1)).build();
+        // прошедшие дни не предлагаются, поэтому берем день в будущем
+        LocalDate day = LocalDate.now().plusDays(10);
+        for (int i = 0; i < TABLES; i++) {
+            assertEquals(ResponseStatus.SUCCESS, service.findBooking(request(day, LocalTime.of(19, 0))).getStatus());
+        }
+        FindResponse<?> response = service.findBooking(request(day, LocalTime.of(19, 0)));
+
+        assertEquals(ResponseStatus.SUGGESTED, response.getStatus());
+        List<Integer> offsets = response.getList().stream()
+                .map(info -> ((SuggestBookingInfo) info).getDayOffset())
+                .toList();
+        assertEquals(List.of(-1, 1), offsets);
+        for (Object info : response.getList()) {
+            assertEquals(LocalTime.of(19, 0), ((SuggestBookingInfo) info).getSlots().getStartTime());
+        }
+    }
+}